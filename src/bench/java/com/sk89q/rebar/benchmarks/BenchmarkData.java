@@ -0,0 +1,176 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Server;
+import org.bukkit.World;
+
+import com.sk89q.rebar.config.ConfigurationNode;
+
+/**
+ * Builds the configuration trees used by the benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Create a path of the given depth (i.e. a.b.c for a depth of 3).
+     *
+     * @param depth number of parts
+     * @return path in dot notation
+     */
+    static String deepPath(int depth) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                path.append('.');
+            }
+            path.append("key").append(i);
+        }
+        return path.toString();
+    }
+
+    /**
+     * Create a node that has a chain of maps down to the given depth, with
+     * a handful of siblings at every level.
+     *
+     * @param depth depth of the tree
+     * @return the node
+     */
+    static ConfigurationNode deepNode(int depth) {
+        ConfigurationNode node = new ConfigurationNode();
+        for (int i = 1; i <= depth; i++) {
+            String path = deepPath(i);
+            for (int j = 0; j < 8; j++) {
+                node.set(path + "-sibling" + j, j);
+            }
+        }
+        node.set(deepPath(depth), 42);
+        return node;
+    }
+
+    /**
+     * Create a node containing a list of maps, for use with indexed paths
+     * such as <code>a.b[3].c</code>.
+     *
+     * @param size number of list entries
+     * @return the node
+     */
+    static ConfigurationNode indexedNode(int size) {
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < size; i++) {
+            Map<Object, Object> entry = new HashMap<Object, Object>();
+            entry.put("c", i);
+            list.add(entry);
+        }
+        ConfigurationNode node = new ConfigurationNode();
+        node.set("a.b", list);
+        return node;
+    }
+
+    /**
+     * Create a map suitable for the vector and location loaders.
+     *
+     * @param i seed for the coordinates
+     * @return a map with x, y and z
+     */
+    static Map<Object, Object> coordinates(int i) {
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        map.put("x", i * 1.5);
+        map.put("y", 64.0);
+        map.put("z", i * -2.5);
+        map.put("world", "world");
+        return map;
+    }
+
+    /**
+     * Create a document of roughly the given size in bytes once dumped as YAML.
+     *
+     * @param bytes approximate size
+     * @return root map
+     */
+    static Map<Object, Object> document(int bytes) {
+        Map<Object, Object> entries = new HashMap<Object, Object>();
+        int count = Math.max(1, bytes / 160);
+
+        for (int i = 0; i < count; i++) {
+            Map<Object, Object> entry = coordinates(i);
+            entry.put("owner", "player" + (i % 500));
+            entry.put("enabled", i % 2 == 0);
+            List<Object> flags = new ArrayList<Object>();
+            flags.add("build");
+            flags.add("pvp");
+            flags.add(i % 7);
+            entry.put("flags", flags);
+            entries.put("entry-" + i, entry);
+        }
+
+        Map<Object, Object> root = new HashMap<Object, Object>();
+        root.put("entries", entries);
+        return root;
+    }
+
+    /**
+     * Create a world that answers only to {@link World#getName()} and
+     * {@link World#getUID()}.
+     *
+     * @param name name of the world
+     * @return the world
+     */
+    static World world(final String name) {
+        final UUID uid = UUID.nameUUIDFromBytes(name.getBytes());
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(),
+                new Class<?>[] { World.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getName")) {
+                            return name;
+                        } else if (method.getName().equals("getUID")) {
+                            return uid;
+                        } else if (method.getName().equals("hashCode")) {
+                            return uid.hashCode();
+                        } else if (method.getName().equals("equals")) {
+                            return proxy == args[0];
+                        } else if (method.getName().equals("toString")) {
+                            return name;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Create a server that answers only to {@link Server#getWorld(String)}
+     * and {@link Server#getWorld(UUID)}, knowing the given worlds.
+     *
+     * @param worlds the worlds
+     * @return the server
+     */
+    static Server server(final World... worlds) {
+        return (Server) Proxy.newProxyInstance(Server.class.getClassLoader(),
+                new Class<?>[] { Server.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getWorld")) {
+                            for (World world : worlds) {
+                                if (world.getName().equals(args[0]) || world.getUID().equals(args[0])) {
+                                    return world;
+                                }
+                            }
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+}
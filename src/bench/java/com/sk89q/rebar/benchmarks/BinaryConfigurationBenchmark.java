@@ -0,0 +1,89 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.BinaryConfigurationFile;
+import com.sk89q.rebar.config.ConfigurationException;
+
+/**
+ * Loading and saving whole documents with {@link BinaryConfigurationFile},
+ * for comparison with {@link YamlConfigurationBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BinaryConfigurationBenchmark {
+
+    /**
+     * 1 KB, 1 MB and 50 MB documents.
+     */
+    @Param({ "1024", "1048576", "52428800" })
+    public int bytes;
+
+    private File source;
+    private File target;
+    private BinaryConfigurationFile loaded;
+    private BinaryConfigurationFile mapped;
+
+    @Setup
+    public void setUp() throws IOException, ConfigurationException {
+        source = File.createTempFile("rebar-bench", ".bin");
+        target = File.createTempFile("rebar-bench", ".bin");
+
+        BinaryConfigurationFile config = new BinaryConfigurationFile(source);
+        config.getUnderlyingMap().putAll(BenchmarkData.document(bytes));
+        config.save();
+
+        loaded = new BinaryConfigurationFile(source);
+        loaded.load();
+
+        mapped = new BinaryConfigurationFile(source);
+        mapped.setMemoryMapped(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        source.delete();
+        target.delete();
+    }
+
+    @Benchmark
+    public BinaryConfigurationFile load() throws IOException, ConfigurationException {
+        BinaryConfigurationFile config = new BinaryConfigurationFile(source);
+        config.load();
+        return config;
+    }
+
+    @Benchmark
+    public BinaryConfigurationFile loadMapped() throws IOException, ConfigurationException {
+        mapped.load();
+        return mapped;
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        BinaryConfigurationFile config = new BinaryConfigurationFile(target);
+        config.getUnderlyingMap().putAll(loaded.getUnderlyingMap());
+        config.save();
+        return target;
+    }
+
+}
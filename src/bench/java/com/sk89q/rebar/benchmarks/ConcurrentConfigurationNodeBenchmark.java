@@ -0,0 +1,74 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.ConcurrentConfigurationNode;
+import com.sk89q.rebar.config.ConfigPath;
+import com.sk89q.rebar.config.ValueMerger;
+
+/**
+ * Several threads updating per-player counters in one shared
+ * {@link ConcurrentConfigurationNode}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentConfigurationNodeBenchmark {
+
+    private static final ValueMerger sum = new ValueMerger() {
+        @Override
+        public Object merge(Object current, Object value) {
+            return (Integer) current + (Integer) value;
+        }
+    };
+
+    private final ConcurrentConfigurationNode node = new ConcurrentConfigurationNode();
+    private final ConfigPath[] paths = new ConfigPath[256];
+
+    public ConcurrentConfigurationNodeBenchmark() {
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = ConfigPath.of("players.player" + i + ".kills");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public Object merge(Cursor cursor) {
+        return node.merge(paths[cursor.next++ & (paths.length - 1)], 1, sum);
+    }
+
+    @Benchmark
+    public void set(Cursor cursor) {
+        node.set(paths[cursor.next++ & (paths.length - 1)], cursor.next);
+    }
+
+    @Benchmark
+    public Object get(Cursor cursor) {
+        return node.get(paths[cursor.next++ & (paths.length - 1)]);
+    }
+
+    @Benchmark
+    public Object snapshot() {
+        return node.snapshot();
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.ConfigPath;
+import com.sk89q.rebar.config.ConfigurationNode;
+import com.sk89q.rebar.config.JmxMetricsSink;
+
+/**
+ * Path lookups and writes on a single {@link ConfigurationNode}, and dumping
+ * a small node with <code>toString()</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationObjectBenchmark {
+
+    @Param({ "1", "4", "8" })
+    public int depth;
+
+    /**
+     * Whether the nodes send measurements to a {@link JmxMetricsSink}.
+     */
+    @Param({ "false", "true" })
+    public boolean metrics;
+
+    private ConfigurationNode node;
+    private ConfigurationNode indexed;
+    private String path;
+    private ConfigPath compiledPath;
+    private String indexedPath;
+    private ConfigPath compiledIndexedPath;
+    private ConfigurationNode numbers;
+
+    @Setup
+    public void setUp() {
+        node = BenchmarkData.deepNode(depth);
+        indexed = BenchmarkData.indexedNode(8);
+        path = BenchmarkData.deepPath(depth);
+        compiledPath = ConfigPath.of(path);
+        indexedPath = "a.b[3].c";
+        compiledIndexedPath = ConfigPath.of(indexedPath);
+
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < 64; i++) {
+            list.add(i);
+        }
+        numbers = new ConfigurationNode();
+        numbers.set("values", list);
+        numbers.set("scale", 2.5);
+
+        if (metrics) {
+            JmxMetricsSink sink = new JmxMetricsSink();
+            node.setMetricsSink(sink);
+            indexed.setMetricsSink(sink);
+            numbers.setMetricsSink(sink);
+        }
+    }
+
+    @Benchmark
+    public Object getDotted() {
+        return node.get(path);
+    }
+
+    @Benchmark
+    public Object getCompiled() {
+        return node.get(compiledPath);
+    }
+
+    @Benchmark
+    public int getIntDotted() {
+        return node.getInt(path, 0);
+    }
+
+    @Benchmark
+    public boolean containsDotted() {
+        return node.contains(path);
+    }
+
+    @Benchmark
+    public ConfigurationNode setDotted() {
+        node.set(path, 7);
+        return node;
+    }
+
+    @Benchmark
+    public ConfigurationNode setCompiled() {
+        node.set(compiledPath, 7);
+        return node;
+    }
+
+    @Benchmark
+    public Object getIndexed() {
+        return indexed.get(indexedPath);
+    }
+
+    @Benchmark
+    public Object getIndexedCompiled() {
+        return indexed.get(compiledIndexedPath);
+    }
+
+    @Benchmark
+    public ConfigurationNode setIndexed() {
+        indexed.set(indexedPath, 7);
+        return indexed;
+    }
+
+    @Benchmark
+    public double getDoublePrimitive() {
+        return numbers.getDouble("scale", 1);
+    }
+
+    @Benchmark
+    public List<Integer> getIntList() {
+        return numbers.getIntList("values", null);
+    }
+
+    @Benchmark
+    public int[] getIntArray() {
+        return numbers.getIntArray("values", null);
+    }
+
+    @Benchmark
+    public String dumpToString() {
+        return numbers.toString();
+    }
+
+}
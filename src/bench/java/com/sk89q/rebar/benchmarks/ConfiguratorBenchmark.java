@@ -0,0 +1,101 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.ConfigurationException;
+import com.sk89q.rebar.config.ConfigurationNode;
+import com.sk89q.rebar.config.annotations.CollectionOf;
+import com.sk89q.rebar.config.annotations.Configurator;
+import com.sk89q.rebar.config.annotations.Of;
+import com.sk89q.rebar.config.annotations.Setting;
+import com.sk89q.rebar.config.types.EnumLoaderBuilder;
+import com.sk89q.rebar.config.types.IntegerLoaderBuilder;
+import com.sk89q.rebar.config.types.StringLoaderBuilder;
+
+/**
+ * Binding of {@link Setting} annotated objects with {@link Configurator}, with
+ * the binder generated by the annotation processor and with reflection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfiguratorBenchmark {
+
+    public static class TimeUnitLoaderBuilder extends EnumLoaderBuilder<TimeUnit> {
+        public TimeUnitLoaderBuilder() {
+            super(TimeUnit.class);
+        }
+    }
+
+    public static class Settings {
+        @Setting public String name;
+        @Setting("max-players") public int maxPlayers;
+        @Setting("spawn-radius") public double spawnRadius;
+        @Setting("pvp-enabled") public boolean pvpEnabled;
+        @Setting(required = false) public String motd;
+        @Setting("limits.chunk-entities") public int chunkEntities;
+        @Setting("save-unit") @Of(TimeUnitLoaderBuilder.class) public TimeUnit saveUnit;
+        @Setting("save-interval") @Of(IntegerLoaderBuilder.class) public Integer saveInterval;
+        @Setting("disabled-commands") @CollectionOf(StringLoaderBuilder.class) public List<String> disabledCommands;
+    }
+
+    @Param({ "true", "false" })
+    public boolean generated;
+
+    private final Configurator configurator = new Configurator();
+    private ConfigurationNode node;
+    private Settings settings;
+
+    @Setup
+    public void setUp() throws ConfigurationException {
+        configurator.setUseGeneratedBinders(generated);
+
+        node = new ConfigurationNode();
+        node.set("name", "survival");
+        node.set("max-players", 100);
+        node.set("spawn-radius", 16.0);
+        node.set("pvp-enabled", true);
+        node.set("limits.chunk-entities", 50);
+        node.set("save-unit", "minutes");
+        node.set("save-interval", 5);
+        List<Object> commands = new ArrayList<Object>();
+        commands.add("op");
+        commands.add("stop");
+        node.set("disabled-commands", commands);
+
+        settings = new Settings();
+        configurator.load(settings, node);
+    }
+
+    @Benchmark
+    public Settings load() throws ConfigurationException {
+        Settings object = new Settings();
+        configurator.load(object, node);
+        return object;
+    }
+
+    @Benchmark
+    public ConfigurationNode save() throws ConfigurationException {
+        ConfigurationNode to = new ConfigurationNode();
+        configurator.save(settings, to);
+        return to;
+    }
+
+}
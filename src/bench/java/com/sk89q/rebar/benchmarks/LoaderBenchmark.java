@@ -0,0 +1,199 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.Builder;
+import com.sk89q.rebar.config.ConfigurationNode;
+import com.sk89q.rebar.config.DummyBuilder;
+import com.sk89q.rebar.config.KeyValueLoader;
+import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.PairedKeyValueLoaderBuilder;
+import com.sk89q.rebar.config.ParallelDecoder;
+import com.sk89q.rebar.config.types.BlockVector2dLoaderBuilder;
+import com.sk89q.rebar.config.types.BooleanLoaderBuilder;
+import com.sk89q.rebar.config.types.BoneCPConfigLoaderBuilder;
+import com.sk89q.rebar.config.types.ClassLoaderBuilder;
+import com.sk89q.rebar.config.types.DoubleLoaderBuilder;
+import com.sk89q.rebar.config.types.EnumLoaderBuilder;
+import com.sk89q.rebar.config.types.FloatLoaderBuilder;
+import com.sk89q.rebar.config.types.IntegerLoaderBuilder;
+import com.sk89q.rebar.config.types.LocationLoaderBuilder;
+import com.sk89q.rebar.config.types.LongLoaderBuilder;
+import com.sk89q.rebar.config.types.LowercaseStringLoaderBuilder;
+import com.sk89q.rebar.config.types.MaterialPatternLoaderBuilder;
+import com.sk89q.rebar.config.types.NodeLoaderBuilder;
+import com.sk89q.rebar.config.types.StaticFieldLoaderBuilder;
+import com.sk89q.rebar.config.types.StringLoaderBuilder;
+import com.sk89q.rebar.config.types.Vector2dLoaderBuilder;
+import com.sk89q.rebar.config.types.VectorLoaderBuilder;
+
+/**
+ * <code>listOf()</code> and <code>mapOf()</code> with each of the built-in
+ * loaders in <code>com.sk89q.rebar.config.types</code>, decoded sequentially
+ * and with a {@link ParallelDecoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoaderBenchmark {
+
+    @Param({ "string", "lowercase-string", "boolean", "integer", "long", "double",
+            "float", "enum", "static-field", "class", "node", "vector", "vector2d",
+            "block-vector2d", "location", "material-pattern", "bonecp" })
+    public String type;
+
+    @Param({ "1000" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    private ConfigurationNode node;
+    private Loader<?> loader;
+    private KeyValueLoader<?, ?> keyValueLoader;
+
+    @Setup
+    public void setUp() {
+        List<Object> values = new ArrayList<Object>();
+        Map<Object, Object> map = new HashMap<Object, Object>();
+
+        for (int i = 0; i < size; i++) {
+            Object value = createValue(i);
+            values.add(value);
+            map.put("key" + i, value);
+        }
+
+        node = new ConfigurationNode();
+        node.set("list", values);
+        node.set("map", map);
+        if (parallel) {
+            node.setParallelDecoder(new ParallelDecoder());
+        }
+
+        loader = createLoader();
+        keyValueLoader = pair(new StringLoaderBuilder(), loader);
+    }
+
+    private Object createValue(int i) {
+        if (type.equals("string") || type.equals("lowercase-string")) {
+            return "Value" + i;
+        } else if (type.equals("boolean")) {
+            return i % 2 == 0;
+        } else if (type.equals("integer")) {
+            return i;
+        } else if (type.equals("long")) {
+            return (long) i;
+        } else if (type.equals("double")) {
+            return i * 0.5;
+        } else if (type.equals("float")) {
+            return (float) i;
+        } else if (type.equals("enum") || type.equals("static-field")) {
+            TimeUnit[] units = TimeUnit.values();
+            String name = units[i % units.length].name();
+            // Mix in names that miss the exact match
+            return i % 2 == 0 ? name : name.toLowerCase().replace("_", "");
+        } else if (type.equals("class")) {
+            return i % 2 == 0 ? "java.lang.String" : "java.util.HashMap";
+        } else if (type.equals("material-pattern")) {
+            if (i % 2 == 0) {
+                return i % 256;
+            }
+            Map<Object, Object> pattern = new HashMap<Object, Object>();
+            List<Object> data = new ArrayList<Object>();
+            data.add(1);
+            data.add("4..8");
+            pattern.put(i % 256, data);
+            return pattern;
+        } else if (type.equals("bonecp")) {
+            Map<Object, Object> config = new HashMap<Object, Object>();
+            config.put("dsn", "jdbc:mysql://localhost/db" + i);
+            config.put("username", "user");
+            config.put("password", "pass");
+            return config;
+        } else {
+            return BenchmarkData.coordinates(i);
+        }
+    }
+
+    private Loader<?> createLoader() {
+        if (type.equals("string")) {
+            return new StringLoaderBuilder();
+        } else if (type.equals("lowercase-string")) {
+            return new LowercaseStringLoaderBuilder();
+        } else if (type.equals("boolean")) {
+            return new BooleanLoaderBuilder();
+        } else if (type.equals("integer")) {
+            return new IntegerLoaderBuilder();
+        } else if (type.equals("long")) {
+            return new LongLoaderBuilder();
+        } else if (type.equals("double")) {
+            return new DoubleLoaderBuilder();
+        } else if (type.equals("float")) {
+            return new FloatLoaderBuilder();
+        } else if (type.equals("enum")) {
+            return new EnumLoaderBuilder<TimeUnit>(TimeUnit.class);
+        } else if (type.equals("static-field")) {
+            return new StaticFieldLoaderBuilder<TimeUnit>(TimeUnit.class);
+        } else if (type.equals("class")) {
+            return new ClassLoaderBuilder();
+        } else if (type.equals("node")) {
+            return new NodeLoaderBuilder();
+        } else if (type.equals("vector")) {
+            return new VectorLoaderBuilder();
+        } else if (type.equals("vector2d")) {
+            return new Vector2dLoaderBuilder();
+        } else if (type.equals("block-vector2d")) {
+            return new BlockVector2dLoaderBuilder();
+        } else if (type.equals("location")) {
+            return new LocationLoaderBuilder(BenchmarkData.world("world"));
+        } else if (type.equals("material-pattern")) {
+            return new MaterialPatternLoaderBuilder(null);
+        } else if (type.equals("bonecp")) {
+            return new BoneCPConfigLoaderBuilder();
+        } else {
+            throw new IllegalArgumentException("Unknown loader type " + type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V, E extends Loader<K> & Builder<K>> KeyValueLoader<K, V> pair(
+            E keyLoader, Loader<?> valueLoader) {
+        return PairedKeyValueLoaderBuilder.build(keyLoader,
+                new DummyBuilder<V>((Loader<V>) valueLoader));
+    }
+
+    @Benchmark
+    public Object listOf() {
+        return node.listOf("list", loader);
+    }
+
+    @Benchmark
+    public Object setOf() {
+        return node.setOf("list", loader);
+    }
+
+    @Benchmark
+    public Object mapOf() {
+        return node.mapOf("map", keyValueLoader);
+    }
+
+}
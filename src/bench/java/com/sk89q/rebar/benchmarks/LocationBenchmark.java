@@ -0,0 +1,76 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.ConfigurationNode;
+import com.sk89q.rebar.config.types.LocationLoaderBuilder;
+
+/**
+ * Loading a large list of locations spread over a few worlds, one at a time
+ * through <code>listOf()</code> and in bulk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmark {
+
+    @Param({ "10000" })
+    public int size;
+
+    private ConfigurationNode node;
+    private LocationLoaderBuilder loader;
+
+    @Setup
+    public void setUp() {
+        World[] worlds = new World[] {
+                BenchmarkData.world("world"),
+                BenchmarkData.world("world_nether"),
+                BenchmarkData.world("world_the_end") };
+
+        List<Object> values = new ArrayList<Object>();
+        for (int i = 0; i < size; i++) {
+            Map<Object, Object> location = BenchmarkData.coordinates(i);
+            location.put("world", worlds[i % worlds.length].getName());
+            values.add(location);
+        }
+
+        node = new ConfigurationNode();
+        node.set("locations", values);
+        loader = new LocationLoaderBuilder(BenchmarkData.server(worlds), false);
+    }
+
+    @Benchmark
+    public Object listOf() {
+        return node.listOf("locations", loader);
+    }
+
+    @Benchmark
+    public Object readAll() {
+        return loader.readAll(node.getList("locations"));
+    }
+
+    @Benchmark
+    public Object readPacked() {
+        return loader.readPacked(node.getList("locations"));
+    }
+
+}
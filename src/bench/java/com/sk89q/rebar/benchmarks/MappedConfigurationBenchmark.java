@@ -0,0 +1,94 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.BinaryConfigurationFile;
+import com.sk89q.rebar.config.ConfigurationException;
+import com.sk89q.rebar.config.IndexedBinaryFormat;
+import com.sk89q.rebar.config.MappedConfigurationFile;
+
+/**
+ * Loading a document with {@link MappedConfigurationFile} and reading one
+ * value from it, compared to loading the whole document into memory with
+ * {@link BinaryConfigurationFile} first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MappedConfigurationBenchmark {
+
+    /**
+     * 1 KB, 1 MB and 50 MB documents.
+     */
+    @Param({ "1024", "1048576", "52428800" })
+    public int bytes;
+
+    private File binary;
+    private File indexed;
+    private MappedConfigurationFile mapped;
+
+    @Setup
+    public void setUp() throws IOException, ConfigurationException {
+        binary = File.createTempFile("rebar-bench", ".bin");
+        indexed = File.createTempFile("rebar-bench", ".rbi");
+
+        BinaryConfigurationFile config = new BinaryConfigurationFile(binary);
+        config.getUnderlyingMap().putAll(BenchmarkData.document(bytes));
+        config.save();
+
+        FileOutputStream out = new FileOutputStream(indexed);
+        try {
+            IndexedBinaryFormat.write(config.getUnderlyingMap(), out);
+        } finally {
+            out.close();
+        }
+
+        mapped = new MappedConfigurationFile(indexed, false);
+        mapped.load();
+    }
+
+    @TearDown
+    public void tearDown() {
+        binary.delete();
+        indexed.delete();
+    }
+
+    @Benchmark
+    public String loadAndRead() throws IOException, ConfigurationException {
+        BinaryConfigurationFile config = new BinaryConfigurationFile(binary);
+        config.load();
+        return config.getString("entries.entry-0.owner");
+    }
+
+    @Benchmark
+    public String mapAndRead() throws IOException, ConfigurationException {
+        MappedConfigurationFile config = new MappedConfigurationFile(indexed, false);
+        config.load();
+        return config.getString("entries.entry-0.owner");
+    }
+
+    @Benchmark
+    public String readMapped() {
+        return mapped.getString("entries.entry-0.owner");
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.util.MaterialPattern;
+import com.sk89q.rebar.util.MaterialPatternSet;
+
+/**
+ * Matching blocks against a list of {@link MaterialPattern}s, as done by
+ * protection and filter checks, and against the same patterns compiled into
+ * a {@link MaterialPatternSet}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaterialPatternBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int patternCount;
+
+    private final List<MaterialPattern> patterns = new ArrayList<MaterialPattern>();
+    private MaterialPatternSet set;
+    private final int[] materials = new int[1024];
+    private final int[] data = new int[1024];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+
+        for (int i = 0; i < patternCount; i++) {
+            MaterialPattern pattern = new MaterialPattern(random.nextInt(256));
+            if (i % 3 == 1) {
+                pattern.filterData(random.nextInt(16));
+            } else if (i % 3 == 2) {
+                pattern.filterData(1);
+                pattern.filterDataRange(4, 8);
+            }
+            patterns.add(pattern);
+        }
+
+        set = new MaterialPatternSet(patterns);
+
+        for (int i = 0; i < materials.length; i++) {
+            materials[i] = random.nextInt(256);
+            data[i] = random.nextInt(16);
+        }
+    }
+
+    @Benchmark
+    public boolean matchesAny() {
+        int i = next++ & (materials.length - 1);
+        int material = materials[i];
+        int value = data[i];
+
+        for (MaterialPattern pattern : patterns) {
+            if (pattern.matches(material, value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Benchmark
+    public boolean matchesSet() {
+        int i = next++ & (materials.length - 1);
+        return set.matches(materials[i], data[i]);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.ConfigurationNode;
+
+/**
+ * Lookups that fall through a chain of parent nodes set with
+ * {@link ConfigurationNode#setParent(ConfigurationNode)}, with and without
+ * {@link ConfigurationNode#setParentIndexing(boolean)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParentChainBenchmark {
+
+    @Param({ "1", "3", "6" })
+    public int chainLength;
+
+    @Param({ "2", "5" })
+    public int depth;
+
+    @Param({ "false", "true" })
+    public boolean parentIndexing;
+
+    private ConfigurationNode leaf;
+    private String inheritedPath;
+    private String localPath;
+    private String missingPath;
+
+    @Setup
+    public void setUp() {
+        inheritedPath = BenchmarkData.deepPath(depth);
+        localPath = "local." + inheritedPath;
+        missingPath = "missing." + inheritedPath;
+
+        // The root of the chain holds the inherited value
+        ConfigurationNode node = BenchmarkData.deepNode(depth);
+        for (int i = 0; i < chainLength; i++) {
+            ConfigurationNode child = new ConfigurationNode();
+            child.set("level" + i, i);
+            child.setParent(node);
+            node = child;
+        }
+
+        // Values have to be set before the parent, otherwise they are
+        // written through to the parent
+        leaf = new ConfigurationNode();
+        leaf.set(localPath, 1);
+        leaf.setParent(node);
+        leaf.setParentIndexing(parentIndexing);
+    }
+
+    @Benchmark
+    public Object getLocal() {
+        return leaf.get(localPath);
+    }
+
+    @Benchmark
+    public Object getInherited() {
+        return leaf.get(inheritedPath);
+    }
+
+    @Benchmark
+    public Object getMissing() {
+        return leaf.get(missingPath);
+    }
+
+    @Benchmark
+    public boolean containsInherited() {
+        return leaf.contains(inheritedPath);
+    }
+
+}
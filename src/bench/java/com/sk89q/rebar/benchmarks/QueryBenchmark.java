@@ -0,0 +1,93 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.ConfigPath;
+import com.sk89q.rebar.config.ConfigQuery;
+import com.sk89q.rebar.config.ConfigurationNode;
+import com.sk89q.rebar.config.QueryResult;
+
+/**
+ * Reading the flags of every world one path at a time, compared to reading
+ * them with a {@link ConfigQuery}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final int WORLDS = 10;
+    private static final int FLAGS = 20;
+
+    private ConfigurationNode node;
+    private ConfigPath[] paths;
+    private ConfigQuery query;
+    private ConfigQuery wildcardQuery;
+
+    @Setup
+    public void setUp() {
+        node = new ConfigurationNode();
+        paths = new ConfigPath[WORLDS * FLAGS];
+
+        for (int w = 0; w < WORLDS; w++) {
+            for (int f = 0; f < FLAGS; f++) {
+                String path = "worlds.world" + w + ".flags.flag" + f;
+                node.set(path, f % 2 == 0);
+                paths[w * FLAGS + f] = ConfigPath.of(path);
+            }
+        }
+
+        query = ConfigQuery.of(paths);
+        wildcardQuery = ConfigQuery.of("worlds.*.flags.*");
+    }
+
+    @Benchmark
+    public int getEach() {
+        int enabled = 0;
+        for (ConfigPath path : paths) {
+            if (node.getBoolean(path, false)) {
+                enabled++;
+            }
+        }
+        return enabled;
+    }
+
+    @Benchmark
+    public int query() {
+        QueryResult result = node.query(query);
+        int enabled = 0;
+        for (int i = 0; i < paths.length; i++) {
+            if (result.getBoolean(i, false)) {
+                enabled++;
+            }
+        }
+        return enabled;
+    }
+
+    @Benchmark
+    public int wildcardQuery() {
+        QueryResult result = node.query(wildcardQuery);
+        int enabled = 0;
+        for (int i = 0; i < result.getMatchCount(0); i++) {
+            if (result.get(0, i) == Boolean.TRUE) {
+                enabled++;
+            }
+        }
+        return enabled;
+    }
+
+}
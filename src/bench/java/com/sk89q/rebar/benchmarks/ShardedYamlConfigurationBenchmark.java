@@ -0,0 +1,91 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.ShardedYamlConfiguration;
+import com.sk89q.rebar.config.YamlConfigurationFile;
+
+/**
+ * Saving after changing one entry, with the whole document in one file and
+ * with each entry in its own file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ShardedYamlConfigurationBenchmark {
+
+    /**
+     * 1 KB and 1 MB documents.
+     */
+    @Param({ "1024", "1048576" })
+    public int bytes;
+
+    private File file;
+    private File directory;
+    private YamlConfigurationFile whole;
+    private ShardedYamlConfiguration sharded;
+    private int counter;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("rebar-bench", ".yml");
+        directory = File.createTempFile("rebar-bench", "");
+        directory.delete();
+        directory.mkdir();
+
+        Map<?, ?> entries = (Map<?, ?>) BenchmarkData.document(bytes).get("entries");
+
+        whole = new YamlConfigurationFile(file);
+        whole.getUnderlyingMap().putAll(entries);
+        whole.save();
+
+        sharded = new ShardedYamlConfiguration(directory);
+        sharded.getUnderlyingMap().putAll(entries);
+        sharded.markDirty();
+        sharded.save();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File shard : files) {
+                shard.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void saveWholeFile() throws IOException {
+        whole.set("entry-0.owner", "player" + counter++);
+        whole.save();
+    }
+
+    @Benchmark
+    public int saveChangedShard() throws IOException {
+        sharded.set("entry-0.owner", "player" + counter++);
+        return sharded.save();
+    }
+
+}
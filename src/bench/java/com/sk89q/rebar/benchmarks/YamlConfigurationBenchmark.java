@@ -0,0 +1,123 @@
+package com.sk89q.rebar.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.rebar.config.ConfigurationException;
+import com.sk89q.rebar.config.YamlConfigurationFile;
+
+/**
+ * Loading and saving whole YAML documents with {@link YamlConfigurationFile}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class YamlConfigurationBenchmark {
+
+    /**
+     * 1 KB, 1 MB and 50 MB documents.
+     */
+    @Param({ "1024", "1048576", "52428800" })
+    public int bytes;
+
+    /**
+     * Whether values are constructed when they are first read.
+     */
+    @Param({ "false", "true" })
+    public boolean lazy;
+
+    private File source;
+    private File target;
+    private YamlConfigurationFile loaded;
+
+    @Setup
+    public void setUp() throws IOException, ConfigurationException {
+        source = File.createTempFile("rebar-bench", ".yml");
+        target = File.createTempFile("rebar-bench", ".yml");
+
+        YamlConfigurationFile config = new YamlConfigurationFile(source);
+        config.getUnderlyingMap().putAll(BenchmarkData.document(bytes));
+        config.save();
+
+        loaded = new YamlConfigurationFile(source);
+        loaded.load();
+    }
+
+    @TearDown
+    public void tearDown() {
+        source.delete();
+        target.delete();
+    }
+
+    @Benchmark
+    public YamlConfigurationFile load() throws IOException, ConfigurationException {
+        YamlConfigurationFile config = new YamlConfigurationFile(source);
+        config.setLazyLoading(lazy);
+        config.load();
+        return config;
+    }
+
+    @Benchmark
+    public Object loadAndReadOneKey() throws IOException, ConfigurationException {
+        YamlConfigurationFile config = new YamlConfigurationFile(source);
+        config.setLazyLoading(lazy);
+        config.load();
+        return config.getUnderlyingMap().values().iterator().next();
+    }
+
+    /**
+     * Reports the heap that a loaded configuration keeps alive, which for
+     * lazy loading includes the YAML nodes of values that were not read.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+        public long retainedKilobytes;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public YamlConfigurationFile loadRetained(RetainedHeap heap) throws IOException, ConfigurationException {
+        long before = usedHeap();
+        YamlConfigurationFile config = new YamlConfigurationFile(source);
+        config.setLazyLoading(lazy);
+        config.load();
+        heap.retainedKilobytes += (usedHeap() - before) / 1024;
+        return config;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        YamlConfigurationFile config = new YamlConfigurationFile(target);
+        config.getUnderlyingMap().putAll(loaded.getUnderlyingMap());
+        config.save();
+        return target;
+    }
+
+}
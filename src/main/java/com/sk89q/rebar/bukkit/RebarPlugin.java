@@ -7,6 +7,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import com.sk89q.rebar.Rebar;
 import com.sk89q.rebar.RebarInstance;
+import com.sk89q.rebar.config.YamlEngines;
 
 public class RebarPlugin extends JavaPlugin implements Rebar {
     
@@ -22,6 +23,11 @@ public class RebarPlugin extends JavaPlugin implements Rebar {
         logger.info("Rebar: Loaded.");
     }
 
+    @Override
+    public void onDisable() {
+        YamlEngines.clear();
+    }
+
     @Override
     public File getDataDirectory() {
         return getDataFolder();
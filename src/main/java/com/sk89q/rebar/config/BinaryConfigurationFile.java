@@ -0,0 +1,147 @@
+package com.sk89q.rebar.config;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads and saves configurations from/to a file in the binary format of
+ * {@link BinaryFormat}, which holds the same tree as a YAML file but is much
+ * faster to read and write. When saving the configuration, the parent folder
+ * to contain the file will be created recursively, and the file is replaced
+ * only once the new contents have been completely written.
+ *
+ * @see ConfigurationConverter
+ */
+public class BinaryConfigurationFile extends ConfigurationNode {
+
+    private final File file;
+    private final boolean ignoreNotFound;
+    private boolean memoryMapped = false;
+
+    /**
+     * Create a new binary configuration from a file. Be aware that {@link #load()}
+     * still has to be called at least once before anything is loaded from the file.
+     * By default, this constructor will enable the "ignore missing files" option
+     * when loading.
+     *
+     * @param file the file
+     */
+    public BinaryConfigurationFile(File file) {
+        this(file, true);
+    }
+
+    /**
+     * Create a new binary configuration from a file. Be aware that {@link #load()}
+     * still has to be called at least once before anything is loaded from the file.
+     *
+     * @param file the file
+     * @param ignoreNotFound true to have {@link FileNotFoundException} errors ignored
+     */
+    public BinaryConfigurationFile(File file, boolean ignoreNotFound) {
+        super(new HashMap<Object, Object>());
+
+        this.file = file;
+        this.ignoreNotFound = ignoreNotFound;
+    }
+
+    /**
+     * Get the file that this configuration is loaded from and saved to.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Set whether the file is memory mapped when loading instead of being read
+     * into memory. Mapping avoids a copy of the file, but on some platforms
+     * the file cannot be replaced until the mapping has been garbage
+     * collected, so it should be used for files that are rarely saved.
+     *
+     * @param memoryMapped true to memory map the file
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Returns whether the file is memory mapped when loading.
+     *
+     * @return true if the file is memory mapped
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Loads the configuration file.
+     *
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error
+     */
+    public void load() throws IOException, ConfigurationException {
+        FileInputStream stream;
+
+        try {
+            stream = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            if (ignoreNotFound) {
+                return;
+            }
+
+            throw e;
+        }
+
+        try {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer buffer;
+
+            if (memoryMapped) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                }
+                buffer.flip();
+            }
+
+            Object root = BinaryFormat.read(buffer);
+            if (!(root instanceof Map<?, ?>)) {
+                throw new ConfigurationException("The root of " + file.getAbsolutePath()
+                        + " is not a map");
+            }
+            setRoot(root);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Saves the configuration to disk.
+     *
+     * @throws IOException on I/O error
+     */
+    public void save() throws IOException {
+        FileReplacement replacement = new FileReplacement(file);
+
+        try {
+            BufferedOutputStream buffered = new BufferedOutputStream(replacement.getStream());
+            BinaryFormat.write(getRoot(), buffered);
+            replacement.commit();
+        } finally {
+            replacement.abort();
+        }
+    }
+
+}
@@ -0,0 +1,416 @@
+package com.sk89q.rebar.config;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes configuration trees (maps, lists and scalars, as produced
+ * by the YAML loader) in a compact binary format.
+ * </p>
+ * A file starts with a magic number and version, followed by a table of the
+ * strings that are used as map keys or appear more than once, and then the
+ * root value. Every value starts with a type byte. Lengths, counts, string
+ * table indexes and integers are written as variable-length integers, and
+ * strings as UTF-8.
+ */
+public final class BinaryFormat {
+
+    private static final int MAGIC = 0x52424346; // RBCF
+    private static final int VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte STRING = 7;
+    private static final byte STRING_REF = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte DATE = 12;
+    private static final byte BYTES = 13;
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Write a tree.
+     *
+     * @param root the root value
+     * @param out the stream to write to, which is flushed but not closed
+     * @throws IOException on I/O error, or if the tree contains a value that cannot be written
+     */
+    public static void write(Object root, OutputStream out) throws IOException {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        countStrings(root, counts);
+
+        Map<String, Integer> table = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                table.put(entry.getKey(), strings.size());
+                strings.add(entry.getKey());
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        writeVarInt(data, VERSION);
+        writeVarInt(data, strings.size());
+        for (String string : strings) {
+            writeBytes(data, string.getBytes("UTF-8"));
+        }
+
+        writeValue(data, root, table);
+        data.flush();
+    }
+
+    /**
+     * Count the number of times that each string occurs in a tree. Map keys
+     * are counted twice so that they always go into the string table.
+     *
+     * @param value the tree
+     * @param counts map to count in
+     */
+    private static void countStrings(Object value, Map<String, Integer> counts) {
+        if (value instanceof ConfigurationNode) {
+            value = ((ConfigurationNode) value).getUnderlyingMap();
+        }
+
+        if (value instanceof String) {
+            Integer count = counts.get(value);
+            counts.put((String) value, count != null ? count + 1 : 1);
+        } else if (value instanceof Map<?, ?>) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (entry.getKey() instanceof String) {
+                    Integer count = counts.get(entry.getKey());
+                    counts.put((String) entry.getKey(), count != null ? count + 2 : 2);
+                } else {
+                    countStrings(entry.getKey(), counts);
+                }
+                countStrings(entry.getValue(), counts);
+            }
+        } else if (value instanceof List<?>) {
+            for (Object element : (List<?>) value) {
+                countStrings(element, counts);
+            }
+        }
+    }
+
+    /**
+     * Write a value.
+     *
+     * @param out the stream
+     * @param value the value
+     * @param table the string table
+     * @throws IOException on I/O error
+     */
+    private static void writeValue(DataOutputStream out, Object value,
+            Map<String, Integer> table) throws IOException {
+        if (value instanceof ConfigurationNode) {
+            value = ((ConfigurationNode) value).getUnderlyingMap();
+        }
+
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            Integer index = table.get(value);
+            if (index != null) {
+                out.writeByte(STRING_REF);
+                writeVarInt(out, index);
+            } else {
+                out.writeByte(STRING);
+                writeBytes(out, ((String) value).getBytes("UTF-8"));
+            }
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            writeVarLong(out, ((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Map<?, ?>) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey(), table);
+                writeValue(out, entry.getValue(), table);
+            }
+        } else if (value instanceof List<?>) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            writeVarInt(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element, table);
+            }
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else {
+            throw new IOException("Can't write value of type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Write a length-prefixed array of bytes.
+     *
+     * @param out the stream
+     * @param bytes the bytes
+     * @throws IOException on I/O error
+     */
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Write a non-negative integer using as few bytes as possible.
+     *
+     * @param out the stream
+     * @param value the value
+     * @throws IOException on I/O error
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Write a signed integer using as few bytes as possible, so that numbers
+     * close to zero are short.
+     *
+     * @param out the stream
+     * @param value the value
+     * @throws IOException on I/O error
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        value = (value << 1) ^ (value >> 63);
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Read a tree. The buffer is read from its current position.
+     *
+     * @param buffer the buffer
+     * @return the root value
+     * @throws ConfigurationException thrown if the data is not valid
+     */
+    public static Object read(ByteBuffer buffer) throws ConfigurationException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new ConfigurationException("Not a binary configuration");
+            }
+
+            int version = readVarInt(buffer);
+            if (version != VERSION) {
+                throw new ConfigurationException("Unsupported binary configuration version " + version);
+            }
+
+            String[] table = new String[readCount(buffer)];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = readString(buffer);
+            }
+
+            return readValue(buffer, table);
+        } catch (BufferUnderflowException e) {
+            throw new ConfigurationException("Binary configuration is truncated", e);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ConfigurationException("Binary configuration is corrupt", e);
+        } catch (NegativeArraySizeException e) {
+            throw new ConfigurationException("Binary configuration is corrupt", e);
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException("Binary configuration is corrupt", e);
+        }
+    }
+
+    /**
+     * Read a value.
+     *
+     * @param buffer the buffer
+     * @param table the string table
+     * @return the value
+     * @throws ConfigurationException thrown if the data is not valid
+     */
+    private static Object readValue(ByteBuffer buffer, String[] table)
+            throws ConfigurationException {
+        byte type = buffer.get();
+
+        switch (type) {
+            case NULL:
+                return null;
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            case INT:
+                return (int) readVarLong(buffer);
+            case LONG:
+                return readVarLong(buffer);
+            case DOUBLE:
+                return buffer.getDouble();
+            case FLOAT:
+                return buffer.getFloat();
+            case STRING:
+                return readString(buffer);
+            case STRING_REF:
+                return table[readVarInt(buffer)];
+            case LIST: {
+                int size = readCount(buffer);
+                List<Object> list = new ArrayList<Object>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer, table));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = readCount(buffer);
+                Map<Object, Object> map = new LinkedHashMap<Object, Object>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue(buffer, table);
+                    map.put(key, readValue(buffer, table));
+                }
+                return map;
+            }
+            case BIG_INTEGER:
+                return new BigInteger(readBytes(buffer));
+            case DATE:
+                return new Date(buffer.getLong());
+            case BYTES:
+                return readBytes(buffer);
+            default:
+                throw new ConfigurationException("Unknown value type " + type
+                        + " at offset " + (buffer.position() - 1));
+        }
+    }
+
+    /**
+     * Read a length-prefixed array of bytes.
+     *
+     * @param buffer the buffer
+     * @return the bytes
+     * @throws ConfigurationException thrown if the length is too large
+     */
+    private static byte[] readBytes(ByteBuffer buffer) throws ConfigurationException {
+        byte[] bytes = new byte[readCount(buffer)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read a length-prefixed UTF-8 string.
+     *
+     * @param buffer the buffer
+     * @return the string
+     * @throws ConfigurationException thrown if the length is too large
+     */
+    private static String readString(ByteBuffer buffer) throws ConfigurationException {
+        int length = readCount(buffer);
+
+        try {
+            if (buffer.hasArray()) {
+                String string = new String(buffer.array(),
+                        buffer.arrayOffset() + buffer.position(), length, "UTF-8");
+                buffer.position(buffer.position() + length);
+                return string;
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                return new String(bytes, "UTF-8");
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Read the length of an array, string or collection. Every element takes
+     * at least one byte, so a count that is larger than the number of bytes
+     * left can only come from corrupt data, and is rejected before anything
+     * is allocated for it.
+     *
+     * @param buffer the buffer
+     * @return the count
+     * @throws ConfigurationException thrown if the count is too large
+     */
+    private static int readCount(ByteBuffer buffer) throws ConfigurationException {
+        int offset = buffer.position();
+        int count = readVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new ConfigurationException("Binary configuration is corrupt: length " + count
+                    + " at offset " + offset + " is larger than the remaining data");
+        }
+        return count;
+    }
+
+    /**
+     * Read a non-negative variable-length integer.
+     *
+     * @param buffer the buffer
+     * @return the value
+     */
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+
+    /**
+     * Read a signed variable-length integer.
+     *
+     * @param buffer the buffer
+     * @return the value
+     */
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 70);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -0,0 +1,310 @@
+package com.sk89q.rebar.config;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pre-parsed path into a configuration tree. Parts of the path are delimited
+ * by periods (.) and each part may end with a list index (i.e. items[3]).
+ * </p>
+ * Paths are immutable and can be shared between threads. Use {@link #of(String)}
+ * to get a path, which will be re-used for subsequent calls with the same string
+ * so that frequently accessed paths are only parsed once.
+ *
+ * @author sk89q
+ */
+public final class ConfigPath {
+
+    /**
+     * The maximum number of paths kept in the cache used by {@link #of(String)}.
+     */
+    private static final int MAX_CACHED = 4096;
+
+    private static final Map<String, ConfigPath> cache =
+            new ConcurrentHashMap<String, ConfigPath>();
+
+    /**
+     * The path that refers to the root object.
+     */
+    public static final ConfigPath ROOT = new ConfigPath("", new String[0], new int[0]);
+
+    private final String path;
+    private final String[] keys;
+    private final int[] indexes;
+    private final int hash;
+
+    /**
+     * Construct the path.
+     *
+     * @param path the original path string
+     * @param keys the map key of each part
+     * @param indexes the list index of each part, or -1 where there is none
+     */
+    private ConfigPath(String path, String[] keys, int[] indexes) {
+        this.path = path;
+        this.keys = keys;
+        this.indexes = indexes;
+        this.hash = 31 * Arrays.hashCode(keys) + Arrays.hashCode(indexes);
+    }
+
+    /**
+     * Get the path for the given string (dot notation). Parsed paths are cached,
+     * so calling this method repeatedly with the same string is cheap.
+     *
+     * @param path path (dot notation)
+     * @return the path
+     */
+    public static ConfigPath of(String path) {
+        if (path.length() == 0) {
+            return ROOT;
+        }
+
+        ConfigPath parsed = cache.get(path);
+        if (parsed != null) {
+            return parsed;
+        }
+
+        parsed = parse(path);
+
+        // Keep the cache bounded; dropping every entry is crude, but paths are
+        // cheap to re-parse and a working set larger than this is unusual
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+
+        cache.put(path, parsed);
+        return parsed;
+    }
+
+    /**
+     * Get the path for the given parts. Each part may still end with an index.
+     * The returned path is not cached.
+     *
+     * @param parts parts of the path
+     * @return the path
+     */
+    public static ConfigPath fromParts(String[] parts) {
+        if (parts.length == 0) {
+            return ROOT;
+        }
+
+        String[] keys = new String[parts.length];
+        int[] indexes = new int[parts.length];
+        StringBuilder path = new StringBuilder();
+
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                path.append('.');
+            }
+            path.append(parts[i]);
+            parsePart(parts[i], i, keys, indexes);
+        }
+
+        return new ConfigPath(path.toString(), keys, indexes);
+    }
+
+    /**
+     * Parse a path in dot notation. Trailing empty parts are dropped, which
+     * matches the behavior of {@link String#split(String)}.
+     *
+     * @param path the path
+     * @return the parsed path
+     */
+    private static ConfigPath parse(String path) {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == '.') {
+            end--;
+        }
+
+        if (end == 0) {
+            return new ConfigPath(path, new String[0], new int[0]);
+        }
+
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (path.charAt(i) == '.') {
+                count++;
+            }
+        }
+
+        String[] keys = new String[count];
+        int[] indexes = new int[count];
+        int start = 0;
+        int n = 0;
+
+        for (int i = 0; i <= end; i++) {
+            if (i == end || path.charAt(i) == '.') {
+                parsePart(path.substring(start, i), n++, keys, indexes);
+                start = i + 1;
+            }
+        }
+
+        return new ConfigPath(path, keys, indexes);
+    }
+
+    /**
+     * Decode a single part of a path, splitting off a trailing index if
+     * there is one.
+     *
+     * @param part the part
+     * @param i position of the part
+     * @param keys array to store the key in
+     * @param indexes array to store the index in
+     */
+    private static void parsePart(String part, int i, String[] keys, int[] indexes) {
+        int length = part.length();
+        int open = part.lastIndexOf('[');
+
+        if (length > 2 && part.charAt(length - 1) == ']' && open != -1 && open < length - 2) {
+            int index = 0;
+            boolean valid = true;
+
+            for (int j = open + 1; j < length - 1; j++) {
+                char ch = part.charAt(j);
+                if (ch < '0' || ch > '9' || index > (Integer.MAX_VALUE - 9) / 10) {
+                    valid = false;
+                    break;
+                }
+                index = index * 10 + (ch - '0');
+            }
+
+            if (valid) {
+                keys[i] = part.substring(0, open);
+                indexes[i] = index;
+                return;
+            }
+        }
+
+        keys[i] = part;
+        indexes[i] = -1;
+    }
+
+    /**
+     * Get the path of a key inside the map at this path.
+     *
+     * @param key the key
+     * @return the new path
+     */
+    public ConfigPath child(String key) {
+        return child(key, -1);
+    }
+
+    /**
+     * Get the path of an element of the list stored under a key inside the map
+     * at this path.
+     *
+     * @param key the key
+     * @param index the list index, or -1 for no index
+     * @return the new path
+     */
+    public ConfigPath child(String key, int index) {
+        String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+        int[] newIndexes = Arrays.copyOf(indexes, indexes.length + 1);
+        newKeys[keys.length] = key;
+        newIndexes[indexes.length] = index;
+
+        StringBuilder newPath = new StringBuilder(path.length() + key.length() + 6);
+        if (keys.length > 0) {
+            newPath.append(path).append('.');
+        }
+        newPath.append(key);
+        if (index != -1) {
+            newPath.append('[').append(index).append(']');
+        }
+
+        return new ConfigPath(newPath.toString(), newKeys, newIndexes);
+    }
+
+    /**
+     * Returns whether one of the two paths is contained within the other,
+     * ignoring list indexes. A change to the value at one path may then
+     * change the value at the other.
+     *
+     * @param other the other path
+     * @return true if the paths overlap
+     */
+    public boolean overlaps(ConfigPath other) {
+        int length = Math.min(keys.length, other.keys.length);
+        for (int i = 0; i < length; i++) {
+            if (!keys[i].equals(other.keys[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of parts in this path.
+     *
+     * @return the number of parts
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns whether this path refers to the root object.
+     *
+     * @return true if this is the root
+     */
+    public boolean isRoot() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Get the map key of the part at the given position.
+     *
+     * @param i position
+     * @return the key
+     */
+    public String getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Get the list index of the part at the given position.
+     *
+     * @param i position
+     * @return the index, or -1 if the part has no index
+     */
+    public int getIndex(int i) {
+        return indexes[i];
+    }
+
+    /**
+     * Returns whether the part at the given position has a list index.
+     *
+     * @param i position
+     * @return true if there is an index
+     */
+    public boolean hasIndex(int i) {
+        return indexes[i] != -1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof ConfigPath)) {
+            return false;
+        }
+        ConfigPath other = (ConfigPath) obj;
+        return hash == other.hash && Arrays.equals(keys, other.keys) && Arrays.equals(indexes, other.indexes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Get the path in dot notation.
+     */
+    @Override
+    public String toString() {
+        return path;
+    }
+
+}
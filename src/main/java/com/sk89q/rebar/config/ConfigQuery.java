@@ -0,0 +1,257 @@
+package com.sk89q.rebar.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of paths that are read from a configuration together, in one walk of
+ * the tree. Parts that the paths have in common are only walked once, so
+ * reading many settings from the same subtree costs little more than reading
+ * one of them.
+ * </p>
+ * A part of a path that is <code>*</code> matches every key of the map at
+ * that point (i.e. <code>worlds.*.spawn</code> matches the spawn of each
+ * world), and may still be followed by a list index. Keys are converted to
+ * strings in the paths of the matches.
+ * </p>
+ * Queries are immutable and can be shared between threads, so they should be
+ * created once and re-used. Use {@link ConfigurationObject#query(ConfigQuery)}
+ * to run a query.
+ */
+public final class ConfigQuery {
+
+    /**
+     * The part of a path that matches every key.
+     */
+    public static final String WILDCARD = "*";
+
+    private final ConfigPath[] paths;
+    private final boolean[] wildcards;
+    private final Step root;
+
+    /**
+     * Create a query.
+     *
+     * @param paths the paths to read
+     */
+    private ConfigQuery(ConfigPath[] paths) {
+        this.paths = paths;
+        this.wildcards = new boolean[paths.length];
+        this.root = new Step(null, -1, ConfigPath.ROOT, false);
+
+        for (int i = 0; i < paths.length; i++) {
+            ConfigPath path = paths[i];
+            Step step = root;
+
+            for (int j = 0; j < path.size(); j++) {
+                String key = path.getKey(j);
+                boolean wildcard = key.equals(WILDCARD);
+                wildcards[i] |= wildcard;
+                step = step.getChild(wildcard ? null : key, path.getIndex(j), wildcards[i]);
+            }
+
+            step.addTerminal(i);
+        }
+
+        root.compile();
+    }
+
+    /**
+     * Create a query for the given paths (dot notation).
+     *
+     * @param paths the paths
+     * @return the query
+     */
+    public static ConfigQuery of(String... paths) {
+        ConfigPath[] parsed = new ConfigPath[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            parsed[i] = ConfigPath.of(paths[i]);
+        }
+        return new ConfigQuery(parsed);
+    }
+
+    /**
+     * Create a query for the given paths.
+     *
+     * @param paths the paths
+     * @return the query
+     */
+    public static ConfigQuery of(ConfigPath... paths) {
+        return new ConfigQuery(paths.clone());
+    }
+
+    /**
+     * Get the number of paths in this query.
+     *
+     * @return the number of paths
+     */
+    public int size() {
+        return paths.length;
+    }
+
+    /**
+     * Get one of the paths of this query.
+     *
+     * @param i position of the path
+     * @return the path
+     */
+    public ConfigPath getPath(int i) {
+        return paths[i];
+    }
+
+    /**
+     * Returns whether one of the paths contains a wildcard, and so can have
+     * more than one match.
+     *
+     * @param i position of the path
+     * @return true if the path has a wildcard
+     */
+    public boolean hasWildcard(int i) {
+        return wildcards[i];
+    }
+
+    /**
+     * Run the query against a tree.
+     *
+     * @param object the root of the tree
+     * @return the result
+     */
+    QueryResult run(Object object) {
+        QueryResult result = new QueryResult(this);
+        visit(root, object, ConfigPath.ROOT, result);
+        return result;
+    }
+
+    /**
+     * Record the matches of a step and walk to its children.
+     *
+     * @param step the step
+     * @param value the value that the step matched
+     * @param at the path of the value
+     * @param result the result to add matches to
+     */
+    private static void visit(Step step, Object value, ConfigPath at, QueryResult result) {
+        for (int terminal : step.terminals) {
+            result.add(terminal, at, value);
+        }
+
+        if (step.children.length == 0 || !(value instanceof Map<?, ?>)) {
+            return;
+        }
+
+        Map<?, ?> map = (Map<?, ?>) value;
+
+        for (Step child : step.children) {
+            if (child.key == null) {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    Object found = getIndexOf(entry.getValue(), child.index);
+                    if (found != null) {
+                        visit(child, found, at.child(String.valueOf(entry.getKey()), child.index), result);
+                    }
+                }
+            } else {
+                Object found = getIndexOf(map.get(child.key), child.index);
+                if (found != null) {
+                    visit(child, found, child.dynamic ? at.child(child.key, child.index) : child.path, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the element of a list, in the same way as
+     * {@link ConfigurationObject#get(ConfigPath)} does.
+     *
+     * @param o the list
+     * @param index the index, or -1 for no index
+     * @return the element, or null
+     */
+    private static Object getIndexOf(Object o, int index) {
+        if (index == -1 || o == null) {
+            return o;
+        }
+
+        if (o instanceof List<?>) {
+            List<?> list = (List<?>) o;
+            return index < list.size() ? list.get(index) : null;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * One part of one or more paths, after the parts that come before it.
+     */
+    private static final class Step {
+        private static final int[] NO_TERMINALS = new int[0];
+        private static final Step[] NO_CHILDREN = new Step[0];
+
+        private final String key;
+        private final int index;
+        private final ConfigPath path;
+        private final boolean dynamic;
+        private List<Step> childList = new ArrayList<Step>();
+        private Step[] children = NO_CHILDREN;
+        private int[] terminals = NO_TERMINALS;
+
+        /**
+         * Create a step.
+         *
+         * @param key the key, or null for a wildcard
+         * @param index the list index, or -1
+         * @param path the path to the step, or null if it follows a wildcard
+         * @param dynamic true if the step is or follows a wildcard
+         */
+        private Step(String key, int index, ConfigPath path, boolean dynamic) {
+            this.key = key;
+            this.index = index;
+            this.path = path;
+            this.dynamic = dynamic;
+        }
+
+        /**
+         * Get the step that follows this one for a part, adding it if needed.
+         *
+         * @param key the key, or null for a wildcard
+         * @param index the list index, or -1
+         * @param dynamic true if the part is or follows a wildcard
+         * @return the step
+         */
+        private Step getChild(String key, int index, boolean dynamic) {
+            for (Step child : childList) {
+                if (child.index == index && (key == null ? child.key == null : key.equals(child.key))) {
+                    return child;
+                }
+            }
+
+            Step child = new Step(key, index, dynamic ? null : path.child(key, index), dynamic);
+            childList.add(child);
+            return child;
+        }
+
+        /**
+         * Mark a path of the query as ending at this step.
+         *
+         * @param i position of the path
+         */
+        private void addTerminal(int i) {
+            int[] grown = new int[terminals.length + 1];
+            System.arraycopy(terminals, 0, grown, 0, terminals.length);
+            grown[terminals.length] = i;
+            terminals = grown;
+        }
+
+        /**
+         * Convert the children of this step and the steps after it to arrays.
+         */
+        private void compile() {
+            children = childList.toArray(new Step[childList.size()]);
+            childList = null;
+            for (Step child : children) {
+                child.compile();
+            }
+        }
+    }
+
+}
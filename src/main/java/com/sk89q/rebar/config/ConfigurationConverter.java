@@ -0,0 +1,236 @@
+package com.sk89q.rebar.config;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+/**
+ * Converts configuration files between YAML and the binary format of
+ * {@link BinaryConfigurationFile}, and from YAML to the read-only format of
+ * {@link MappedConfigurationFile}.
+ * </p>
+ * This class can also be run from the command line with an input and output
+ * file. Files that end in .yml or .yaml are treated as YAML, and any other
+ * file as binary. Files that end in {@link #INDEXED_EXTENSION} are written
+ * in the format of {@link MappedConfigurationFile}.
+ */
+public final class ConfigurationConverter {
+
+    /**
+     * The extension of files in the format of {@link IndexedBinaryFormat}
+     * when converting from the command line.
+     */
+    public static final String INDEXED_EXTENSION = ".rbi";
+
+    /**
+     * The size of the header of an indexed file, which ends with the
+     * checksum of its source.
+     */
+    private static final int INDEXED_HEADER_SIZE = 16;
+
+    private ConfigurationConverter() {
+    }
+
+    /**
+     * Convert a YAML file to a binary file.
+     *
+     * @param from the YAML file
+     * @param to the binary file to write
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error
+     */
+    public static void yamlToBinary(File from, File to) throws IOException, ConfigurationException {
+        YamlConfigurationFile yaml = new YamlConfigurationFile(from, new YamlStyle(), false);
+        yaml.load();
+
+        BinaryConfigurationFile binary = new BinaryConfigurationFile(to);
+        binary.setRoot(yaml.getRoot());
+        binary.save();
+    }
+
+    /**
+     * Convert a YAML file to a file that can be read with
+     * {@link MappedConfigurationFile}. A checksum of the YAML file is
+     * recorded in the indexed file (see {@link #getSourceChecksum(File)}).
+     *
+     * @param from the YAML file
+     * @param to the indexed file to write
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error
+     */
+    public static void yamlToIndexed(File from, File to) throws IOException, ConfigurationException {
+        YamlConfigurationFile yaml = new YamlConfigurationFile(from, new YamlStyle(), false);
+        yaml.load();
+
+        InputStream stream = new FileInputStream(from);
+        long checksum;
+        try {
+            checksum = checksum(stream);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+            }
+        }
+
+        writeIndexed(yaml.getRoot(), checksum, to);
+    }
+
+    /**
+     * Convert YAML data, such as a resource bundled in a .jar, to a file that
+     * can be read with {@link MappedConfigurationFile}. A checksum of the data
+     * is recorded in the indexed file (see {@link #getSourceChecksum(File)}).
+     * The stream is read to its end but is not closed.
+     *
+     * @param from the YAML data
+     * @param to the indexed file to write
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error
+     */
+    public static void yamlToIndexed(InputStream from, File to) throws IOException, ConfigurationException {
+        CheckedInputStream checked = new CheckedInputStream(from, new CRC32());
+        Object root;
+        try {
+            root = YamlEngines.get(new YamlStyle()).load(new UnicodeReader(checked));
+        } catch (YAMLException e) {
+            throw new ConfigurationException(e);
+        }
+        long checksum = checksum(checked);
+        writeIndexed(root != null ? root : new HashMap<Object, Object>(), checksum, to);
+    }
+
+    /**
+     * Calculate the checksum that {@link #yamlToIndexed(InputStream, File)}
+     * would record for YAML data, so that it can be compared with
+     * {@link #getSourceChecksum(File)} to find out whether an indexed file
+     * has to be converted again. The stream is read to its end but is not
+     * closed.
+     *
+     * @param from the YAML data
+     * @return the checksum
+     * @throws IOException on I/O error
+     */
+    public static long checksum(InputStream from) throws IOException {
+        CheckedInputStream checked = from instanceof CheckedInputStream
+                ? (CheckedInputStream) from
+                : new CheckedInputStream(from, new CRC32());
+        byte[] buf = new byte[8192];
+        while (checked.read(buf) != -1) {
+        }
+        return checked.getChecksum().getValue();
+    }
+
+    /**
+     * Get the checksum of the YAML data that an indexed file was converted
+     * from.
+     *
+     * @param file the indexed file
+     * @return the checksum, or 0 if the file does not record one
+     * @throws IOException on I/O error
+     * @throws ConfigurationException thrown if the file is not an indexed file
+     */
+    public static long getSourceChecksum(File file) throws IOException, ConfigurationException {
+        InputStream stream = new FileInputStream(file);
+        byte[] header = new byte[INDEXED_HEADER_SIZE];
+        int length = 0;
+
+        try {
+            int read;
+            while (length < header.length
+                    && (read = stream.read(header, length, header.length - length)) != -1) {
+                length += read;
+            }
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+            }
+        }
+
+        return IndexedBinaryFormat.getSourceChecksum(ByteBuffer.wrap(header, 0, length));
+    }
+
+    /**
+     * Write a tree to an indexed file, replacing the file once it has been
+     * completely written.
+     *
+     * @param root the root
+     * @param checksum the checksum of the source
+     * @param to the file
+     * @throws IOException on I/O error
+     */
+    private static void writeIndexed(Object root, long checksum, File to) throws IOException {
+        FileReplacement replacement = new FileReplacement(to);
+
+        try {
+            BufferedOutputStream buffered = new BufferedOutputStream(replacement.getStream());
+            IndexedBinaryFormat.write(root, checksum, buffered);
+            replacement.commit();
+        } finally {
+            replacement.abort();
+        }
+    }
+
+    /**
+     * Convert a binary file to a YAML file.
+     *
+     * @param from the binary file
+     * @param to the YAML file to write
+     * @param style style of the YAML data
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error
+     */
+    public static void binaryToYaml(File from, File to, YamlStyle style)
+            throws IOException, ConfigurationException {
+        BinaryConfigurationFile binary = new BinaryConfigurationFile(from, false);
+        binary.load();
+
+        YamlConfigurationFile yaml = new YamlConfigurationFile(to, style);
+        yaml.setRoot(binary.getRoot());
+        yaml.save();
+    }
+
+    /**
+     * Returns whether a file is a YAML file, judging by its name.
+     *
+     * @param file the file
+     * @return true if it is a YAML file
+     */
+    private static boolean isYaml(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".yml") || name.endsWith(".yaml");
+    }
+
+    public static void main(String[] args) throws IOException, ConfigurationException {
+        if (args.length != 2) {
+            System.err.println("Usage: " + ConfigurationConverter.class.getName()
+                    + " <input> <output>");
+            System.exit(1);
+            return;
+        }
+
+        File from = new File(args[0]);
+        File to = new File(args[1]);
+
+        if (isYaml(from) && to.getName().toLowerCase().endsWith(INDEXED_EXTENSION)) {
+            yamlToIndexed(from, to);
+        } else if (isYaml(from) && !isYaml(to)) {
+            yamlToBinary(from, to);
+        } else if (!isYaml(from) && isYaml(to)) {
+            binaryToYaml(from, to, new YamlStyle());
+        } else {
+            System.err.println("One file must be YAML (.yml or .yaml) and the other binary");
+            System.exit(1);
+        }
+    }
+
+}
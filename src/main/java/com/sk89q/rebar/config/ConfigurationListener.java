@@ -0,0 +1,19 @@
+package com.sk89q.rebar.config;
+
+/**
+ * Notified when a value in a configuration changes.
+ *
+ * @see YamlFileWatcher
+ */
+public interface ConfigurationListener {
+
+    /**
+     * Called after the value at a path has changed.
+     *
+     * @param path the path that changed
+     * @param oldValue the previous value, or null if there was none
+     * @param newValue the new value, or null if it was removed
+     */
+    void changed(ConfigPath path, Object oldValue, Object newValue);
+
+}
@@ -0,0 +1,131 @@
+package com.sk89q.rebar.config;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link JmxMetricsSink}. Counters and
+ * histograms are totals since the sink was created or last reset, and
+ * durations are in nanoseconds.
+ */
+public interface ConfigurationMetricsMXBean {
+
+    /**
+     * Get the number of paths that were read.
+     *
+     * @return the number of reads
+     */
+    long getReads();
+
+    /**
+     * Get the number of paths that were read and had no value.
+     *
+     * @return the number of misses
+     */
+    long getMisses();
+
+    /**
+     * Get the number of paths that were read from a parent node.
+     *
+     * @return the number of reads from parents
+     */
+    long getParentReads();
+
+    /**
+     * Get the number of paths that were set or removed.
+     *
+     * @return the number of writes
+     */
+    long getWrites();
+
+    /**
+     * Get the number of reads of each path.
+     *
+     * @return a map of paths (dot notation) to counts
+     */
+    Map<String, Long> getReadsByPath();
+
+    /**
+     * Get the number of misses of each path.
+     *
+     * @return a map of paths (dot notation) to counts
+     */
+    Map<String, Long> getMissesByPath();
+
+    /**
+     * Get the number of reads from a parent of each path.
+     *
+     * @return a map of paths (dot notation) to counts
+     */
+    Map<String, Long> getParentReadsByPath();
+
+    /**
+     * Get the number of writes of each path.
+     *
+     * @return a map of paths (dot notation) to counts
+     */
+    Map<String, Long> getWritesByPath();
+
+    /**
+     * Get the time taken by loaders, for each class of loader.
+     *
+     * @return a map of class names to histograms
+     */
+    Map<String, LatencyHistogram> getLoaderLatencies();
+
+    /**
+     * Get the time taken by builders, for each class of builder.
+     *
+     * @return a map of class names to histograms
+     */
+    Map<String, LatencyHistogram> getBuilderLatencies();
+
+    /**
+     * Get the time taken to parse configurations, for each source.
+     *
+     * @return a map of source names to histograms
+     */
+    Map<String, LatencyHistogram> getParseLatencies();
+
+    /**
+     * Get the number of bytes parsed, for each source.
+     *
+     * @return a map of source names to byte counts
+     */
+    Map<String, Long> getParsedBytes();
+
+    /**
+     * Get the time taken to serialize configurations, for each destination.
+     *
+     * @return a map of destination names to histograms
+     */
+    Map<String, LatencyHistogram> getSerializeLatencies();
+
+    /**
+     * Get the number of bytes serialized, for each destination.
+     *
+     * @return a map of destination names to byte counts
+     */
+    Map<String, Long> getSerializedBytes();
+
+    /**
+     * Get the time taken to load the settings of objects, for each class of
+     * object.
+     *
+     * @return a map of class names to histograms
+     */
+    Map<String, LatencyHistogram> getBindLoadLatencies();
+
+    /**
+     * Get the time taken to save the settings of objects, for each class of
+     * object.
+     *
+     * @return a map of class names to histograms
+     */
+    Map<String, LatencyHistogram> getBindSaveLatencies();
+
+    /**
+     * Clear all counters and histograms.
+     */
+    void reset();
+
+}
@@ -1,7 +1,14 @@
 package com.sk89q.rebar.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A configuration node with various methods to access properties of it. The underlying
@@ -12,8 +19,26 @@ import java.util.Map;
 public class ConfigurationNode extends ConfigurationObject implements Cloneable {
 
     public static final String ROOT = "";
+
+    /**
+     * Source of the versions of nodes, shared by all nodes so that a version
+     * is never reused, even by a node that replaces another in a chain.
+     */
+    private static final AtomicLong versions = new AtomicLong();
     
     private ConfigurationNode parent;
+    private ConversionCache conversionCache;
+    private ParallelDecoder parallelDecoder;
+    private volatile MetricsSink metricsSink;
+    private volatile long version;
+    private long parentVersion;
+    private volatile ConfigurationObject owner;
+    private volatile ConfigPath ownerPath;
+    private boolean parentIndexing;
+    private Map<ConfigPath, Object> parentIndex;
+    private long parentIndexStamp;
+    private volatile Set<String> dirtyKeys;
+    private volatile boolean allDirty;
 
     /**
      * Construct the node.
@@ -46,7 +71,8 @@ public class ConfigurationNode extends ConfigurationObject implements Cloneable
      * Get the parent configuration node. A parent node is used when accessing an element
      * that is not found in this node. The same also applies when trying to set a value
      * to this node. If there is a parent, and this node does not contain the location,
-     * then the parent will be written to.
+     * then the parent will be written to, unless the parent is read-only (see
+     * {@link #isReadOnly()}), in which case this node is written to.
      * </p>
      * Parent nodes are not used when loading or saving configurations
      * (see {@link YamlConfigurationFile}).
@@ -65,6 +91,30 @@ public class ConfigurationNode extends ConfigurationObject implements Cloneable
      */
     public void setParent(ConfigurationNode parent) {
         this.parent = parent;
+        changed(ConfigPath.ROOT);
+    }
+
+    /**
+     * Returns whether this node cannot be changed, such as a snapshot or a
+     * mapped file. Writes to children of a read-only node that would
+     * otherwise be passed on to it are kept in the child instead.
+     *
+     * @return true if the node is read-only
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Returns whether writes to a path that this node does not contain are
+     * passed on to the parent.
+     *
+     * @param path the path
+     * @return true to write to the parent
+     */
+    private boolean writesToParent(ConfigPath path) {
+        ConfigurationNode parent = getParent();
+        return parent != null && !parent.isReadOnly() && !super.contains(path);
     }
 
     /**
@@ -72,60 +122,482 @@ public class ConfigurationNode extends ConfigurationObject implements Cloneable
      */
     public void clear() {
         getUnderlyingMap().clear();
+        changed(ConfigPath.ROOT);
+    }
+
+    /**
+     * Set whether this node and its parents are flattened into one index of
+     * every path that they contain, so that reading a value that is inherited
+     * from a parent takes one hash lookup instead of a walk through this node
+     * and then each parent in turn.
+     * </p>
+     * The index is built when a value is first read, and is rebuilt after this
+     * node or any of its parents has been changed through its own methods.
+     * Changes made directly to the underlying maps are not seen, so this should
+     * be used with chains of nodes that are read much more often than they are
+     * changed, such as defaults. Indexing has no effect on nodes without a
+     * parent and is off by default.
+     *
+     * @param enabled true to index the parent chain
+     */
+    public void setParentIndexing(boolean enabled) {
+        parentIndexing = enabled;
+        if (!enabled) {
+            parentIndex = null;
+        }
+    }
+
+    /**
+     * Returns whether this node and its parents are indexed.
+     *
+     * @return true if the parent chain is indexed
+     * @see #setParentIndexing(boolean)
+     */
+    public boolean isParentIndexing() {
+        return parentIndexing;
+    }
+
+    /**
+     * Get the index of this node and its parents, building it if it does not
+     * exist yet or any node in the chain has changed since.
+     *
+     * @return the index
+     */
+    private Map<ConfigPath, Object> getParentIndex() {
+        long stamp = Math.max(version, getParentVersion());
+        if (parentIndex != null && stamp == parentIndexStamp) {
+            return parentIndex;
+        }
+
+        // Parents first, so that the values of children take precedence
+        List<ConfigurationNode> chain = new ArrayList<ConfigurationNode>();
+        for (ConfigurationNode n = this; n != null; n = n.getParent()) {
+            chain.add(0, n);
+        }
+
+        Map<ConfigPath, Object> index = new HashMap<ConfigPath, Object>();
+        for (ConfigurationNode n : chain) {
+            addToIndex(n.getUnderlyingMap(), ConfigPath.ROOT, index);
+        }
+
+        parentIndex = index;
+        parentIndexStamp = stamp;
+        return index;
+    }
+
+    /**
+     * Add each of the paths in a map that have a value to an index.
+     *
+     * @param map the map
+     * @param path the path of the map
+     * @param index the index to add to
+     */
+    private static void addToIndex(Map<?, ?> map, ConfigPath path, Map<ConfigPath, Object> index) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (!(entry.getKey() instanceof String) || value == null) {
+                continue;
+            }
+
+            String key = (String) entry.getKey();
+            ConfigPath child = path.child(key);
+            index.put(child, value);
+
+            if (value instanceof Map<?, ?>) {
+                addToIndex((Map<?, ?>) value, child, index);
+            } else if (value instanceof List<?>) {
+                List<?> list = (List<?>) value;
+                for (int i = 0; i < list.size(); i++) {
+                    Object element = list.get(i);
+                    if (element != null) {
+                        ConfigPath elementPath = path.child(key, i);
+                        index.put(elementPath, element);
+                        if (element instanceof Map<?, ?>) {
+                            addToIndex((Map<?, ?>) element, elementPath, index);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the decoder used to run loaders over large lists and maps in
+     * parallel for {@link #listOf(String, Loader)},
+     * {@link #setOf(String, Loader)}, {@link #mapOf(String, KeyValueLoader)}
+     * and {@link #keyValueOf(String, KeyValueLoader, Map)}. Only loaders that
+     * implement {@link ThreadSafeLoader} are run in parallel. Parallel
+     * decoding is off by default.
+     *
+     * @param decoder the decoder, or null to decode on the calling thread
+     */
+    public void setParallelDecoder(ParallelDecoder decoder) {
+        this.parallelDecoder = decoder;
+    }
+
+    /**
+     * Get the decoder used to run loaders over large lists and maps in
+     * parallel.
+     *
+     * @return the decoder, or null if collections are decoded on the calling thread
+     * @see #setParallelDecoder(ParallelDecoder)
+     */
+    @Override
+    public ParallelDecoder getParallelDecoder() {
+        return parallelDecoder;
+    }
+
+    /**
+     * Set whether the values returned by loaders (such as by
+     * {@link #getOf(String, Loader)},
+     * {@link #listOf(String, Loader)} and
+     * {@link #mapOf(String, KeyValueLoader)}) are
+     * remembered, so that reading the same path with the same loader again
+     * does not convert the value again.
+     * </p>
+     * Cached values are discarded when the path (or a path above or below it)
+     * is changed through this node or through a node returned by
+     * {@link #getNode(String)} and similar methods, or when anything is
+     * changed in a parent node. Changes made directly to the underlying map
+     * are not seen, so {@link ConversionCache#invalidateAll()} must be called
+     * after making them. Loaders must return the same result for the same
+     * input, and the returned objects are shared between calls, so they
+     * should not be modified. Caching is off by default.
+     *
+     * @param enabled true to cache conversions
+     */
+    public void setConversionCaching(boolean enabled) {
+        if (enabled) {
+            if (conversionCache == null) {
+                conversionCache = new ConversionCache();
+                parentVersion = getParentVersion();
+            }
+        } else {
+            conversionCache = null;
+        }
+    }
+
+    /**
+     * Returns whether conversions are cached.
+     *
+     * @return true if conversions are cached
+     * @see #setConversionCaching(boolean)
+     */
+    public boolean isConversionCaching() {
+        return conversionCache != null;
+    }
+
+    /**
+     * Get the cache of conversions, which can be used to read the hit and
+     * miss statistics.
+     *
+     * @return the cache, or null if conversions are not cached
+     * @see #setConversionCaching(boolean)
+     */
+    @Override
+    public ConversionCache getConversionCache() {
+        ConversionCache cache = conversionCache;
+        if (cache != null && getParent() != null) {
+            long newest = getParentVersion();
+            if (newest != parentVersion) {
+                cache.invalidateAll();
+                parentVersion = newest;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Set the sink that measurements of this node are sent to. Reads and
+     * writes of paths, reads that fall through to the parent, and the time
+     * taken by loaders and builders are measured. Reads that fall through to
+     * the parent are also measured by the parent, if it has a sink.
+     * </p>
+     * Nothing is measured by default, in which case this costs nothing.
+     *
+     * @param sink the sink, or null to stop measuring
+     */
+    public void setMetricsSink(MetricsSink sink) {
+        this.metricsSink = sink;
+    }
+
+    /**
+     * Get the sink that measurements of this node are sent to.
+     *
+     * @return the sink, or null if nothing is measured
+     * @see #setMetricsSink(MetricsSink)
+     */
+    @Override
+    public MetricsSink getMetricsSink() {
+        return metricsSink;
     }
 
     @Override
-    protected Object get(String[] parts) {
+    protected void changed(ConfigPath path) {
+        MetricsSink sink = metricsSink;
+        if (sink != null && !path.isRoot()) {
+            sink.written(path);
+        }
+
+        version = versions.incrementAndGet();
+        if (conversionCache != null) {
+            conversionCache.invalidate(path);
+        }
+
+        if (path.isRoot()) {
+            allDirty = true;
+        } else if (!allDirty) {
+            getDirtyKeySet().add(path.getKey(0));
+        }
+
+        ConfigurationObject owner = this.owner;
+        if (owner != null) {
+            owner.changed(ownerPath);
+        }
+    }
+
+    /**
+     * Set the object that this node was read from, so that changes made
+     * through this node are also changes to that object. The whole path that
+     * this node was read from is reported as changed, whichever part of this
+     * node was changed, so the object discards everything that it cached
+     * for the path and marks its top-level key as dirty.
+     *
+     * @param owner the object
+     * @param path the path of this node in the object
+     */
+    void setOwner(ConfigurationObject owner, ConfigPath path) {
+        this.ownerPath = path;
+        this.owner = owner;
+    }
+
+    /**
+     * Get the set that changed top-level keys are added to, creating it
+     * the first time that it is needed.
+     *
+     * @return the set
+     */
+    private Set<String> getDirtyKeySet() {
+        Set<String> keys = dirtyKeys;
+        if (keys == null) {
+            synchronized (this) {
+                keys = dirtyKeys;
+                if (keys == null) {
+                    keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                    dirtyKeys = keys;
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns whether this node has been changed through its own methods
+     * since it was created or {@link #markClean()} was last called. Changes
+     * made through nodes returned by {@link #getNode(String)} and similar
+     * methods count as changes to the path that the node was read from.
+     *
+     * @return true if the node has changed
+     */
+    public boolean isDirty() {
+        Set<String> keys = dirtyKeys;
+        return allDirty || (keys != null && !keys.isEmpty());
+    }
+
+    /**
+     * Returns whether the value under a top-level key has been changed
+     * through this node's own methods since it was created or
+     * {@link #markClean()} was last called. This is also true for every key
+     * if the whole node has changed, such as after {@link #clear()}.
+     *
+     * @param key the top-level key
+     * @return true if the value has changed
+     */
+    public boolean isDirty(String key) {
+        Set<String> keys = dirtyKeys;
+        return allDirty || (keys != null && keys.contains(key));
+    }
+
+    /**
+     * Get the top-level keys whose values have been changed through this
+     * node's own methods since it was created or {@link #markClean()} was
+     * last called.
+     *
+     * @return the changed keys, or null if the whole node has changed
+     */
+    public Set<String> getDirtyKeys() {
+        if (allDirty) {
+            return null;
+        }
+        Set<String> keys = dirtyKeys;
+        return keys != null ? new HashSet<String>(keys) : new HashSet<String>();
+    }
+
+    /**
+     * Mark the whole node as changed. This should be called after changing
+     * the underlying map directly, as such changes are not tracked.
+     */
+    public void markDirty() {
+        allDirty = true;
+    }
+
+    /**
+     * Forget about the changes made to this node so far, such as after it
+     * has been saved.
+     */
+    public void markClean() {
+        allDirty = false;
+        Set<String> keys = dirtyKeys;
+        if (keys != null) {
+            keys.clear();
+        }
+    }
+
+    /**
+     * Get the newest version of the parents of this node. Every change to a
+     * node, including a change of its parent, gives it a version that is
+     * newer than any before, so this grows whenever anything in the chain of
+     * parents changes.
+     *
+     * @return the newest version, or 0 if there are no parents
+     */
+    private long getParentVersion() {
+        long newest = 0;
+        for (ConfigurationNode node = getParent(); node != null; node = node.getParent()) {
+            newest = Math.max(newest, node.version);
+        }
+        return newest;
+    }
+
+    @Override
+    public Object get(ConfigPath path) {
+        if (parentIndexing && getParent() != null && !path.isRoot()) {
+            Object value = getParentIndex().get(path);
+            MetricsSink sink = metricsSink;
+            if (sink != null) {
+                sink.read(path, value != null);
+            }
+            return value;
+        }
+
         // If this node has a parent, redirect to the parent if this node doesn't
         // contain the given path
         if (getParent() != null) {
-            if (!super.contains(parts)) {
-                return getParent().get(parts);
+            if (!super.contains(path)) {
+                Object value = getParent().get(path);
+                MetricsSink sink = metricsSink;
+                if (sink != null) {
+                    sink.readFromParent(path);
+                    sink.read(path, value != null);
+                }
+                return value;
             }
         }
         
-        return super.get(parts);
+        return super.get(path);
     }
 
+    /**
+     * Read the values at all the paths of a query in one walk of the tree of
+     * this node and one walk of the tree of each of its parents. Paths that
+     * this node does not contain are read from the parents, in the same way
+     * as {@link #get(ConfigPath)} does.
+     *
+     * @param query the query
+     * @return the result
+     */
     @Override
-    protected void set(String[] parts, Object value) {
+    public QueryResult query(ConfigQuery query) {
+        if (getParent() == null) {
+            return super.query(query);
+        }
+
+        QueryResult result = query.run(getRoot());
+        MetricsSink sink = metricsSink;
+        int[] own = null;
+        if (sink != null) {
+            own = new int[query.size()];
+            for (int i = 0; i < own.length; i++) {
+                own[i] = result.getMatchCount(i);
+            }
+        }
+
+        result.inherit(getParent().query(query));
+
+        if (sink != null) {
+            for (int i = 0; i < own.length; i++) {
+                if (own[i] == 0) {
+                    sink.readFromParent(query.getPath(i));
+                }
+                sink.read(query.getPath(i), result.getMatchCount(i) > 0);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void set(ConfigPath path, Object value) {
         // If this node has a parent, redirect to the parent if this node doesn't
         // contain the given path
-        if (getParent() != null) {
-            if (!super.contains(parts)) {
-                getParent().set(parts, value);
-                return;
-            }
+        if (writesToParent(path)) {
+            getParent().set(path, value);
+            return;
         }
         
-        super.set(parts, value);
+        super.set(path, value);
     }
 
     @Override
-    public void remove(String[] parts) {
+    public void remove(ConfigPath path) {
         // If this node has a parent, redirect to the parent if this node doesn't
         // contain the given path
-        if (getParent() != null) {
-            if (!super.contains(parts)) {
-                getParent().remove(parts);
-                return;
-            }
+        if (writesToParent(path)) {
+            getParent().remove(path);
+            return;
         }
         
-        super.remove(parts);
+        super.remove(path);
     }
 
     @Override
-    public boolean contains(String[] parts) {
+    public boolean contains(ConfigPath path) {
+        if (parentIndexing && getParent() != null && !path.isRoot()) {
+            return getParentIndex().containsKey(path);
+        }
+
         // If this node has a parent, redirect to the parent if this node doesn't
         // contain the given path
         if (getParent() != null) {
-            if (!super.contains(parts)) {
-                return getParent().contains(parts);
+            if (!super.contains(path)) {
+                return getParent().contains(path);
             }
         }
         
-        return super.contains(parts);
+        return super.contains(path);
+    }
+
+    /**
+     * Create an immutable snapshot of this node, including the values
+     * inherited from its parents. The snapshot can be read from other threads
+     * without locking while this node continues to be modified, but this node
+     * must not be modified while the snapshot is being created.
+     * </p>
+     * Every snapshot is a full deep copy. Nothing is shared with earlier
+     * snapshots, even for parts of the tree that have not changed since, as
+     * changes made directly to maps and lists in the tree cannot be
+     * detected. Each snapshot copies and indexes the whole tree of this node
+     * and of every parent, which takes time and memory in proportion to the
+     * number of values (around a microsecond for each value). This is not
+     * suitable for republishing a large tree after every small change.
+     * Snapshots should be taken when a batch of changes is complete, such as
+     * after a reload or before a save, and not for every write or read.
+     *
+     * @return the snapshot
+     * @see ConfigurationSnapshot
+     */
+    public ConfigurationSnapshot snapshot() {
+        return new ConfigurationSnapshot(this);
     }
 
     /**
@@ -20,24 +20,20 @@
 package com.sk89q.rebar.config;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.DumperOptions.FlowStyle;
-import org.yaml.snakeyaml.Yaml;
-import org.yaml.snakeyaml.constructor.SafeConstructor;
-import org.yaml.snakeyaml.representer.Representer;
 
 import com.sk89q.rebar.config.types.BlockVector2dLoaderBuilder;
 import com.sk89q.rebar.config.types.BooleanLoaderBuilder;
@@ -61,8 +57,6 @@ import com.sk89q.worldedit.Vector2D;
  */
 class ConfigurationObject {
     
-    private final Pattern indexPattern = Pattern.compile("^.*\\[([0-9]+)\\]$");
-
     protected static final String ROOT = "";
 
     protected static final StringLoaderBuilder stringLB = new StringLoaderBuilder();
@@ -74,6 +68,10 @@ class ConfigurationObject {
     protected static final NodeLoaderBuilder nodeLB = new NodeLoaderBuilder();
     protected static final ListLoaderBuilder listLB = new ListLoaderBuilder();
     protected static final MapLoaderBuilder mapLB = new MapLoaderBuilder();
+    protected static final PairedKeyValueLoaderBuilder<String, ConfigurationNode> nodeMapLB =
+            PairedKeyValueLoaderBuilder.build(stringLB, nodeLB);
+
+    private static final YamlStyle toStringStyle = new YamlStyle(FlowStyle.AUTO, 4);
 
     private Object root;
 
@@ -102,6 +100,44 @@ class ConfigurationObject {
      */
     protected final void setRoot(Object root) {
         this.root = root;
+        changed(ConfigPath.ROOT);
+    }
+
+    /**
+     * Get the decoder used to run loaders over large collections in
+     * parallel, if there is one.
+     *
+     * @return the decoder, or null if collections are decoded on the calling thread
+     */
+    protected ParallelDecoder getParallelDecoder() {
+        return null;
+    }
+
+    /**
+     * Get the cache used to remember the results of loaders, if there is one.
+     *
+     * @return the cache, or null if results are not cached
+     */
+    protected ConversionCache getConversionCache() {
+        return null;
+    }
+
+    /**
+     * Get the sink that measurements of this object are sent to, if there is
+     * one.
+     *
+     * @return the sink, or null if nothing is measured
+     */
+    protected MetricsSink getMetricsSink() {
+        return null;
+    }
+
+    /**
+     * Called after the value at a path has been changed through this object.
+     *
+     * @param path the path that was changed
+     */
+    protected void changed(ConfigPath path) {
     }
 
     /**
@@ -114,7 +150,7 @@ class ConfigurationObject {
      */
     @Deprecated
     public final Object getProperty(String path) {
-        return get(parsePath(path));
+        return get(ConfigPath.of(path));
     }
 
     /**
@@ -126,66 +162,121 @@ class ConfigurationObject {
      * @return object, or the path does not exist, null
      */
     public final Object get(String path) {
-        return get(parsePath(path));
+        return get(ConfigPath.of(path));
     }
 
     /**
      * Gets a value at a location. The path along the way has to consist of maps
      * otherwise a null is returned prematurely.
      *
-     * @param parts parts of the path
-     * @param delimeter path delimiter
+     * @param path path to node
      * @return object, or the path does not exist, null
      */
-    @SuppressWarnings("unchecked")
-    protected Object get(String[] parts) {
-        if (parts.length == 0) {
-            return root;
+    public Object get(ConfigPath path) {
+        Object value = resolve(path, path.size());
+        MetricsSink sink = getMetricsSink();
+        if (sink != null) {
+            sink.read(path, value != null);
         }
-        
-        if (!(root instanceof Map<?, ?>)) {
-            return null;
+        return value;
+    }
+
+    /**
+     * Read the values at all the paths of a query in one walk of the tree.
+     *
+     * @param query the query
+     * @return the result
+     * @see ConfigQuery
+     */
+    public QueryResult query(ConfigQuery query) {
+        QueryResult result = query.run(root);
+        MetricsSink sink = getMetricsSink();
+        if (sink != null) {
+            for (int i = 0; i < query.size(); i++) {
+                sink.read(query.getPath(i), result.getMatchCount(i) > 0);
+            }
         }
+        return result;
+    }
 
-        Map<Object, Object> node = (Map<Object, Object>) root;
+    /**
+     * Read the values at the given paths (dot notation) in one walk of the
+     * tree. Paths may contain wildcards as described in {@link ConfigQuery}.
+     * If the same paths are read repeatedly, the query should be created
+     * once with {@link ConfigQuery#of(String...)} and passed to
+     * {@link #query(ConfigQuery)} instead.
+     *
+     * @param paths the paths
+     * @return the result
+     */
+    public QueryResult query(String... paths) {
+        return query(ConfigQuery.of(paths));
+    }
 
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            
-            // Indexes
-            Matcher m = indexPattern.matcher(part);
-            int index = -1;
-            if (m.matches()) {
-                part = part.substring(0, part.length() - m.group(1).length());
-                index = Integer.parseInt(m.group(1));
-            }
-            
-            Object o = node.get(part);
+    /**
+     * Gets a value at a location. The path along the way has to consist of maps
+     * otherwise a null is returned prematurely.
+     *
+     * @param parts parts of the path
+     * @return object, or the path does not exist, null
+     */
+    protected Object get(String[] parts) {
+        return get(ConfigPath.fromParts(parts));
+    }
 
-            if (o == null) {
+    /**
+     * Walk the first given number of parts of a path, without consulting
+     * anything but the root object of this object.
+     *
+     * @param path the path
+     * @param depth number of parts to walk
+     * @return object, or null if the path does not exist
+     */
+    @SuppressWarnings("unchecked")
+    private Object resolve(ConfigPath path, int depth) {
+        Object o = root;
+
+        for (int i = 0; i < depth; i++) {
+            if (!(o instanceof Map<?, ?>)) {
                 return null;
-            } else if (i == parts.length - 1) {
-                return getIndexOf(o, index);
             }
 
-            try {
-                node = (Map<Object, Object>) getIndexOf(o, index);
-            } catch (ClassCastException e) {
+            o = ((Map<Object, Object>) o).get(path.getKey(i));
+
+            if (o == null) {
                 return null;
             }
+
+            o = getIndexOf(o, path.getIndex(i));
         }
 
-        return null;
+        return o;
+    }
+
+    /**
+     * Get the map that contains the last part of the given path.
+     *
+     * @param path the path, which cannot be the root
+     * @return the map, or null if the path does not exist
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Object, Object> resolveContainer(ConfigPath path) {
+        Object o = resolve(path, path.size() - 1);
+        if (o instanceof Map<?, ?>) {
+            return (Map<Object, Object>) o;
+        } else {
+            return null;
+        }
     }
     
     /**
      * Helper method to get the index of an object, if the object is a list.
      * 
      * @param o object to index
-     * @param index index
+     * @param index index, or -1 for no index
      * @return the item or null
      */
-    private Object getIndexOf(Object o, int index) {
+    private static Object getIndexOf(Object o, int index) {
         if (index == -1) {
             return o;
         }
@@ -195,13 +286,170 @@ class ConfigurationObject {
             if (index < list.size()) {
                 return list.get(index);
             } else {
-                return 0;
+                return null;
             }
         } else {
             return null;
         }
     }
 
+    /**
+     * Helper method to set the index of an object, if the object is a list. An
+     * index one past the end of the list will append to the list.
+     * 
+     * @param o object to index
+     * @param index index
+     * @param value the value to set
+     * @return true if the value was set
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean setIndexOf(Object o, int index, Object value) {
+        if (o instanceof List<?>) {
+            List<Object> list = (List<Object>) o;
+            if (index < list.size()) {
+                list.set(index, value);
+                return true;
+            } else if (index == list.size()) {
+                list.add(value);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parse a value with a loader, timing the loader if there is a
+     * {@link MetricsSink}.
+     *
+     * @param loader the loader
+     * @param o the value
+     * @return the parsed value, or null
+     */
+    private <V> V read(Loader<V> loader, Object o) {
+        MetricsSink sink = getMetricsSink();
+        if (sink == null) {
+            return loader.read(o);
+        }
+
+        long start = System.nanoTime();
+        V value = loader.read(o);
+        sink.loaded(loader.getClass(), System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * Parse an entry with a loader, timing the loader if there is a
+     * {@link MetricsSink}.
+     *
+     * @param loader the loader
+     * @param key the key
+     * @param value the value
+     * @return the parsed entry, or null
+     */
+    private <K, V> Map.Entry<K, V> read(KeyValueLoader<K, V> loader, Object key, Object value) {
+        MetricsSink sink = getMetricsSink();
+        if (sink == null) {
+            return loader.read(key, value);
+        }
+
+        long start = System.nanoTime();
+        Map.Entry<K, V> entry = loader.read(key, value);
+        sink.loaded(loader.getClass(), System.nanoTime() - start);
+        return entry;
+    }
+
+    /**
+     * Wrap a loader so that it is timed in the same way as
+     * {@link #read(Loader, Object)} when it is run by a
+     * {@link ParallelDecoder}.
+     *
+     * @param loader the loader
+     * @return the loader, or a timed loader if there is a {@link MetricsSink}
+     */
+    private <V> Loader<V> timed(final Loader<V> loader) {
+        final MetricsSink sink = getMetricsSink();
+        if (sink == null) {
+            return loader;
+        }
+
+        return new Loader<V>() {
+            @Override
+            public V read(Object o) {
+                long start = System.nanoTime();
+                V value = loader.read(o);
+                sink.loaded(loader.getClass(), System.nanoTime() - start);
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Wrap a loader so that it is timed in the same way as
+     * {@link #read(KeyValueLoader, Object, Object)} when it is run by a
+     * {@link ParallelDecoder}.
+     *
+     * @param loader the loader
+     * @return the loader, or a timed loader if there is a {@link MetricsSink}
+     */
+    private <K, V> KeyValueLoader<K, V> timed(final KeyValueLoader<K, V> loader) {
+        final MetricsSink sink = getMetricsSink();
+        if (sink == null) {
+            return loader;
+        }
+
+        return new KeyValueLoader<K, V>() {
+            @Override
+            public Map.Entry<K, V> read(Object key, Object value) {
+                long start = System.nanoTime();
+                Map.Entry<K, V> entry = loader.read(key, value);
+                sink.loaded(loader.getClass(), System.nanoTime() - start);
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * Marshal a value with a builder, timing the builder if there is a
+     * {@link MetricsSink}.
+     *
+     * @param builder the builder
+     * @param value the value
+     * @return the marshalled value
+     */
+    private <V> Object write(Builder<V> builder, V value) {
+        MetricsSink sink = getMetricsSink();
+        if (sink == null) {
+            return builder.write(value);
+        }
+
+        long start = System.nanoTime();
+        Object o = builder.write(value);
+        sink.built(builder.getClass(), System.nanoTime() - start);
+        return o;
+    }
+
+    /**
+     * Marshal an entry with a builder, timing the builder if there is a
+     * {@link MetricsSink}.
+     *
+     * @param builder the builder
+     * @param key the key
+     * @param value the value
+     * @return the marshalled entry
+     */
+    private <K, V> Map.Entry<Object, Object> write(KeyValueBuilder<K, V> builder, K key, V value) {
+        MetricsSink sink = getMetricsSink();
+        if (sink == null) {
+            return builder.write(key, value);
+        }
+
+        long start = System.nanoTime();
+        Map.Entry<Object, Object> entry = builder.write(key, value);
+        sink.built(builder.getClass(), System.nanoTime() - start);
+        return entry;
+    }
+
     /**
      * Get a value at a location, also parsing it.
      *
@@ -211,11 +459,37 @@ class ConfigurationObject {
      *
      */
     public <V> V getOf(String path, Loader<V> loader) {
+        return getOf(ConfigPath.of(path), loader);
+    }
+
+    /**
+     * Get a value at a location, also parsing it.
+     *
+     * @param path path
+     * @param loader loader to parse with
+     * @return object or null
+     *
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V getOf(ConfigPath path, Loader<V> loader) {
+        ConversionCache cache = getConversionCache();
+        long generation = 0;
+        if (cache != null) {
+            generation = cache.getGeneration();
+            Object cached = cache.get(path, loader, ConversionCache.VALUE);
+            if (cached != null) {
+                return cached != ConversionCache.NULL ? (V) cached : null;
+            }
+        }
+
         Object o = get(path);
-        if (o == null) {
-            return null;
+        V value = o != null ? read(loader, o) : null;
+
+        if (cache != null) {
+            cache.put(path, loader, ConversionCache.VALUE, value, generation);
         }
-        return loader.read(o);
+
+        return value;
     }
 
     /**
@@ -229,16 +503,24 @@ class ConfigurationObject {
      */
     public <V, K extends Loader<V> & Builder<V>> V getOf(String path, K agent,
             V def) {
-        Object o = get(path);
-        if (o == null) {
-            Object res = agent.write(def);
-            set(path, res);
-            return def;
-        }
-        V val = agent.read(o);
+        return getOf(ConfigPath.of(path), agent, def);
+    }
+
+    /**
+     * Get a value at a location, also parsing it.
+     *
+     * @param path path
+     * @param agent loader to parse with (and builder to marshal with)
+     * @param def default value
+     * @return object or default
+     *
+     */
+    public <V, K extends Loader<V> & Builder<V>> V getOf(ConfigPath path, K agent,
+            V def) {
+        V val = getOf(path, (Loader<V>) agent);
         if (val == null) {
-            Object res = agent.write(def);
-            set(path, res);
+            Object res = write(agent, def);
+            setDefault(path, res);
             return def;
         }
         return val;
@@ -254,7 +536,7 @@ class ConfigurationObject {
      */
     @Deprecated
     public void setProperty(String path, Object value) {
-        set(parsePath(path), value);
+        set(ConfigPath.of(path), value);
     }
 
     /**
@@ -266,19 +548,21 @@ class ConfigurationObject {
      * @param value value to set
      */
     public void set(String path, Object value) {
-        set(parsePath(path), value);
+        set(ConfigPath.of(path), value);
     }
 
     /**
      * Set the property at a location. This will override existing configuration
-     * data to have it conform to key/value mappings.
+     * data to have it conform to key/value mappings. Indexes can only refer to
+     * an existing element of a list or one past its end, otherwise nothing
+     * will be set.
      *
-     * @param parts parts of the path
-     * @param value the value to set
+     * @param path path to node
+     * @param value value to set
      */
     @SuppressWarnings("unchecked")
-    protected void set(String[] parts, Object value) {
-        if (parts.length == 0) {
+    public void set(ConfigPath path, Object value) {
+        if (path.isRoot()) {
             throw new IllegalArgumentException("Invalid path");
         }
         
@@ -287,42 +571,57 @@ class ConfigurationObject {
         }
 
         Map<Object, Object> node = (Map<Object, Object>) root;
+        int last = path.size() - 1;
+
+        for (int i = 0; i < last; i++) {
+            String key = path.getKey(i);
+            int index = path.getIndex(i);
+            Object o = node.get(key);
+
+            if (index == -1) {
+                if (!(o instanceof Map<?, ?>)) {
+                    // This will override existing configuration data!
+                    o = new HashMap<Object, Object>();
+                    node.put(key, o);
+                }
+            } else {
+                Object entry = getIndexOf(o, index);
+
+                if (!(entry instanceof Map<?, ?>)) {
+                    // This will override the existing list entry!
+                    entry = new HashMap<Object, Object>();
+                    if (!setIndexOf(o, index, entry)) {
+                        return;
+                    }
+                }
 
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            
-            // Indexes
-            Matcher m = indexPattern.matcher(part);
-            int index = -1;
-            if (m.matches()) {
-                part = part.substring(0, part.length() - m.group(1).length() - 2);
-                index = Integer.parseInt(m.group(1));
+                o = entry;
             }
             
-            // Legal if there is an index
-            Object o;
-            if (part.equals("")) {
-                o = node;
-            } else {
-                o = node.get(part);
-            }
+            node = (Map<Object, Object>) o;
+        }
 
-            // Found our target!
-            if (i == parts.length - 1) {
-                node.put(parts[i], value);
+        // Found our target!
+        if (path.hasIndex(last)) {
+            if (!setIndexOf(node.get(path.getKey(last)), path.getIndex(last), value)) {
                 return;
             }
+        } else {
+            node.put(path.getKey(last), value);
+        }
 
-            o = getIndexOf(o, index);
+        changed(path);
+    }
 
-            if (o == null || !(o instanceof Map)) {
-                // This will override existing configuration data!
-                o = new HashMap<String, Object>();
-                node.put(parts[i], o);
-            }
-            
-            node = (Map<Object, Object>) o;
-        }
+    /**
+     * Set the property at a location. This will override existing configuration
+     * data to have it conform to key/value mappings.
+     *
+     * @param parts parts of the path
+     * @param value the value to set
+     */
+    protected void set(String[] parts, Object value) {
+        set(ConfigPath.fromParts(parts), value);
     }
 
     /**
@@ -335,12 +634,36 @@ class ConfigurationObject {
      * @param builder builder to marshal the value
      *
      */
-    @SuppressWarnings("unchecked")
     public <V> void set(String path, Object value, Builder<V> builder) {
-        Object o = builder.write((V) value);
+        set(ConfigPath.of(path), value, builder);
+    }
+
+    /**
+     * Set the property at a location. This will override existing configuration
+     * data to have it conform to key/value mappings.
+     *
+     * @param path path to node
+     * @param value the value to set
+     * @param builder builder to marshal the value
+     *
+     */
+    @SuppressWarnings("unchecked")
+    public <V> void set(ConfigPath path, Object value, Builder<V> builder) {
+        Object o = write(builder, (V) value);
         set(path, o);
     }
 
+    /**
+     * Called to write a default value back when a getter with a default
+     * does not find a value at the given location.
+     *
+     * @param path path to node
+     * @param value the value to set
+     */
+    protected void setDefault(ConfigPath path, Object value) {
+        set(path, value);
+    }
+
     /**
      * Gets a string given a path. May return null if not set.
      *
@@ -348,6 +671,16 @@ class ConfigurationObject {
      * @return string or null
      */
     public String getString(String path) {
+        return getString(ConfigPath.of(path));
+    }
+
+    /**
+     * Gets a string given a path. May return null if not set.
+     *
+     * @param path path to node
+     * @return string or null
+     */
+    public String getString(ConfigPath path) {
         return getOf(path, stringLB);
     }
 
@@ -360,6 +693,18 @@ class ConfigurationObject {
      * @return string or default
      */
     public String getString(String path, String def) {
+        return getString(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a string given a path. Will return default value if not set. The
+     * default value will also be set.
+     *
+     * @param path path to node
+     * @param def default value
+     * @return string or default
+     */
+    public String getString(ConfigPath path, String def) {
         return getOf(path, stringLB, def);
     }
 
@@ -370,6 +715,16 @@ class ConfigurationObject {
      * @return integer or null
      */
     public Integer getInt(String path) {
+        return getInt(ConfigPath.of(path));
+    }
+
+    /**
+     * Gets an integer given a path. May return null if not set.
+     *
+     * @param path path to node
+     * @return integer or null
+     */
+    public Integer getInt(ConfigPath path) {
         return getOf(path, integerLB);
     }
 
@@ -381,7 +736,25 @@ class ConfigurationObject {
      * @return int or default
      */
     public int getInt(String path, int def) {
-        return getOf(path, integerLB, def);
+        return getInt(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets an integer given a path. Will return default value if not set.
+     *
+     * @param path path to node
+     * @param def default value
+     * @return int or default
+     */
+    public int getInt(ConfigPath path, int def) {
+        Object o = get(path);
+        if (o instanceof Integer) {
+            return (Integer) o;
+        } else if (isNumber(o)) {
+            return ((Number) o).intValue();
+        }
+        setDefault(path, def);
+        return def;
     }
 
     /**
@@ -391,6 +764,16 @@ class ConfigurationObject {
      * @return long or null
      */
     public Long getLong(String path) {
+        return getLong(ConfigPath.of(path));
+    }
+
+    /**
+     * Gets a long given a path. May return null if not set.
+     *
+     * @param path path to node
+     * @return long or null
+     */
+    public Long getLong(ConfigPath path) {
         return getOf(path, longLB);
     }
 
@@ -402,7 +785,23 @@ class ConfigurationObject {
      * @return long or default
      */
     public long getLong(String path, long def) {
-        return getOf(path, longLB, def);
+        return getLong(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a double at a location. Will return default value if not set.
+     *
+     * @param path path to node
+     * @param def default value
+     * @return long or default
+     */
+    public long getLong(ConfigPath path, long def) {
+        Object o = get(path);
+        if (isNumber(o)) {
+            return ((Number) o).longValue();
+        }
+        setDefault(path, def);
+        return def;
     }
 
     /**
@@ -411,19 +810,45 @@ class ConfigurationObject {
      * @param path path to node (dot notation)
      * @return double or null
      */
-    public Double getDouble(String path) {
-        return getOf(path, doubleLB);
+    public Double getDouble(String path) {
+        return getDouble(ConfigPath.of(path));
+    }
+
+    /**
+     * Gets a double given a path. May return null if not set.
+     *
+     * @param path path to node
+     * @return double or null
+     */
+    public Double getDouble(ConfigPath path) {
+        return getOf(path, doubleLB);
+    }
+
+    /**
+     * Gets a double at a location. Will return default value if not set.
+     *
+     * @param path path to node (dot notation)
+     * @param def default value
+     * @return double or default
+     */
+    public double getDouble(String path, double def) {
+        return getDouble(ConfigPath.of(path), def);
     }
 
     /**
      * Gets a double at a location. Will return default value if not set.
      *
-     * @param path path to node (dot notation)
+     * @param path path to node
      * @param def default value
      * @return double or default
      */
-    public double getDouble(String path, double def) {
-        return getOf(path, doubleLB, def);
+    public double getDouble(ConfigPath path, double def) {
+        Object o = get(path);
+        if (isNumber(o)) {
+            return ((Number) o).doubleValue();
+        }
+        setDefault(path, def);
+        return def;
     }
 
     /**
@@ -433,6 +858,16 @@ class ConfigurationObject {
      * @return float or null
      */
     public Float getFloat(String path) {
+        return getFloat(ConfigPath.of(path));
+    }
+
+    /**
+     * Gets a float given a path. May return null if not set.
+     *
+     * @param path path to node
+     * @return float or null
+     */
+    public Float getFloat(ConfigPath path) {
         return getOf(path, floatLB);
     }
 
@@ -444,7 +879,23 @@ class ConfigurationObject {
      * @return float or default
      */
     public float getFloat(String path, float def) {
-        return getOf(path, floatLB, def);
+        return getFloat(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a float at a location. Will return default value if not set.
+     *
+     * @param path path to node
+     * @param def default value
+     * @return float or default
+     */
+    public float getFloat(ConfigPath path, float def) {
+        Object o = get(path);
+        if (isNumber(o)) {
+            return ((Number) o).floatValue();
+        }
+        setDefault(path, def);
+        return def;
     }
 
     /**
@@ -454,6 +905,16 @@ class ConfigurationObject {
      * @return boolean or null
      */
     public Boolean getBoolean(String path) {
+        return getBoolean(ConfigPath.of(path));
+    }
+
+    /**
+     * Gets a boolean given a path. May return null if not set.
+     *
+     * @param path path to node
+     * @return boolean or null
+     */
+    public Boolean getBoolean(ConfigPath path) {
         return getOf(path, boolLB);
     }
 
@@ -465,7 +926,35 @@ class ConfigurationObject {
      * @return boolean or default
      */
     public boolean getBoolean(String path, boolean def) {
-        return getOf(path, boolLB, def);
+        return getBoolean(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a boolean given a path. Will return default value if not set.
+     *
+     * @param path path to node
+     * @param def default value
+     * @return boolean or default
+     */
+    public boolean getBoolean(ConfigPath path, boolean def) {
+        Object o = get(path);
+        if (o instanceof Boolean) {
+            return (Boolean) o;
+        }
+        setDefault(path, def);
+        return def;
+    }
+
+    /**
+     * Returns whether a value is one of the number types that the numeric
+     * getters convert from.
+     *
+     * @param o the value
+     * @return true if it is a number
+     */
+    private static boolean isNumber(Object o) {
+        return o instanceof Integer || o instanceof Double || o instanceof Long
+                || o instanceof Float || o instanceof Byte;
     }
 
     /**
@@ -476,7 +965,19 @@ class ConfigurationObject {
      * @return node or null
      */
     public ConfigurationNode getNode(String path) {
-        return getOf(path, nodeLB);
+        return getNode(ConfigPath.of(path));
+    }
+
+    /**
+     * Gets a {@link ConfigurationNode}s given a path. May return null if not
+     * set. Changes made through the returned node are seen by this object as
+     * changes to the path.
+     *
+     * @param path path to node
+     * @return node or null
+     */
+    public ConfigurationNode getNode(ConfigPath path) {
+        return adopt(getOf(path, nodeLB), path);
     }
 
     /**
@@ -488,7 +989,20 @@ class ConfigurationObject {
      * @return node or default
      */
     public ConfigurationNode getNode(String path, ConfigurationNode def) {
-        return getOf(path, nodeLB, def);
+        return getNode(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a {@link ConfigurationNode}s given a path. Will return default value
+     * if not set.
+     *
+     * @param path path to node
+     * @param def default value
+     * @return node or default
+     */
+    public ConfigurationNode getNode(ConfigPath path, ConfigurationNode def) {
+        ConfigurationNode node = getNode(path);
+        return node != null ? node : def;
     }
 
     /**
@@ -517,7 +1031,7 @@ class ConfigurationObject {
     public Vector getVector(String path, Vector def) {
         Vector v = getVector(path);
         if (v == null) {
-            setProperty(path, def);
+            setDefault(ConfigPath.of(path), def);
             return def;
         }
         return v;
@@ -594,7 +1108,7 @@ class ConfigurationObject {
             while (def.hasNext()) {
                 list.add(def.next());
             }
-            set(path, list);
+            setDefault(ConfigPath.of(path), list);
         }
         return list;
     }
@@ -627,7 +1141,7 @@ class ConfigurationObject {
                 Map.Entry<Object, Object> entry = def.next();
                 map.put(entry.getKey(), entry.getValue());
             }
-            set(path, map);
+            setDefault(ConfigPath.of(path), map);
         }
         return map;
     }
@@ -648,15 +1162,50 @@ class ConfigurationObject {
      * Fills a collection of structures given a path. The collection will not
      * contain nulls.
      *
-     * @param path path to node (dot notation)
+     * @param path path to node
      * @param loader loader to use to create the structures
      * @param collection collection to fill
      * @return list of objects or unaffected given collection
      *
      */
-    private <V, K extends Collection<V>> K nullableCollectionOf(String path,
+    @SuppressWarnings("unchecked")
+    private <V, K extends Collection<V>> K nullableCollectionOf(ConfigPath path,
+            Loader<V> loader, K collection) {
+        ConversionCache cache = getConversionCache();
+        if (cache == null) {
+            return readCollectionOf(path, loader, collection);
+        }
+
+        List<V> values;
+        long generation = cache.getGeneration();
+        Object cached = cache.get(path, loader, ConversionCache.COLLECTION);
+        if (cached != null) {
+            values = cached != ConversionCache.NULL ? (List<V>) cached : null;
+        } else {
+            values = readCollectionOf(path, loader, new ArrayList<V>());
+            cache.put(path, loader, ConversionCache.COLLECTION, values, generation);
+        }
+
+        if (values == null) {
+            return null;
+        }
+
+        collection.addAll(values);
+        return collection;
+    }
+
+    /**
+     * Fills a collection of structures given a path, without consulting the
+     * conversion cache.
+     *
+     * @param path path to node
+     * @param loader loader to use to create the structures
+     * @param collection collection to fill
+     * @return list of objects or null if there is nothing at the path
+     */
+    private <V, K extends Collection<V>> K readCollectionOf(ConfigPath path,
             Loader<V> loader, K collection) {
-        List<Object> objectList = getOf(path, listLB);
+        List<Object> objectList = listLB.read(get(path));
 
         // We don't have a list at that path
         if (objectList == null) {
@@ -672,9 +1221,15 @@ class ConfigurationObject {
             return null;
         }
 
+        ParallelDecoder decoder = getParallelDecoder();
+        if (decoder != null && decoder.accepts(loader, objectList.size())) {
+            collection.addAll(decoder.readAll(objectList, timed(loader)));
+            return collection;
+        }
+
         // Try to unmarshal each object
         for (Object o : objectList) {
-            V parsed = loader.read(o);
+            V parsed = read(loader, o);
             if (parsed != null) {
                 collection.add(parsed);
             }
@@ -695,6 +1250,21 @@ class ConfigurationObject {
      */
     public <V, K extends Collection<V>> K collectionOf(String path,
             Loader<V> loader, K collection) {
+        return collectionOf(ConfigPath.of(path), loader, collection);
+    }
+
+    /**
+     * Fills a collection of structures given a path. The collection will not
+     * contain nulls.
+     *
+     * @param path path to node
+     * @param loader loader to use to create the structures
+     * @param collection collection to fill
+     * @return list of objects or unaffected given collection
+     *
+     */
+    public <V, K extends Collection<V>> K collectionOf(ConfigPath path,
+            Loader<V> loader, K collection) {
         nullableCollectionOf(path, loader, collection);
         return collection;
     }
@@ -712,6 +1282,22 @@ class ConfigurationObject {
      */
     public <V, K extends Collection<V>, E extends Loader<V> & Builder<V>> K collectionOf(
             String path, E agent, K collection, Iterator<V> def) {
+        return collectionOf(ConfigPath.of(path), agent, collection, def);
+    }
+
+    /**
+     * Fills a collection of structures given a path. The collection will not
+     * contain nulls.
+     *
+     * @param path path to node
+     * @param agent loader to parse with (and builder to marshal with)
+     * @param collection collection to fill
+     * @param def iterator to pull default values from
+     * @return list of objects or default list
+     *
+     */
+    public <V, K extends Collection<V>, E extends Loader<V> & Builder<V>> K collectionOf(
+            ConfigPath path, E agent, K collection, Iterator<V> def) {
         Collection<V> result = nullableCollectionOf(path, agent, collection);
         if (result == null) {
             // Since the value does not exist, let's make a default list to
@@ -720,9 +1306,9 @@ class ConfigurationObject {
             while (def.hasNext()) {
                 V obj = def.next();
                 collection.add(obj);
-                objectList.add(agent.write(obj));
+                objectList.add(write(agent, obj));
             }
-            set(path, objectList);
+            setDefault(path, objectList);
         }
         return collection;
     }
@@ -737,9 +1323,22 @@ class ConfigurationObject {
      */
     public <V> void setCollectionOf(String path, Builder<V> builder,
             Collection<V> list) {
+        setCollectionOf(ConfigPath.of(path), builder, list);
+    }
+
+    /**
+     * Sets a collection of structures.
+     *
+     * @param path path to node
+     * @param builder factory to use to marshal the structures
+     * @param list list to use
+     *
+     */
+    public <V> void setCollectionOf(ConfigPath path, Builder<V> builder,
+            Collection<V> list) {
         List<Object> objects = new ArrayList<Object>();
         for (V entry : list) {
-            objects.add(builder.write(entry));
+            objects.add(write(builder, entry));
         }
         set(path, objects);
     }
@@ -753,6 +1352,18 @@ class ConfigurationObject {
      *
      */
     public <V> List<V> listOf(String path, Loader<V> loader) {
+        return listOf(ConfigPath.of(path), loader);
+    }
+
+    /**
+     * Gets a list of structures given a path. The list will not contain nulls.
+     *
+     * @param path path to node
+     * @param loader loader to use to create the structures
+     * @return list of objects or empty list
+     *
+     */
+    public <V> List<V> listOf(ConfigPath path, Loader<V> loader) {
         return collectionOf(path, loader, new ArrayList<V>());
     }
 
@@ -767,6 +1378,20 @@ class ConfigurationObject {
      */
     public <V, K extends Loader<V> & Builder<V>> List<V> listOf(String path,
             K agent, Iterator<V> def) {
+        return listOf(ConfigPath.of(path), agent, def);
+    }
+
+    /**
+     * Gets a list of structures given a path. The list will not contain nulls.
+     *
+     * @param path path to node
+     * @param agent loader to parse with (and builder to marshal with)
+     * @param def an iterator to provide default entries with
+     * @return list of objects or the default list
+     *
+     */
+    public <V, K extends Loader<V> & Builder<V>> List<V> listOf(ConfigPath path,
+            K agent, Iterator<V> def) {
         return collectionOf(path, agent, new ArrayList<V>(), def);
     }
 
@@ -781,6 +1406,20 @@ class ConfigurationObject {
      */
     public <V, K extends Loader<V> & Builder<V>> List<V> listOf(String path,
             K agent, Collection<V> def) {
+        return listOf(ConfigPath.of(path), agent, def);
+    }
+
+    /**
+     * Gets a list of structures given a path. The list will not contain nulls.
+     *
+     * @param path path to node
+     * @param agent loader to parse with (and builder to marshal with)
+     * @param def a collection of default entries
+     * @return list of objects or the default list
+     *
+     */
+    public <V, K extends Loader<V> & Builder<V>> List<V> listOf(ConfigPath path,
+            K agent, Collection<V> def) {
         return listOf(path, agent, def.iterator());
     }
 
@@ -794,6 +1433,19 @@ class ConfigurationObject {
      *
      */
     public <V> Set<V> setOf(String path, Loader<V> loader) {
+        return setOf(ConfigPath.of(path), loader);
+    }
+
+    /**
+     * Gets a collection of structures given a path. The collection will not
+     * contain nulls.
+     *
+     * @param path path to node
+     * @param loader loader to use to create the structures
+     * @return set of objects or empty set
+     *
+     */
+    public <V> Set<V> setOf(ConfigPath path, Loader<V> loader) {
         return collectionOf(path, loader, new HashSet<V>());
     }
 
@@ -809,6 +1461,21 @@ class ConfigurationObject {
      */
     public <V, K extends Loader<V> & Builder<V>> Set<V> setOf(String path,
             K agent, Iterator<V> def) {
+        return setOf(ConfigPath.of(path), agent, def);
+    }
+
+    /**
+     * Gets a collection of structures given a path. The collection will not
+     * contain nulls.
+     *
+     * @param path path to node
+     * @param agent loader to parse with (and builder to marshal with)
+     * @param def an iterator to provide default entries with
+     * @return set of objects or the default set
+     *
+     */
+    public <V, K extends Loader<V> & Builder<V>> Set<V> setOf(ConfigPath path,
+            K agent, Iterator<V> def) {
         return collectionOf(path, agent, new HashSet<V>(), def);
     }
 
@@ -824,6 +1491,21 @@ class ConfigurationObject {
      */
     public <V, K extends Loader<V> & Builder<V>> Set<V> setOf(String path,
             K agent, Collection<V> def) {
+        return setOf(ConfigPath.of(path), agent, def);
+    }
+
+    /**
+     * Gets a collection of structures given a path. The collection will not
+     * contain nulls.
+     *
+     * @param path path to node
+     * @param agent loader to parse with (and builder to marshal with)
+     * @param def a collection of default entries
+     * @return set of objects or the default set
+     *
+     */
+    public <V, K extends Loader<V> & Builder<V>> Set<V> setOf(ConfigPath path,
+            K agent, Collection<V> def) {
         return setOf(path, agent, def.iterator());
     }
 
@@ -835,6 +1517,17 @@ class ConfigurationObject {
      */
     @SuppressWarnings("unchecked")
     public List<String> getKeys(String path) {
+        return getKeys(ConfigPath.of(path));
+    }
+
+    /**
+     * Get a list of keys (cast to strings) given a path.
+     *
+     * @param path path to node
+     * @return list of keys
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getKeys(ConfigPath path) {
         Object o = get(path);
         if (o == null) {
             return new ArrayList<String>();
@@ -846,31 +1539,155 @@ class ConfigurationObject {
     }
 
     /**
-     * Gets a list of strings with no null entries.
+     * Gets a list of strings with no null entries.
+     *
+     * @param path path to node (dot notation)
+     * @param def list of default values
+     * @return list of strings
+     */
+    public List<String> getStringList(String path, List<String> def) {
+        return getStringList(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a list of strings with no null entries.
+     *
+     * @param path path to node
+     * @param def list of default values
+     * @return list of strings
+     */
+    public List<String> getStringList(ConfigPath path, List<String> def) {
+        if (def == null) { // Legacy compatibility
+            def = new ArrayList<String>();
+        }
+        return listOf(path, stringLB, def.iterator());
+    }
+
+    /**
+     * Gets a list of integers with no null entries.
+     *
+     * @param path path to node (dot notation)
+     * @param def list of default values
+     * @return list of integers
+     */
+    public List<Integer> getIntList(String path, List<Integer> def) {
+        return getIntList(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a list of integers with no null entries.
+     *
+     * @param path path to node
+     * @param def list of default values
+     * @return list of integers
+     */
+    public List<Integer> getIntList(ConfigPath path, List<Integer> def) {
+        if (def == null) { // Legacy compatibility
+            def = new ArrayList<Integer>();
+        }
+        return listOf(path, integerLB, def.iterator());
+    }
+
+    /**
+     * Gets an array of integers from a list, skipping entries that are not
+     * numbers. If there is a single number at the path, an array containing
+     * it is returned.
+     *
+     * @param path path to node (dot notation)
+     * @param def array of default values
+     * @return array of integers
+     */
+    public int[] getIntArray(String path, int[] def) {
+        return getIntArray(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets an array of integers from a list, skipping entries that are not
+     * numbers. If there is a single number at the path, an array containing
+     * it is returned.
+     *
+     * @param path path to node
+     * @param def array of default values
+     * @return array of integers
+     */
+    public int[] getIntArray(ConfigPath path, int[] def) {
+        Object o = get(path);
+
+        if (o instanceof List<?>) {
+            List<?> list = (List<?>) o;
+            int[] values = new int[list.size()];
+            int count = 0;
+            for (int i = 0; i < values.length; i++) {
+                Object element = list.get(i);
+                if (isNumber(element)) {
+                    values[count++] = ((Number) element).intValue();
+                }
+            }
+            return count == values.length ? values : Arrays.copyOf(values, count);
+        } else if (isNumber(o)) {
+            return new int[] { ((Number) o).intValue() };
+        }
+
+        if (def == null) { // Same as getIntList()
+            def = new int[0];
+        }
+        List<Object> defList = new ArrayList<Object>(def.length);
+        for (int value : def) {
+            defList.add(value);
+        }
+        setDefault(path, defList);
+        return def;
+    }
+
+    /**
+     * Gets an array of doubles from a list, skipping entries that are not
+     * numbers. If there is a single number at the path, an array containing
+     * it is returned.
      *
      * @param path path to node (dot notation)
-     * @param def list of default values
-     * @return list of strings
+     * @param def array of default values
+     * @return array of doubles
      */
-    public List<String> getStringList(String path, List<String> def) {
-        if (def == null) { // Legacy compatibility
-            def = new ArrayList<String>();
-        }
-        return listOf(path, stringLB, def.iterator());
+    public double[] getDoubleArray(String path, double[] def) {
+        return getDoubleArray(ConfigPath.of(path), def);
     }
 
     /**
-     * Gets a list of integers with no null entries.
+     * Gets an array of doubles from a list, skipping entries that are not
+     * numbers. If there is a single number at the path, an array containing
+     * it is returned.
      *
-     * @param path path to node (dot notation)
-     * @param def list of default values
-     * @return list of integers
+     * @param path path to node
+     * @param def array of default values
+     * @return array of doubles
      */
-    public List<Integer> getIntList(String path, List<Integer> def) {
-        if (def == null) { // Legacy compatibility
-            def = new ArrayList<Integer>();
+    public double[] getDoubleArray(ConfigPath path, double[] def) {
+        Object o = get(path);
+
+        if (o instanceof List<?>) {
+            List<?> list = (List<?>) o;
+            double[] values = new double[list.size()];
+            int count = 0;
+            for (int i = 0; i < values.length; i++) {
+                Object element = list.get(i);
+                if (isNumber(element)) {
+                    values[count++] = ((Number) element).doubleValue();
+                }
+            }
+            return count == values.length ? values : Arrays.copyOf(values, count);
+        } else if (isNumber(o)) {
+            return new double[] { ((Number) o).doubleValue() };
         }
-        return listOf(path, integerLB, def.iterator());
+
+        if (def == null) { // Same as getDoubleList()
+            def = new double[0];
+        }
+        List<Object> defList = new ArrayList<Object>(def.length);
+        for (double value : def) {
+            defList.add(value);
+        }
+        setDefault(path, defList);
+        return def;
     }
 
     /**
@@ -881,6 +1698,17 @@ class ConfigurationObject {
      * @return list of longs
      */
     public List<Long> getLongList(String path, List<Long> def) {
+        return getLongList(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a list of longs with no null entries.
+     *
+     * @param path path to node
+     * @param def list of default values
+     * @return list of longs
+     */
+    public List<Long> getLongList(ConfigPath path, List<Long> def) {
         if (def == null) { // Legacy compatibility
             def = new ArrayList<Long>();
         }
@@ -895,6 +1723,17 @@ class ConfigurationObject {
      * @return list of doubles
      */
     public List<Double> getDoubleList(String path, List<Double> def) {
+        return getDoubleList(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a list of doubles with no null entries.
+     *
+     * @param path path to node
+     * @param def list of default values
+     * @return list of doubles
+     */
+    public List<Double> getDoubleList(ConfigPath path, List<Double> def) {
         if (def == null) { // Legacy compatibility
             def = new ArrayList<Double>();
         }
@@ -909,6 +1748,17 @@ class ConfigurationObject {
      * @return list of booleans
      */
     public List<Boolean> getBooleanList(String path, List<Boolean> def) {
+        return getBooleanList(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a list of booleans with no null entries.
+     *
+     * @param path path to node
+     * @param def list of default values
+     * @return list of booleans
+     */
+    public List<Boolean> getBooleanList(ConfigPath path, List<Boolean> def) {
         if (def == null) { // Legacy compatibility
             def = new ArrayList<Boolean>();
         }
@@ -924,10 +1774,28 @@ class ConfigurationObject {
      */
     public List<ConfigurationNode> getNodeList(String path,
             List<ConfigurationNode> def) {
+        return getNodeList(ConfigPath.of(path), def);
+    }
+
+    /**
+     * Gets a list of configuration nodes.
+     *
+     * @param path path to node
+     * @param def list of default values
+     * @return list of nodes
+     */
+    public List<ConfigurationNode> getNodeList(ConfigPath path,
+            List<ConfigurationNode> def) {
         if (def == null) { // Legacy compatibility
             def = new ArrayList<ConfigurationNode>();
         }
-        return listOf(path, nodeLB, def.iterator());
+        List<ConfigurationNode> nodes = listOf(path, nodeLB, def.iterator());
+        for (ConfigurationNode node : nodes) {
+            if (!def.contains(node)) {
+                adopt(node, path);
+            }
+        }
+        return nodes;
     }
 
     /**
@@ -979,20 +1847,63 @@ class ConfigurationObject {
     /**
      * Get a key/value {@link Map} given a path.
      *
-     * @param path path to node (dot notation)
+     * @param path path to node
      * @param loader loader to parse the values with
      * @param map an empty map to store the entries in
      * @return map of objects or unmodified given map
      *
      */
     @SuppressWarnings("unchecked")
-    private <K, V> Map<K, V> nullableKeyValueOf(String path,
+    private <K, V> Map<K, V> nullableKeyValueOf(ConfigPath path,
+            KeyValueLoader<K, V> loader, Map<K, V> map) {
+        ConversionCache cache = getConversionCache();
+        if (cache == null) {
+            return readKeyValueOf(path, loader, map);
+        }
+
+        Map<K, V> values;
+        long generation = cache.getGeneration();
+        Object cached = cache.get(path, loader, ConversionCache.KEY_VALUE);
+        if (cached != null) {
+            values = cached != ConversionCache.NULL ? (Map<K, V>) cached : null;
+        } else {
+            values = readKeyValueOf(path, loader, new LinkedHashMap<K, V>());
+            cache.put(path, loader, ConversionCache.KEY_VALUE, values, generation);
+        }
+
+        if (values == null) {
+            return null;
+        }
+
+        map.putAll(values);
+        return map;
+    }
+
+    /**
+     * Get a key/value {@link Map} given a path, without consulting the
+     * conversion cache.
+     *
+     * @param path path to node
+     * @param loader loader to parse the values with
+     * @param map an empty map to store the entries in
+     * @return map of objects or null if there is no map at the path
+     */
+    @SuppressWarnings("unchecked")
+    private <K, V> Map<K, V> readKeyValueOf(ConfigPath path,
             KeyValueLoader<K, V> loader, Map<K, V> map) {
         Object o = get(path);
         if (o != null && o instanceof Map) {
+            ParallelDecoder decoder = getParallelDecoder();
+            if (decoder != null && decoder.accepts(loader, ((Map<Object, Object>) o).size())) {
+                for (Map.Entry<K, V> parsed : decoder.readAll((Map<Object, Object>) o, timed(loader))) {
+                    map.put(parsed.getKey(), parsed.getValue());
+                }
+                return map;
+            }
+
             for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) o)
                     .entrySet()) {
-                Map.Entry<K, V> parsed = loader.read(entry.getKey(),
+                Map.Entry<K, V> parsed = read(loader, entry.getKey(),
                         entry.getValue());
                 if (parsed != null) {
                     map.put(parsed.getKey(), parsed.getValue());
@@ -1016,6 +1927,20 @@ class ConfigurationObject {
      */
     public <K, V> Map<K, V> keyValueOf(String path,
             KeyValueLoader<K, V> loader, Map<K, V> map) {
+        return keyValueOf(ConfigPath.of(path), loader, map);
+    }
+
+    /**
+     * Get a key/value {@link Map} given a path.
+     *
+     * @param path path to node
+     * @param loader loader to parse the values with
+     * @param map an empty map to store the entries in
+     * @return map of objects or unmodified given map
+     *
+     */
+    public <K, V> Map<K, V> keyValueOf(ConfigPath path,
+            KeyValueLoader<K, V> loader, Map<K, V> map) {
         nullableKeyValueOf(path, loader, map);
         return map;
     }
@@ -1033,6 +1958,22 @@ class ConfigurationObject {
      */
     public <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> keyValueOf(
             String path, E agent, Map<K, V> map, Iterator<Map.Entry<K, V>> def) {
+        return keyValueOf(ConfigPath.of(path), agent, map, def);
+    }
+
+    /**
+     * Get a key/value {@link Map} given a path.
+     *
+     * @param path path to node
+     * @param agent loader to unmarshal the values with, and a builder to
+     *            marshal the default
+     * @param map an empty map to store the entries in
+     * @param def iterator to get default values from
+     * @return map of objects or default
+     *
+     */
+    public <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> keyValueOf(
+            ConfigPath path, E agent, Map<K, V> map, Iterator<Map.Entry<K, V>> def) {
         Map<K, V> result = keyValueOf(path, agent, map);
         if (result == null) {
             // Since the value does not exist, let's make a default map to
@@ -1041,11 +1982,11 @@ class ConfigurationObject {
             while (def.hasNext()) {
                 Map.Entry<K, V> entry = def.next();
                 map.put(entry.getKey(), entry.getValue());
-                Map.Entry<Object, Object> m = agent.write(entry.getKey(),
+                Map.Entry<Object, Object> m = write(agent, entry.getKey(),
                         entry.getValue());
                 objectMap.put(m.getKey(), m.getValue());
             }
-            set(path, objectMap);
+            setDefault(path, objectMap);
         }
         return map;
     }
@@ -1062,6 +2003,21 @@ class ConfigurationObject {
      */
     public <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> keyValueOf(
             String path, E loader, Map<K, V> map, Map<K, V> def) {
+        return keyValueOf(ConfigPath.of(path), loader, map, def);
+    }
+
+    /**
+     * Get a key/value {@link Map} given a path.
+     *
+     * @param path path to node
+     * @param loader loader to parse the values with
+     * @param map an empty map to store the entries in
+     * @param def iterator to get default values from
+     * @return map of objects or default
+     *
+     */
+    public <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> keyValueOf(
+            ConfigPath path, E loader, Map<K, V> map, Map<K, V> def) {
         return keyValueOf(path, loader, map, def.entrySet().iterator());
     }
 
@@ -1075,9 +2031,22 @@ class ConfigurationObject {
      */
     public <K, V> void setKeyValueOf(String path,
             KeyValueBuilder<K, V> builder, Map<K, V> map) {
+        setKeyValueOf(ConfigPath.of(path), builder, map);
+    }
+
+    /**
+     * Sets a key/value of structures.
+     *
+     * @param path path to node
+     * @param builder factory to use to marshal the structures
+     * @param map map of data to set
+     *
+     */
+    public <K, V> void setKeyValueOf(ConfigPath path,
+            KeyValueBuilder<K, V> builder, Map<K, V> map) {
         Map<Object, Object> objects = new HashMap<Object, Object>();
         for (Entry<K, V> entry : map.entrySet()) {
-            Map.Entry<Object, Object> result = builder.write(entry.getKey(),
+            Map.Entry<Object, Object> result = write(builder, entry.getKey(),
                     entry.getValue());
             objects.put(result.getKey(), result.getValue());
         }
@@ -1093,6 +2062,18 @@ class ConfigurationObject {
      *
      */
     public <K, V> Map<K, V> mapOf(String path, KeyValueLoader<K, V> loader) {
+        return mapOf(ConfigPath.of(path), loader);
+    }
+
+    /**
+     * Get a {@link HashMap} given a path.
+     *
+     * @param path path to node
+     * @param loader loader to parse the values with
+     * @return map of objects or empty map
+     *
+     */
+    public <K, V> Map<K, V> mapOf(ConfigPath path, KeyValueLoader<K, V> loader) {
         return keyValueOf(path, loader, new HashMap<K, V>());
     }
 
@@ -1108,6 +2089,21 @@ class ConfigurationObject {
      */
     public <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> mapOf(
             String path, E agent, Iterator<Map.Entry<K, V>> def) {
+        return mapOf(ConfigPath.of(path), agent, def);
+    }
+
+    /**
+     * Get a {@link HashMap} given a path.
+     *
+     * @param path path to node
+     * @param agent loader to unmarshal the values with, and a builder to
+     *            marshal the default
+     * @param def iterator to get default values from
+     * @return map of objects or a map of values from the defaults iterator
+     *
+     */
+    public <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> mapOf(
+            ConfigPath path, E agent, Iterator<Map.Entry<K, V>> def) {
         return keyValueOf(path, agent, new HashMap<K, V>(), def);
     }
 
@@ -1123,6 +2119,21 @@ class ConfigurationObject {
      */
     public <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> mapOf(
             String path, E agent, Map<K, V> def) {
+        return mapOf(ConfigPath.of(path), agent, def);
+    }
+
+    /**
+     * Get a {@link HashMap} given a path.
+     *
+     * @param path path to node
+     * @param agent loader to unmarshal the values with, and a builder to
+     *            marshal the default
+     * @param def map containing default values
+     * @return map of objects or the default map
+     *
+     */
+    public <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> mapOf(
+            ConfigPath path, E agent, Map<K, V> def) {
         return mapOf(path, agent, def.entrySet().iterator());
     }
 
@@ -1135,8 +2146,26 @@ class ConfigurationObject {
      *
      */
     public Map<String, ConfigurationNode> getNodes(String path) {
-        return mapOf(path, PairedKeyValueLoaderBuilder.build(stringLB, nodeLB),
+        return getNodes(ConfigPath.of(path));
+    }
+
+    /**
+     * Get a list of nodes at a location. If the map at the particular location
+     * does not exist or it is not a map, null will be returned.
+     *
+     * @param path path to node
+     * @return map of nodes
+     *
+     */
+    public Map<String, ConfigurationNode> getNodes(ConfigPath path) {
+        Map<String, ConfigurationNode> nodes = mapOf(path, nodeMapLB,
                 new EmptyIterator<Map.Entry<String, ConfigurationNode>>());
+        if (nodes != null) {
+            for (Map.Entry<String, ConfigurationNode> entry : nodes.entrySet()) {
+                adopt(entry.getValue(), path.child(entry.getKey()));
+            }
+        }
+        return nodes;
     }
 
     /**
@@ -1146,9 +2175,34 @@ class ConfigurationObject {
      * @return the node (that can be modified)
      */
     public ConfigurationNode setNode(String path) {
+        return setNode(ConfigPath.of(path));
+    }
+
+    /**
+     * Adds a new node to the given path.
+     *
+     * @param path a path to set the node at
+     * @return the node (that can be modified)
+     */
+    public ConfigurationNode setNode(ConfigPath path) {
         Map<Object, Object> map = new HashMap<Object, Object>();
         ConfigurationNode node = new ConfigurationNode(map);
         set(path, map);
+        return adopt(node, path);
+    }
+
+    /**
+     * Make changes that are made through a node that was read from this
+     * object count as changes to the path that it was read from.
+     *
+     * @param node the node, or null
+     * @param path the path that the node was read from
+     * @return the node
+     */
+    private ConfigurationNode adopt(ConfigurationNode node, ConfigPath path) {
+        if (node != null) {
+            node.setOwner(this, path);
+        }
         return node;
     }
 
@@ -1169,29 +2223,8 @@ class ConfigurationObject {
      *
      * @param parts parts of the path
      */
-    @SuppressWarnings("unchecked")
     public void remove(String[] parts) {
-        if (parts.length == 0) {
-            throw new IllegalArgumentException("Invalid path");
-        }
-        
-        if (!(root instanceof Map<?, ?>)) {
-            return;
-        }
-
-        Map<Object, Object> node = (Map<Object, Object>) root;
-
-        for (int i = 0; i < parts.length; i++) {
-            Object o = node.get(parts[i]);
-
-            // Found our target!
-            if (i == parts.length - 1) {
-                node.remove(parts[i]);
-                return;
-            }
-
-            node = (Map<Object, Object>) o;
-        }
+        remove(ConfigPath.fromParts(parts));
     }
 
     /**
@@ -1201,7 +2234,39 @@ class ConfigurationObject {
      * @param path path
      */
     public void remove(String path) {
-        remove(parsePath(path));
+        remove(ConfigPath.of(path));
+    }
+
+    /**
+     * Remove the property at a location. This will override existing
+     * configuration data to have it conform to key/value mappings. If the
+     * last part of the path has an index, the element is removed from the list.
+     *
+     * @param path path
+     */
+    public void remove(ConfigPath path) {
+        if (path.isRoot()) {
+            throw new IllegalArgumentException("Invalid path");
+        }
+
+        Map<Object, Object> node = resolveContainer(path);
+        if (node == null) {
+            return;
+        }
+
+        // Found our target!
+        int last = path.size() - 1;
+        if (path.hasIndex(last)) {
+            Object o = node.get(path.getKey(last));
+            int index = path.getIndex(last);
+            if (o instanceof List<?> && index < ((List<?>) o).size()) {
+                ((List<?>) o).remove(index);
+            }
+        } else {
+            node.remove(path.getKey(last));
+        }
+
+        changed(path);
     }
 
     /**
@@ -1221,45 +2286,8 @@ class ConfigurationObject {
      * @param parts parts of the path
      * @return true if it exists
      */
-    @SuppressWarnings("unchecked")
     public boolean contains(String[] parts) {
-        if (parts.length == 0) {
-            return true;
-        }
-        
-        if (!(root instanceof Map<?, ?>)) {
-            return false;
-        }
-
-        Map<Object, Object> node = (Map<Object, Object>) root;
-
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            
-            // Indexes
-            Matcher m = indexPattern.matcher(part);
-            int index = -1;
-            if (m.matches()) {
-                part = part.substring(0, part.length() - m.group(1).length());
-                index = Integer.parseInt(m.group(1));
-            }
-            
-            Object o = node.get(part);
-            
-            if (o == null) {
-                return false;
-            }
-
-            // Found our target!
-            if (i == parts.length - 1) {
-                return node.containsKey(parts[i]) && getIndexOf(o, index) != null;
-                // This is not quite the right way to process indexes
-            }
-
-            node = (Map<Object, Object>) getIndexOf(o, index);
-        }
-
-        return true;
+        return contains(ConfigPath.fromParts(parts));
     }
 
     /**
@@ -1269,19 +2297,33 @@ class ConfigurationObject {
      * @return true if it exists
      */
     public final boolean contains(String path) {
-        return contains(parsePath(path));
+        return contains(ConfigPath.of(path));
+    }
+
+    /**
+     * Returns whether the property exists.
+     *
+     * @param path path
+     * @return true if it exists
+     */
+    public boolean contains(ConfigPath path) {
+        if (path.isRoot()) {
+            return true;
+        }
+
+        Map<Object, Object> node = resolveContainer(path);
+        if (node == null) {
+            return false;
+        }
+
+        int last = path.size() - 1;
+        Object o = node.get(path.getKey(last));
+        return o != null && getIndexOf(o, path.getIndex(last)) != null;
     }
     
     @Override
     public String toString() {
-        DumperOptions options = new DumperOptions();
-        options.setIndent(4);
-        options.setDefaultFlowStyle(FlowStyle.AUTO);
-        Representer representer = new Representer();
-        representer.setDefaultFlowStyle(FlowStyle.AUTO);
-        
-        Yaml yaml = new Yaml(new SafeConstructor(), new Representer(), options);
-        return yaml.dump(root).trim();
+        return YamlEngines.get(toStringStyle).dump(root).trim();
     }
 
     protected static String[] parsePath(String path) {
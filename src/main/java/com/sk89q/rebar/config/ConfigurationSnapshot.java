@@ -0,0 +1,320 @@
+package com.sk89q.rebar.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sk89q.rebar.config.types.BooleanLoaderBuilder;
+import com.sk89q.rebar.config.types.DoubleLoaderBuilder;
+import com.sk89q.rebar.config.types.IntegerLoaderBuilder;
+import com.sk89q.rebar.config.types.LongLoaderBuilder;
+
+/**
+ * An immutable copy of a {@link ConfigurationNode}, created with
+ * {@link ConfigurationNode#snapshot()}.
+ * </p>
+ * Every path in the tree is indexed when the snapshot is created, so lookups
+ * are a single hash probe instead of a walk through nested maps, and numbers
+ * and booleans are stored pre-converted so that the primitive getters do not
+ * need to unbox or convert. The values of parent nodes are merged into the
+ * index, so a snapshot reads the same as the node that it was taken of.
+ * Creating a snapshot is a full deep copy that indexes the whole tree and
+ * its parents, and it shares nothing with earlier snapshots, so it costs
+ * time and memory in proportion to their size each time. It is meant for
+ * publishing a configuration after a reload or a batch of changes, not
+ * after every change (see {@link ConfigurationNode#snapshot()}).
+ * </p>
+ * Snapshots can be read from any number of threads without locking. Methods
+ * that would modify the snapshot throw {@link UnsupportedOperationException},
+ * and methods that would normally write back a default value just return the
+ * default. Nodes returned by {@link #getNode(String)} and similar methods are
+ * ordinary nodes over the same immutable maps, so they are also safe to read
+ * but are not indexed.
+ *
+ * @author sk89q
+ */
+public final class ConfigurationSnapshot extends ConfigurationNode {
+
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 4;
+    private static final int BOOLEAN = 8;
+
+    private final Map<Object, Object> map;
+    private final Map<ConfigPath, Entry> index;
+    private final List<Map<Object, Object>> chainMaps;
+
+    /**
+     * Create a snapshot of the given node. The node (and its parents) must
+     * not be modified while the snapshot is being created.
+     *
+     * @param node the node
+     */
+    ConfigurationSnapshot(ConfigurationNode node) {
+        super(new HashMap<Object, Object>());
+
+        // Parents first, so that the values of children take precedence
+        List<ConfigurationNode> chain = new ArrayList<ConfigurationNode>();
+        for (ConfigurationNode n = node; n != null; n = n.getParent()) {
+            chain.add(0, n);
+        }
+
+        Map<ConfigPath, Entry> index = new HashMap<ConfigPath, Entry>();
+        List<Map<Object, Object>> chainMaps = new ArrayList<Map<Object, Object>>();
+        Map<Object, Object> map = null;
+
+        for (ConfigurationNode n : chain) {
+            map = copyMap(n.getUnderlyingMap(), ConfigPath.ROOT, index);
+            chainMaps.add(map);
+        }
+
+        index.put(ConfigPath.ROOT, new Entry(map));
+
+        this.map = map;
+        this.index = index;
+        this.chainMaps = chainMaps;
+        setRoot(map);
+    }
+
+    /**
+     * Make an immutable deep copy of a map, adding each of the paths in the
+     * map to the index.
+     *
+     * @param original the map to copy
+     * @param path the path of the map
+     * @param index the index to add to
+     * @return the copy
+     */
+    private static Map<Object, Object> copyMap(Map<?, ?> original, ConfigPath path,
+            Map<ConfigPath, Entry> index) {
+        Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+
+        for (Map.Entry<?, ?> entry : original.entrySet()) {
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (!(key instanceof String)) {
+                // Can't be reached with a path
+                copy.put(key, copyValue(value, null, index));
+                continue;
+            }
+
+            ConfigPath child = path.child((String) key);
+
+            if (value instanceof List<?>) {
+                List<?> list = (List<?>) value;
+                List<Object> listCopy = new ArrayList<Object>(list.size());
+
+                for (int i = 0; i < list.size(); i++) {
+                    ConfigPath elementPath = path.child((String) key, i);
+                    Object element = copyValue(list.get(i), elementPath, index);
+                    index.put(elementPath, new Entry(element));
+                    listCopy.add(element);
+                }
+
+                value = Collections.unmodifiableList(listCopy);
+            } else {
+                value = copyValue(value, child, index);
+            }
+
+            index.put(child, new Entry(value));
+            copy.put(key, value);
+        }
+
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Make an immutable deep copy of a value.
+     *
+     * @param value the value
+     * @param path the path of the value, or null to not index it
+     * @param index the index to add to
+     * @return the copy
+     */
+    private static Object copyValue(Object value, ConfigPath path,
+            Map<ConfigPath, Entry> index) {
+        if (value instanceof ConfigurationNode) {
+            value = ((ConfigurationNode) value).getUnderlyingMap();
+        }
+
+        if (value instanceof Map<?, ?>) {
+            if (path == null) {
+                return copyMap((Map<?, ?>) value, ConfigPath.ROOT,
+                        new HashMap<ConfigPath, Entry>());
+            }
+            return copyMap((Map<?, ?>) value, path, index);
+        } else if (value instanceof List<?>) {
+            // Lists of lists can't be indexed by path
+            List<Object> copy = new ArrayList<Object>();
+            for (Object element : (List<?>) value) {
+                copy.add(copyValue(element, null, index));
+            }
+            return Collections.unmodifiableList(copy);
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Returns this snapshot, which is already immutable.
+     *
+     * @return this snapshot
+     */
+    @Override
+    public ConfigurationSnapshot snapshot() {
+        return this;
+    }
+
+    @Override
+    public Object get(ConfigPath path) {
+        Entry entry = index.get(path);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Read the values at all the paths of a query, including the values
+     * inherited from the parents of the node that the snapshot was taken of,
+     * in the same way as {@link ConfigurationNode#query(ConfigQuery)} does.
+     *
+     * @param query the query
+     * @return the result
+     */
+    @Override
+    public QueryResult query(ConfigQuery query) {
+        // Parents first, so that each result inherits from the one before it
+        QueryResult result = null;
+        for (Map<Object, Object> chainMap : chainMaps) {
+            QueryResult own = query.run(chainMap);
+            if (result != null) {
+                own.inherit(result);
+            }
+            result = own;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(ConfigPath path) {
+        Entry entry = index.get(path);
+        return entry != null && entry.value != null;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public void set(ConfigPath path, Object value) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public void remove(ConfigPath path) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public void setParent(ConfigurationNode parent) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    /**
+     * Snapshots do not cache conversions, because the cache cannot be shared
+     * between threads.
+     *
+     * @param enabled ignored
+     */
+    @Override
+    public void setConversionCaching(boolean enabled) {
+        throw new UnsupportedOperationException("Snapshots cannot cache conversions");
+    }
+
+    @Override
+    public Map<Object, Object> getUnderlyingMap() {
+        return map;
+    }
+
+    @Override
+    public int getInt(ConfigPath path, int def) {
+        Entry entry = index.get(path);
+        return entry != null && (entry.types & INT) != 0 ? entry.intValue : def;
+    }
+
+    @Override
+    public long getLong(ConfigPath path, long def) {
+        Entry entry = index.get(path);
+        return entry != null && (entry.types & LONG) != 0 ? entry.longValue : def;
+    }
+
+    @Override
+    public double getDouble(ConfigPath path, double def) {
+        Entry entry = index.get(path);
+        return entry != null && (entry.types & DOUBLE) != 0 ? entry.doubleValue : def;
+    }
+
+    @Override
+    public boolean getBoolean(ConfigPath path, boolean def) {
+        Entry entry = index.get(path);
+        return entry != null && (entry.types & BOOLEAN) != 0 ? entry.longValue != 0 : def;
+    }
+
+    @Override
+    protected void setDefault(ConfigPath path, Object value) {
+        // Defaults are not written back to snapshots
+    }
+
+    @Override
+    public String toString() {
+        return new ConfigurationNode(map).toString();
+    }
+
+    /**
+     * A value in the index, along with its conversions to primitive types.
+     */
+    private static final class Entry {
+        private final Object value;
+        private final int types;
+        private final int intValue;
+        private final long longValue;
+        private final double doubleValue;
+
+        private Entry(Object value) {
+            this.value = value;
+
+            int types = 0;
+            Integer intValue = IntegerLoaderBuilder.valueOf(value);
+            Long longValue = LongLoaderBuilder.valueOf(value);
+            Double doubleValue = DoubleLoaderBuilder.valueOf(value);
+            Boolean booleanValue = BooleanLoaderBuilder.valueOf(value);
+
+            if (intValue != null) {
+                types |= INT;
+            }
+            if (longValue != null) {
+                types |= LONG;
+            } else if (booleanValue != null) {
+                types |= BOOLEAN;
+                longValue = booleanValue ? 1L : 0L;
+            }
+            if (doubleValue != null) {
+                types |= DOUBLE;
+            }
+
+            this.types = types;
+            this.intValue = intValue != null ? intValue : 0;
+            this.longValue = longValue != null ? longValue : 0;
+            this.doubleValue = doubleValue != null ? doubleValue : 0;
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.sk89q.rebar.config;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Remembers the results of loaders for a {@link ConfigurationNode}, so that
+ * repeated calls to <code>getOf()</code>, <code>listOf()</code>,
+ * <code>mapOf()</code> and similar methods with the same path and loader
+ * do not have to run the loader again.
+ * </p>
+ * Entries are keyed by path and by the identity of the loader, so loaders
+ * should be kept around and re-used. Entries are invalidated when the node
+ * is changed through its own methods or through the nodes that it returns,
+ * but not when maps or lists inside the node are modified directly. Cached
+ * values are shared between callers and must not be modified.
+ * </p>
+ * The cache can be used from several threads. A result that was read before
+ * the cache was invalidated is not stored, so that a read that races with a
+ * change cannot leave the old value in the cache.
+ *
+ * @author sk89q
+ * @see ConfigurationNode#setConversionCaching(boolean)
+ */
+public class ConversionCache {
+
+    static final int VALUE = 0;
+    static final int COLLECTION = 1;
+    static final int KEY_VALUE = 2;
+
+    /**
+     * Stored in place of null results.
+     */
+    static final Object NULL = new Object();
+
+    /**
+     * The maximum number of entries before the cache is emptied. Loaders that
+     * are created for every call never hit, so this keeps them from filling
+     * up the cache.
+     */
+    private static final int MAX_ENTRIES = 1024;
+
+    private final Map<Key, Object> entries = new HashMap<Key, Object>();
+    private long hits;
+    private long misses;
+    private long generation;
+
+    /**
+     * Get a cached result.
+     *
+     * @param path the path
+     * @param loader the loader
+     * @param kind kind of result
+     * @return the result, {@link #NULL} for a cached null, or null on a miss
+     */
+    synchronized Object get(ConfigPath path, Object loader, int kind) {
+        Object value = entries.get(new Key(path, loader, kind));
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    /**
+     * Get a number that changes whenever results are removed. It should be
+     * read before reading the value that a result is made from, and passed
+     * to {@link #put(ConfigPath, Object, int, Object, long)}.
+     *
+     * @return the generation
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Store a result, unless results have been removed since the value that
+     * it was made from was read.
+     *
+     * @param path the path
+     * @param loader the loader
+     * @param kind kind of result
+     * @param value the result, possibly null
+     * @param generation the generation from before the value was read
+     */
+    synchronized void put(ConfigPath path, Object loader, int kind, Object value, long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(new Key(path, loader, kind), value != null ? value : NULL);
+    }
+
+    /**
+     * Remove the results for any path that overlaps with the given path.
+     *
+     * @param path the path that was changed
+     */
+    public synchronized void invalidate(ConfigPath path) {
+        generation++;
+        if (path.isRoot()) {
+            entries.clear();
+            return;
+        }
+
+        Iterator<Key> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().path.overlaps(path)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all results.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Get the number of cached results.
+     *
+     * @return number of results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of lookups that found a cached result.
+     *
+     * @return number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that had to run the loader.
+     *
+     * @return number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Reset the hit and miss counters.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    private static final class Key {
+        private final ConfigPath path;
+        private final Object loader;
+        private final int kind;
+
+        private Key(ConfigPath path, Object loader, int kind) {
+            this.path = path;
+            this.loader = loader;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return loader == other.loader && kind == other.kind && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return (path.hashCode() * 31 + System.identityHashCode(loader)) * 31 + kind;
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.sk89q.rebar.config;
+
+/**
+ * Receives the entries of a map or list one at a time, as they are read.
+ *
+ * @param <V> type of value
+ * @see YamlStreamReader#forEach(String, Loader, EntryHandler)
+ */
+public interface EntryHandler<V> {
+
+    /**
+     * Handle an entry.
+     *
+     * @param key the key of the entry in a map, or its index in a list
+     * @param value the loaded value, never null
+     * @throws ConfigurationException thrown to stop reading
+     */
+    void handle(Object key, V value) throws ConfigurationException;
+
+}
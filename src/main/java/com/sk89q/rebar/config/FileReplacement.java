@@ -0,0 +1,137 @@
+package com.sk89q.rebar.config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the new contents of a file to a temporary file in the same folder,
+ * which then replaces the file, so that an interrupted write does not leave
+ * a partially written file behind.
+ */
+final class FileReplacement {
+
+    private final File file;
+    private final File temp;
+    private final FileOutputStream stream;
+    private boolean done;
+
+    /**
+     * Create the temporary file, and the folder that contains the file if it
+     * does not exist.
+     *
+     * @param file the file to replace
+     * @throws IOException on I/O error
+     */
+    FileReplacement(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        this.file = file;
+        this.temp = File.createTempFile(file.getName(), ".tmp", dir);
+        this.stream = new FileOutputStream(temp);
+    }
+
+    /**
+     * Get the stream to write the new contents to. It should not be closed.
+     *
+     * @return the stream
+     */
+    OutputStream getStream() {
+        return stream;
+    }
+
+    /**
+     * Get a stream to write the new contents to that replaces the file when
+     * it is closed, for callers that expect to write to the file directly.
+     * If the file cannot be replaced, closing the stream throws the
+     * exception of {@link #commit()}.
+     *
+     * @return the stream
+     */
+    OutputStream getCommittingStream() {
+        return new FilterOutputStream(stream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!done) {
+                    try {
+                        commit();
+                    } finally {
+                        abort();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Sync the new contents to disk and replace the file with them.
+     * </p>
+     * If the file cannot be replaced directly, it is first moved aside to a
+     * backup, which is restored if the new contents cannot be moved into
+     * place. If neither works, the temporary file is kept and its path is
+     * given in the exception, so that the new contents are not lost.
+     *
+     * @throws IOException on I/O error
+     */
+    void commit() throws IOException {
+        stream.getFD().sync();
+        stream.close();
+
+        if (temp.renameTo(file)) {
+            done = true;
+            return;
+        }
+
+        // On some platforms, renaming onto an existing file fails
+        File dir = temp.getAbsoluteFile().getParentFile();
+        File backup = File.createTempFile(file.getName(), ".bak", dir);
+        if (!backup.delete() || !file.renameTo(backup)) {
+            backup.delete();
+            throw new IOException("Failed to replace " + file.getAbsolutePath()
+                    + " with " + temp.getAbsolutePath());
+        }
+
+        if (!temp.renameTo(file)) {
+            if (backup.renameTo(file)) {
+                throw new IOException("Failed to replace " + file.getAbsolutePath()
+                        + " with " + temp.getAbsolutePath());
+            }
+
+            // Keep both copies, as the file itself no longer exists
+            done = true;
+            throw new IOException("Failed to replace " + file.getAbsolutePath()
+                    + "; the new contents were kept in " + temp.getAbsolutePath()
+                    + " and the old contents in " + backup.getAbsolutePath());
+        }
+
+        done = true;
+        backup.delete();
+    }
+
+    /**
+     * Delete the temporary file if {@link #commit()} did not succeed, unless
+     * it had to be kept because the file could not be restored.
+     */
+    void abort() {
+        if (!done) {
+            done = true;
+            try {
+                stream.close();
+            } catch (IOException e) {
+            }
+            temp.delete();
+        }
+    }
+
+}
@@ -0,0 +1,509 @@
+package com.sk89q.rebar.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Reads and writes configuration trees in a binary format that can be read
+ * in place, without being decoded first.
+ * </p>
+ * Unlike {@link BinaryFormat}, every map and list starts with a table of the
+ * offsets of its entries, and maps also have an index of their entries
+ * sorted by the hash code of their keys. {@link #read(ByteBuffer)} returns
+ * read-only maps and lists that are views of the buffer, which decode a
+ * value only when it is requested and do not keep it, so a tree read from a
+ * memory mapped file costs almost no heap however large it is. Lookups in a
+ * map are a binary search of its index.
+ * </p>
+ * All numbers are written big-endian with a fixed width, and strings as
+ * UTF-8 with their length in bytes before them. Files can be at most 2 GB.
+ * The header can record a checksum of the data that the tree was converted
+ * from, so that a file converted from a resource can be told apart from one
+ * converted from an older copy of the resource.
+ *
+ * @see MappedConfigurationFile
+ */
+public final class IndexedBinaryFormat {
+
+    private static final int MAGIC = 0x52424349; // RBCI
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte STRING = 7;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte DATE = 12;
+    private static final byte BYTES = 13;
+
+    private IndexedBinaryFormat() {
+    }
+
+    /**
+     * Write a tree. The whole file is built in memory before it is written.
+     *
+     * @param root the root value
+     * @param out the stream to write to, which is flushed but not closed
+     * @throws IOException on I/O error, or if the tree contains a value that cannot be written
+     */
+    public static void write(Object root, OutputStream out) throws IOException {
+        write(root, 0, out);
+    }
+
+    /**
+     * Write a tree, recording a checksum of the data that it was converted
+     * from. The whole file is built in memory before it is written.
+     *
+     * @param root the root value
+     * @param sourceChecksum the checksum, or 0 if there is none
+     * @param out the stream to write to, which is flushed but not closed
+     * @throws IOException on I/O error, or if the tree contains a value that cannot be written
+     * @see #getSourceChecksum(ByteBuffer)
+     */
+    public static void write(Object root, long sourceChecksum, OutputStream out) throws IOException {
+        Output output = new Output();
+        output.putInt(MAGIC);
+        output.putInt(VERSION);
+        output.putLong(sourceChecksum);
+        writeValue(output, root);
+        out.write(output.data, 0, output.size);
+        out.flush();
+    }
+
+    /**
+     * Write a value.
+     *
+     * @param out the output
+     * @param value the value
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeValue(Output out, Object value) throws IOException {
+        if (value instanceof ConfigurationNode) {
+            value = ((ConfigurationNode) value).getUnderlyingMap();
+        }
+
+        if (value == null) {
+            out.put(NULL);
+        } else if (value instanceof String) {
+            out.put(STRING);
+            out.putBytes(((String) value).getBytes("UTF-8"));
+        } else if (value instanceof Boolean) {
+            out.put((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.put(INT);
+            out.putInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.put(LONG);
+            out.putLong((Long) value);
+        } else if (value instanceof Double) {
+            out.put(DOUBLE);
+            out.putLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.put(FLOAT);
+            out.putInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Map<?, ?>) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            int size = map.size();
+            out.put(MAP);
+            out.putInt(size);
+            int entries = out.reserve(size * 8);
+            int index = out.reserve(size * 8);
+
+            long[] sorted = new long[size];
+            int i = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object key = entry.getKey();
+                out.putInt(entries + i * 8, out.size);
+                writeValue(out, key);
+                out.putInt(entries + i * 8 + 4, out.size);
+                writeValue(out, entry.getValue());
+                int hash = key != null ? key.hashCode() : 0;
+                sorted[i] = ((long) hash << 32) | i;
+                i++;
+            }
+
+            Arrays.sort(sorted);
+            for (i = 0; i < size; i++) {
+                out.putInt(index + i * 8, (int) (sorted[i] >> 32));
+                out.putInt(index + i * 8 + 4, (int) sorted[i]);
+            }
+        } else if (value instanceof List<?>) {
+            List<?> list = (List<?>) value;
+            out.put(LIST);
+            out.putInt(list.size());
+            int offsets = out.reserve(list.size() * 4);
+            int i = 0;
+            for (Object element : list) {
+                out.putInt(offsets + i * 4, out.size);
+                writeValue(out, element);
+                i++;
+            }
+        } else if (value instanceof BigInteger) {
+            out.put(BIG_INTEGER);
+            out.putBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof Date) {
+            out.put(DATE);
+            out.putLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.put(BYTES);
+            out.putBytes((byte[]) value);
+        } else {
+            throw new IOException("Can't write value of type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Read a tree. Only the header is checked, so a file that is corrupt
+     * further on causes {@link IndexOutOfBoundsException}s and
+     * {@link IllegalStateException}s when the affected values are read.
+     * </p>
+     * The buffer is read from its current position and must not be changed
+     * afterwards. Its position and limit are not used again, so the returned
+     * tree can be read from any number of threads.
+     *
+     * @param buffer the buffer
+     * @return the root value, as a read-only view of the buffer
+     * @throws ConfigurationException thrown if the data is not valid
+     */
+    public static Object read(ByteBuffer buffer) throws ConfigurationException {
+        ByteBuffer data = buffer.slice();
+        readHeader(data);
+
+        if (data.limit() < HEADER_SIZE + 1) {
+            throw new ConfigurationException("Indexed binary configuration is truncated");
+        }
+
+        try {
+            return readValue(data, HEADER_SIZE);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ConfigurationException("Indexed binary configuration is corrupt", e);
+        } catch (IllegalStateException e) {
+            throw new ConfigurationException("Indexed binary configuration is corrupt", e);
+        }
+    }
+
+    /**
+     * Get the checksum of the data that a tree was converted from, as it was
+     * given to {@link #write(Object, long, OutputStream)}. Only the header is
+     * read, from the current position of the buffer.
+     *
+     * @param buffer the buffer
+     * @return the checksum, or 0 if none was recorded
+     * @throws ConfigurationException thrown if the data is not valid
+     */
+    public static long getSourceChecksum(ByteBuffer buffer) throws ConfigurationException {
+        ByteBuffer data = buffer.slice();
+        readHeader(data);
+        return data.getLong(8);
+    }
+
+    /**
+     * Check the header of a tree.
+     *
+     * @param data the buffer
+     * @throws ConfigurationException thrown if the header is not valid
+     */
+    private static void readHeader(ByteBuffer data) throws ConfigurationException {
+        if (data.limit() < 8 || data.getInt(0) != MAGIC) {
+            throw new ConfigurationException("Not an indexed binary configuration");
+        }
+
+        int version = data.getInt(4);
+        if (version != VERSION) {
+            throw new ConfigurationException("Unsupported indexed binary configuration version " + version);
+        } else if (data.limit() < HEADER_SIZE) {
+            throw new ConfigurationException("Indexed binary configuration is truncated");
+        }
+    }
+
+    /**
+     * Read the value at an offset.
+     *
+     * @param data the buffer
+     * @param offset the offset of the value
+     * @return the value
+     */
+    private static Object readValue(ByteBuffer data, int offset) {
+        byte type = data.get(offset);
+
+        switch (type) {
+            case NULL:
+                return null;
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            case INT:
+                return data.getInt(offset + 1);
+            case LONG:
+                return data.getLong(offset + 1);
+            case DOUBLE:
+                return data.getDouble(offset + 1);
+            case FLOAT:
+                return data.getFloat(offset + 1);
+            case STRING:
+                try {
+                    return new String(readBytes(data, offset + 1), "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException(e);
+                }
+            case LIST:
+                return new IndexedList(data, offset);
+            case MAP:
+                return new IndexedMap(data, offset);
+            case BIG_INTEGER:
+                return new BigInteger(readBytes(data, offset + 1));
+            case DATE:
+                return new Date(data.getLong(offset + 1));
+            case BYTES:
+                return readBytes(data, offset + 1);
+            default:
+                throw new IllegalStateException("Unknown value type " + type + " at offset " + offset);
+        }
+    }
+
+    /**
+     * Read a length-prefixed array of bytes.
+     *
+     * @param data the buffer
+     * @param offset the offset of the length
+     * @return the bytes
+     */
+    private static byte[] readBytes(ByteBuffer data, int offset) {
+        int length = data.getInt(offset);
+        if (length < 0) {
+            throw new IllegalStateException("Negative length at offset " + offset);
+        }
+        if (length > data.limit() - offset - 4) {
+            throw new IllegalStateException("Length " + length + " at offset " + offset
+                    + " is past the end of the data");
+        }
+
+        byte[] bytes = new byte[length];
+        int start = offset + 4;
+        for (int i = 0; i < length; i++) {
+            bytes[i] = data.get(start + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * A read-only view of a map in the buffer.
+     */
+    private static final class IndexedMap extends AbstractMap<Object, Object> {
+        private final ByteBuffer data;
+        private final int size;
+        private final int entries;
+        private final int index;
+
+        private IndexedMap(ByteBuffer data, int offset) {
+            this.data = data;
+            this.size = data.getInt(offset + 1);
+            this.entries = offset + 5;
+            this.index = entries + size * 8;
+        }
+
+        /**
+         * Find the position of the entry with a key.
+         *
+         * @param key the key
+         * @return the position, or -1 if the key is not in the map
+         */
+        private int find(Object key) {
+            int hash = key != null ? key.hashCode() : 0;
+
+            // Find the first entry of the index with the hash
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (data.getInt(index + mid * 8) < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            for (int i = low; i < size && data.getInt(index + i * 8) == hash; i++) {
+                int entry = data.getInt(index + i * 8 + 4);
+                Object other = readValue(data, data.getInt(entries + entry * 8));
+                if (key == null ? other == null : key.equals(other)) {
+                    return entry;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int entry = find(key);
+            return entry != -1 ? readValue(data, data.getInt(entries + entry * 8 + 4)) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) != -1;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<Object, Object>>() {
+                @Override
+                public Iterator<Map.Entry<Object, Object>> iterator() {
+                    return new Iterator<Map.Entry<Object, Object>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Map.Entry<Object, Object> next() {
+                            if (next >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            int entry = entries + next++ * 8;
+                            return new AbstractMap.SimpleImmutableEntry<Object, Object>(
+                                    readValue(data, data.getInt(entry)),
+                                    readValue(data, data.getInt(entry + 4)));
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("Indexed configurations are read-only");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+
+    /**
+     * A read-only view of a list in the buffer.
+     */
+    private static final class IndexedList extends AbstractList<Object> implements RandomAccess {
+        private final ByteBuffer data;
+        private final int size;
+        private final int offsets;
+
+        private IndexedList(ByteBuffer data, int offset) {
+            this.data = data;
+            this.size = data.getInt(offset + 1);
+            this.offsets = offset + 5;
+        }
+
+        @Override
+        public Object get(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+            }
+            return readValue(data, data.getInt(offsets + i * 4));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A growable array of bytes that values can be patched into.
+     */
+    private static final class Output {
+        private byte[] data = new byte[4096];
+        private int size;
+
+        /**
+         * Make room for more bytes.
+         *
+         * @param length the number of bytes
+         * @throws IOException if the output would be larger than 2 GB
+         */
+        private void ensure(int length) throws IOException {
+            long needed = (long) size + length;
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IOException("Indexed binary configurations can be at most 2 GB");
+            }
+            if (needed > data.length) {
+                data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max(needed, (long) data.length * 2)));
+            }
+        }
+
+        /**
+         * Skip over bytes that will be written later.
+         *
+         * @param length the number of bytes
+         * @return the offset of the bytes
+         * @throws IOException if the output would be too large
+         */
+        private int reserve(int length) throws IOException {
+            ensure(length);
+            int offset = size;
+            size += length;
+            return offset;
+        }
+
+        private void put(byte b) throws IOException {
+            ensure(1);
+            data[size++] = b;
+        }
+
+        private void putInt(int value) throws IOException {
+            putInt(reserve(4), value);
+        }
+
+        private void putInt(int offset, int value) {
+            data[offset] = (byte) (value >>> 24);
+            data[offset + 1] = (byte) (value >>> 16);
+            data[offset + 2] = (byte) (value >>> 8);
+            data[offset + 3] = (byte) value;
+        }
+
+        private void putLong(long value) throws IOException {
+            int offset = reserve(8);
+            putInt(offset, (int) (value >>> 32));
+            putInt(offset + 4, (int) value);
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            putInt(bytes.length);
+            int offset = reserve(bytes.length);
+            System.arraycopy(bytes, 0, data, offset, bytes.length);
+        }
+    }
+
+}
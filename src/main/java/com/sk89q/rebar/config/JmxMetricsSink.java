@@ -0,0 +1,365 @@
+package com.sk89q.rebar.config;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@link MetricsSink} that keeps counters and {@link LatencyHistogram}s in
+ * memory and can publish them as an MXBean (see
+ * {@link ConfigurationMetricsMXBean}).
+ * </p>
+ * Recording a measurement costs a map lookup and a few atomic increments.
+ * Counts are only kept for the first {@link #MAX_PATHS} different paths that
+ * are seen, so that paths built from user input cannot use up memory, but
+ * every read and write is included in the totals. One sink can be shared by
+ * many configurations, in which case its counts are their sums.
+ * </p>
+ * Latencies of loaders, builders and bound classes are kept by the name of
+ * the class rather than the class itself, so that a sink that outlives a
+ * plugin does not keep the plugin's class loader reachable.
+ */
+public class JmxMetricsSink implements MetricsSink, ConfigurationMetricsMXBean {
+
+    /**
+     * The maximum number of paths that counts are kept for.
+     */
+    public static final int MAX_PATHS = 1024;
+
+    private final ConcurrentMap<ConfigPath, PathCounts> paths =
+            new ConcurrentHashMap<ConfigPath, PathCounts>();
+    private final ConcurrentMap<String, LatencyHistogram> loaders =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, LatencyHistogram> builders =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, SourceStats> parses =
+            new ConcurrentHashMap<String, SourceStats>();
+    private final ConcurrentMap<String, SourceStats> serializations =
+            new ConcurrentHashMap<String, SourceStats>();
+    private final ConcurrentMap<String, LatencyHistogram> bindLoads =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, LatencyHistogram> bindSaves =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong parentReads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private ObjectName objectName;
+
+    /**
+     * Register this sink with the platform MBean server, under the name
+     * <code>com.sk89q.rebar:type=ConfigurationMetrics,name=<em>name</em></code>.
+     *
+     * @param name the name to tell this sink apart from others
+     * @return the name that the sink was registered under
+     * @throws JMException thrown if the sink could not be registered
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(
+                "com.sk89q.rebar:type=ConfigurationMetrics,name=" + ObjectName.quote(name));
+        server.registerMBean(this, objectName);
+        this.objectName = objectName;
+        return objectName;
+    }
+
+    /**
+     * Unregister this sink from the platform MBean server, if it was
+     * registered with {@link #register(String)}.
+     *
+     * @throws JMException thrown if the sink could not be unregistered
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    @Override
+    public void read(ConfigPath path, boolean found) {
+        reads.incrementAndGet();
+        if (!found) {
+            misses.incrementAndGet();
+        }
+
+        PathCounts counts = getCounts(path);
+        if (counts != null) {
+            counts.reads.incrementAndGet();
+            if (!found) {
+                counts.misses.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void readFromParent(ConfigPath path) {
+        parentReads.incrementAndGet();
+
+        PathCounts counts = getCounts(path);
+        if (counts != null) {
+            counts.parentReads.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void written(ConfigPath path) {
+        writes.incrementAndGet();
+
+        PathCounts counts = getCounts(path);
+        if (counts != null) {
+            counts.writes.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void loaded(Class<?> type, long nanos) {
+        getHistogram(loaders, type).record(nanos);
+    }
+
+    @Override
+    public void built(Class<?> type, long nanos) {
+        getHistogram(builders, type).record(nanos);
+    }
+
+    @Override
+    public void parsed(String source, long bytes, long nanos) {
+        getStats(parses, source).record(bytes, nanos);
+    }
+
+    @Override
+    public void serialized(String source, long bytes, long nanos) {
+        getStats(serializations, source).record(bytes, nanos);
+    }
+
+    @Override
+    public void bound(Class<?> type, boolean save, long nanos) {
+        getHistogram(save ? bindSaves : bindLoads, type).record(nanos);
+    }
+
+    @Override
+    public long getReads() {
+        return reads.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getParentReads() {
+        return parentReads.get();
+    }
+
+    @Override
+    public long getWrites() {
+        return writes.get();
+    }
+
+    @Override
+    public Map<String, Long> getReadsByPath() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<ConfigPath, PathCounts> entry : paths.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().reads.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getMissesByPath() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<ConfigPath, PathCounts> entry : paths.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().misses.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getParentReadsByPath() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<ConfigPath, PathCounts> entry : paths.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().parentReads.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getWritesByPath() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<ConfigPath, PathCounts> entry : paths.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().writes.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getLoaderLatencies() {
+        return byClassName(loaders);
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getBuilderLatencies() {
+        return byClassName(builders);
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getParseLatencies() {
+        Map<String, LatencyHistogram> result = new TreeMap<String, LatencyHistogram>();
+        for (Map.Entry<String, SourceStats> entry : parses.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().latency);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getParsedBytes() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, SourceStats> entry : parses.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().bytes.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getSerializeLatencies() {
+        Map<String, LatencyHistogram> result = new TreeMap<String, LatencyHistogram>();
+        for (Map.Entry<String, SourceStats> entry : serializations.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().latency);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getSerializedBytes() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, SourceStats> entry : serializations.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().bytes.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getBindLoadLatencies() {
+        return byClassName(bindLoads);
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getBindSaveLatencies() {
+        return byClassName(bindSaves);
+    }
+
+    @Override
+    public void reset() {
+        paths.clear();
+        loaders.clear();
+        builders.clear();
+        parses.clear();
+        serializations.clear();
+        bindLoads.clear();
+        bindSaves.clear();
+        reads.set(0);
+        misses.set(0);
+        parentReads.set(0);
+        writes.set(0);
+    }
+
+    /**
+     * Get the counts of a path, adding them if there is room.
+     *
+     * @param path the path
+     * @return the counts, or null if too many paths are already counted
+     */
+    private PathCounts getCounts(ConfigPath path) {
+        PathCounts counts = paths.get(path);
+        if (counts == null && paths.size() < MAX_PATHS) {
+            counts = new PathCounts();
+            PathCounts existing = paths.putIfAbsent(path, counts);
+            if (existing != null) {
+                counts = existing;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Get the histogram of a class, adding it if needed.
+     *
+     * @param map the map of histograms
+     * @param type the class
+     * @return the histogram
+     */
+    private static LatencyHistogram getHistogram(ConcurrentMap<String, LatencyHistogram> map, Class<?> type) {
+        String name = type.getName();
+        LatencyHistogram histogram = map.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = map.putIfAbsent(name, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Get the statistics of a source, adding them if needed.
+     *
+     * @param map the map of statistics
+     * @param source the name of the source
+     * @return the statistics
+     */
+    private static SourceStats getStats(ConcurrentMap<String, SourceStats> map, String source) {
+        SourceStats stats = map.get(source);
+        if (stats == null) {
+            stats = new SourceStats();
+            SourceStats existing = map.putIfAbsent(source, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Copy a map of histograms that are keyed by the names of classes,
+     * sorted by the names.
+     *
+     * @param map the map
+     * @return the copy
+     */
+    private static Map<String, LatencyHistogram> byClassName(Map<String, LatencyHistogram> map) {
+        return new TreeMap<String, LatencyHistogram>(map);
+    }
+
+    /**
+     * The counts of one path.
+     */
+    private static final class PathCounts {
+        private final AtomicLong reads = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong parentReads = new AtomicLong();
+        private final AtomicLong writes = new AtomicLong();
+    }
+
+    /**
+     * The bytes and time of parsing or serializing one source.
+     */
+    private static final class SourceStats {
+        private final AtomicLong bytes = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private void record(long bytes, long nanos) {
+            this.bytes.addAndGet(bytes);
+            latency.record(nanos);
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.sk89q.rebar.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with one bucket for each power of two of
+ * nanoseconds, so that recording a duration is a few atomic increments and
+ * allocates nothing. Percentiles are only accurate to within a factor of
+ * two, and are reported as the upper bound of their bucket.
+ * </p>
+ * Durations can be recorded from several threads at once. The values that
+ * are read while durations are recorded may not be consistent with each
+ * other.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos the duration, in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+
+        long current;
+        while (nanos > (current = max.get())) {
+            if (max.compareAndSet(current, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Get the number of durations that have been recorded.
+     *
+     * @return the number of durations
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the sum of the durations that have been recorded.
+     *
+     * @return the sum, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return total.get();
+    }
+
+    /**
+     * Get the mean of the durations that have been recorded.
+     *
+     * @return the mean, in nanoseconds, or 0 if there are none
+     */
+    public long getMeanNanos() {
+        long n = count.get();
+        return n > 0 ? total.get() / n : 0;
+    }
+
+    /**
+     * Get the longest duration that has been recorded.
+     *
+     * @return the longest duration, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Get the median of the durations that have been recorded.
+     *
+     * @return the median, in nanoseconds
+     */
+    public long getMedianNanos() {
+        return getPercentileNanos(50);
+    }
+
+    /**
+     * Get the 99th percentile of the durations that have been recorded.
+     *
+     * @return the 99th percentile, in nanoseconds
+     */
+    public long getP99Nanos() {
+        return getPercentileNanos(99);
+    }
+
+    /**
+     * Get a percentile of the durations that have been recorded.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the upper bound of the bucket that contains the percentile, in
+     *         nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Get the number of durations in each bucket. Bucket <em>i</em> holds the
+     * durations of at least 2<sup><em>i</em> - 1</sup> and less than
+     * 2<sup><em>i</em></sup> nanoseconds, and bucket 0 holds durations of 0.
+     *
+     * @return a new array of counts
+     */
+    public long[] getBuckets() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Get the largest duration that a bucket holds.
+     *
+     * @param i the bucket
+     * @return the duration, in nanoseconds
+     */
+    private static long upperBound(int i) {
+        return i >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+    }
+
+}
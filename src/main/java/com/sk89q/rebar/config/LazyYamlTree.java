@@ -0,0 +1,389 @@
+package com.sk89q.rebar.config;
+
+import java.io.Reader;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+
+/**
+ * Builds a configuration tree from YAML in which the values of maps are only
+ * constructed when they are first read.
+ * </p>
+ * The document is parsed into YAML nodes up front, which is needed to find
+ * where each value ends, but turning the nodes into maps, lists, strings and
+ * numbers is put off until a value is requested. Constructed values replace
+ * the nodes, so each value is only constructed once. Lists are constructed
+ * in full when they are requested, except that maps inside them are again
+ * lazy. Maps that use merge keys (<code>&lt;&lt;</code>) or have a tag other
+ * than the default are constructed in full, and values that share an anchor
+ * are constructed separately for each place that they are used.
+ * </p>
+ * Until a value is constructed, its YAML nodes are kept, along with the
+ * positions in the document that SnakeYAML records for them. These take
+ * several times the heap of the constructed values (about four times for
+ * the 2 MB document of <code>YamlConfigurationBenchmark</code>), so a tree
+ * that is kept while most of it is never read uses more memory than a fully
+ * constructed one. The nodes of a value are released once it is constructed.
+ * </p>
+ * The maps of a tree share one lock, so that reading them from several
+ * threads is as safe as reading ordinary maps.
+ */
+final class LazyYamlTree {
+
+    private final NodeConstructor constructor = new NodeConstructor();
+
+    private LazyYamlTree() {
+    }
+
+    /**
+     * Parse a YAML document into a lazily constructed tree.
+     *
+     * @param yaml the YAML object to parse with
+     * @param reader the document
+     * @return the root value, or null if the document is empty
+     */
+    static Object load(Yaml yaml, Reader reader) {
+        Node node = yaml.compose(reader);
+        if (node == null) {
+            return null;
+        }
+        return new LazyYamlTree().materialize(node);
+    }
+
+    /**
+     * Construct the value of a node, leaving the values of maps to be
+     * constructed later.
+     *
+     * @param node the node
+     * @return the value
+     */
+    private Object materialize(Node node) {
+        if (node instanceof MappingNode && node.getTag().equals(Tag.MAP) && !hasMergeKeys((MappingNode) node)) {
+            LazyMap map = new LazyMap();
+            for (NodeTuple tuple : ((MappingNode) node).getValue()) {
+                map.entries.put(constructor.construct(tuple.getKeyNode()), new Pending(tuple.getValueNode()));
+            }
+            return map;
+        } else if (node instanceof SequenceNode && node.getTag().equals(Tag.SEQ)) {
+            List<Node> nodes = ((SequenceNode) node).getValue();
+            List<Object> list = new ArrayList<Object>(nodes.size());
+            for (Node element : nodes) {
+                list.add(materialize(element));
+            }
+            return list;
+        } else {
+            return constructor.construct(node);
+        }
+    }
+
+    /**
+     * Returns whether a map node has merge keys, which only the YAML
+     * constructor knows how to apply.
+     *
+     * @param node the node
+     * @return true if there are merge keys
+     */
+    private static boolean hasMergeKeys(MappingNode node) {
+        for (NodeTuple tuple : node.getValue()) {
+            if (tuple.getKeyNode().getTag().equals(Tag.MERGE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replace a value with its constructed value if it has not been
+     * constructed yet. The caller must hold the lock of the tree.
+     *
+     * @param value the value
+     * @return the constructed value
+     */
+    private Object resolve(Object value) {
+        return value instanceof Pending ? materialize(((Pending) value).node) : value;
+    }
+
+    /**
+     * A YAML constructor that can construct any node of a document.
+     */
+    private static final class NodeConstructor extends SafeConstructor {
+        private Object construct(Node node) {
+            return constructDocument(node);
+        }
+    }
+
+    /**
+     * A value that has not been constructed yet.
+     */
+    private static final class Pending {
+        private final Node node;
+
+        private Pending(Node node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * A map whose values are constructed when they are first read. Only
+     * reading a value, or iterating over values or entries, constructs it.
+     */
+    private final class LazyMap extends AbstractMap<Object, Object> {
+        private final Map<Object, Object> entries = new LinkedHashMap<Object, Object>();
+
+        @Override
+        public Object get(Object key) {
+            synchronized (LazyYamlTree.this) {
+                Object value = entries.get(key);
+                if (value instanceof Pending) {
+                    value = resolve(value);
+                    entries.put(key, value);
+                }
+                return value;
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            synchronized (LazyYamlTree.this) {
+                return entries.containsKey(key);
+            }
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            if (value == null) {
+                return false;
+            }
+
+            synchronized (LazyYamlTree.this) {
+                // Values that were already constructed are checked first
+                for (Object existing : entries.values()) {
+                    if (value.equals(existing)) {
+                        return true;
+                    }
+                }
+
+                for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                    if (entry.getValue() instanceof Pending) {
+                        entry.setValue(resolve(entry.getValue()));
+                        if (value.equals(entry.getValue())) {
+                            return true;
+                        }
+                    }
+                }
+
+                return false;
+            }
+        }
+
+        /**
+         * Set a value. Unlike other maps, null is returned instead of the
+         * previous value if it had not been constructed yet.
+         */
+        @Override
+        public Object put(Object key, Object value) {
+            synchronized (LazyYamlTree.this) {
+                return unlessPending(entries.put(key, value));
+            }
+        }
+
+        /**
+         * Remove a value. Unlike other maps, null is returned instead of the
+         * previous value if it had not been constructed yet.
+         */
+        @Override
+        public Object remove(Object key) {
+            synchronized (LazyYamlTree.this) {
+                return unlessPending(entries.remove(key));
+            }
+        }
+
+        @Override
+        public void clear() {
+            synchronized (LazyYamlTree.this) {
+                entries.clear();
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (LazyYamlTree.this) {
+                return entries.size();
+            }
+        }
+
+        @Override
+        public Set<Object> keySet() {
+            return new AbstractSet<Object>() {
+                @Override
+                public Iterator<Object> iterator() {
+                    return new LockedIterator<Object>(entries.keySet().iterator());
+                }
+
+                @Override
+                public boolean contains(Object key) {
+                    return containsKey(key);
+                }
+
+                @Override
+                public boolean remove(Object key) {
+                    synchronized (LazyYamlTree.this) {
+                        return entries.keySet().remove(key);
+                    }
+                }
+
+                @Override
+                public int size() {
+                    return LazyMap.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    LazyMap.this.clear();
+                }
+            };
+        }
+
+        @Override
+        public Collection<Object> values() {
+            return new AbstractCollection<Object>() {
+                @Override
+                public Iterator<Object> iterator() {
+                    final Iterator<Map.Entry<Object, Object>> it = entrySet().iterator();
+
+                    return new Iterator<Object>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Object next() {
+                            return it.next().getValue();
+                        }
+
+                        @Override
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public boolean contains(Object value) {
+                    return containsValue(value);
+                }
+
+                @Override
+                public int size() {
+                    return LazyMap.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    LazyMap.this.clear();
+                }
+            };
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<Object, Object>>() {
+                @Override
+                public Iterator<Map.Entry<Object, Object>> iterator() {
+                    return new LockedIterator<Map.Entry<Object, Object>>(entries.entrySet().iterator()) {
+                        @Override
+                        protected Map.Entry<Object, Object> visit(Map.Entry<Object, Object> entry) {
+                            if (entry.getValue() instanceof Pending) {
+                                entry.setValue(resolve(entry.getValue()));
+                            }
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return LazyMap.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    LazyMap.this.clear();
+                }
+            };
+        }
+    }
+
+    /**
+     * Hide a value that has not been constructed yet.
+     *
+     * @param value the value
+     * @return the value, or null if it has not been constructed
+     */
+    private static Object unlessPending(Object value) {
+        return value instanceof Pending ? null : value;
+    }
+
+    /**
+     * An iterator over the entries of a {@link LazyMap} that holds the lock
+     * of the tree while it is used.
+     *
+     * @param <T> the type of element
+     */
+    private class LockedIterator<T> implements Iterator<T> {
+        private final Iterator<T> it;
+
+        private LockedIterator(Iterator<T> it) {
+            this.it = it;
+        }
+
+        /**
+         * Called with each element before it is returned. The lock of the
+         * tree is held.
+         *
+         * @param element the element
+         * @return the element to return
+         */
+        protected T visit(T element) {
+            return element;
+        }
+
+        @Override
+        public boolean hasNext() {
+            synchronized (LazyYamlTree.this) {
+                return it.hasNext();
+            }
+        }
+
+        @Override
+        public T next() {
+            synchronized (LazyYamlTree.this) {
+                return visit(it.next());
+            }
+        }
+
+        @Override
+        public void remove() {
+            synchronized (LazyYamlTree.this) {
+                it.remove();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.sk89q.rebar.config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A read-only configuration that is served directly from a memory mapped
+ * file in the format of {@link IndexedBinaryFormat}.
+ * </p>
+ * Loading only maps the file, and values are decoded each time that they are
+ * read instead of being kept on the heap, so this is meant for large,
+ * static data such as bundled defaults, which can be converted with
+ * {@link ConfigurationConverter#yamlToIndexed(File, File)}. The
+ * configuration can be used as the parent of other nodes, which keep the
+ * values that are written to them instead of passing them on to it.
+ * </p>
+ * Methods that would modify the configuration throw
+ * {@link UnsupportedOperationException}, and methods that would normally
+ * write back a default value just return the default. On some platforms, the
+ * file cannot be replaced until the mapping has been garbage collected.
+ */
+public class MappedConfigurationFile extends ConfigurationNode {
+
+    private final File file;
+    private final boolean ignoreNotFound;
+
+    /**
+     * Create a new mapped configuration from a file. Be aware that
+     * {@link #load()} still has to be called at least once before anything
+     * is loaded from the file. By default, this constructor will enable the
+     * "ignore missing files" option when loading.
+     *
+     * @param file the file
+     */
+    public MappedConfigurationFile(File file) {
+        this(file, true);
+    }
+
+    /**
+     * Create a new mapped configuration from a file. Be aware that
+     * {@link #load()} still has to be called at least once before anything
+     * is loaded from the file.
+     *
+     * @param file the file
+     * @param ignoreNotFound true to have {@link FileNotFoundException} errors ignored
+     */
+    public MappedConfigurationFile(File file, boolean ignoreNotFound) {
+        super(Collections.<Object, Object>emptyMap());
+
+        this.file = file;
+        this.ignoreNotFound = ignoreNotFound;
+    }
+
+    /**
+     * Get the file that this configuration is loaded from.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Maps the configuration file. The new contents replace the old ones in
+     * one step, so the configuration can be read from other threads while it
+     * is loaded.
+     *
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error
+     */
+    public void load() throws IOException, ConfigurationException {
+        FileInputStream stream;
+
+        try {
+            stream = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            if (ignoreNotFound) {
+                return;
+            }
+
+            throw e;
+        }
+
+        try {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            Object root = IndexedBinaryFormat.read(buffer);
+            if (!(root instanceof Map<?, ?>)) {
+                throw new ConfigurationException("The root of " + file.getAbsolutePath()
+                        + " is not a map");
+            }
+            setRoot(root);
+            markClean();
+        } finally {
+            // The mapping stays valid after the channel is closed
+            try {
+                stream.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public void set(ConfigPath path, Object value) {
+        throw new UnsupportedOperationException("Mapped configurations are read-only");
+    }
+
+    @Override
+    public void remove(ConfigPath path) {
+        throw new UnsupportedOperationException("Mapped configurations are read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Mapped configurations are read-only");
+    }
+
+    @Override
+    protected void setDefault(ConfigPath path, Object value) {
+        // Defaults are not written back to mapped configurations
+    }
+
+}
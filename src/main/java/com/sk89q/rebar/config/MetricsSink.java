@@ -0,0 +1,89 @@
+package com.sk89q.rebar.config;
+
+/**
+ * Receives measurements of how configurations are used, such as which paths
+ * are read and how long loaders take.
+ * </p>
+ * A sink is attached with {@link ConfigurationNode#setMetricsSink(MetricsSink)}
+ * or {@link com.sk89q.rebar.config.annotations.Configurator#setMetricsSink(MetricsSink)}.
+ * Nothing is measured for objects without a sink. The methods are called on
+ * the threads that use the configuration, often while a value is being read,
+ * so they must be thread-safe and should return quickly.
+ *
+ * @see JmxMetricsSink
+ */
+public interface MetricsSink {
+
+    /**
+     * Called when a path is read.
+     *
+     * @param path the path
+     * @param found true if there was a value at the path
+     */
+    void read(ConfigPath path, boolean found);
+
+    /**
+     * Called when a node does not contain a path that is read, so that the
+     * path is read from its parent instead. {@link #read(ConfigPath, boolean)}
+     * is also called for the read.
+     *
+     * @param path the path
+     */
+    void readFromParent(ConfigPath path);
+
+    /**
+     * Called when the value at a path is set or removed.
+     *
+     * @param path the path
+     */
+    void written(ConfigPath path);
+
+    /**
+     * Called after a {@link Loader} or {@link KeyValueLoader} has read a
+     * value.
+     *
+     * @param type the class of the loader
+     * @param nanos the time taken, in nanoseconds
+     */
+    void loaded(Class<?> type, long nanos);
+
+    /**
+     * Called after a {@link Builder} or {@link KeyValueBuilder} has written
+     * a value.
+     *
+     * @param type the class of the builder
+     * @param nanos the time taken, in nanoseconds
+     */
+    void built(Class<?> type, long nanos);
+
+    /**
+     * Called after a configuration has been parsed from a file or other
+     * source.
+     *
+     * @param source the name of the source
+     * @param bytes the number of bytes read
+     * @param nanos the time taken, in nanoseconds
+     */
+    void parsed(String source, long bytes, long nanos);
+
+    /**
+     * Called after a configuration has been serialized to a file or other
+     * destination.
+     *
+     * @param source the name of the destination
+     * @param bytes the number of bytes written
+     * @param nanos the time taken, in nanoseconds
+     */
+    void serialized(String source, long bytes, long nanos);
+
+    /**
+     * Called after the settings of an object have been loaded or saved by a
+     * {@link com.sk89q.rebar.config.annotations.Configurator}.
+     *
+     * @param type the class of the object
+     * @param save true if the settings were saved, false if they were loaded
+     * @param nanos the time taken, in nanoseconds
+     */
+    void bound(Class<?> type, boolean save, long nanos);
+
+}
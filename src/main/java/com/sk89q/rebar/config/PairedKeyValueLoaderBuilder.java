@@ -16,6 +16,8 @@ public abstract class PairedKeyValueLoaderBuilder<V1, V2> implements
     /**
      * Build {@link KeyValueLoader}s and {@link KeyValueBuilder}s from a set of
      * different {@link Loader}s and {@link Builder}s for key and value.
+     * The result implements {@link ThreadSafeLoader} if both the key and
+     * value loaders do.
      *
      * @param keyLoaderBuilder key loader builder
      * @param valueLoaderBuilder value loader builder
@@ -25,6 +27,11 @@ public abstract class PairedKeyValueLoaderBuilder<V1, V2> implements
      */
     public static <K, V, E1 extends Loader<K> & Builder<K>, E2 extends Loader<V> & Builder<V>> PairedKeyValueLoaderBuilder<K, V> build(
             E1 keyLoaderBuilder, E2 valueLoaderBuilder) {
+        if (keyLoaderBuilder instanceof ThreadSafeLoader
+                && valueLoaderBuilder instanceof ThreadSafeLoader) {
+            return new ThreadSafePairedKeyValueLoaderImpl<K, V, E1, E2>(keyLoaderBuilder,
+                    valueLoaderBuilder);
+        }
         return new PairedKeyValueLoaderImpl<K, V, E1, E2>(keyLoaderBuilder,
                 valueLoaderBuilder);
     }
@@ -61,4 +68,14 @@ public abstract class PairedKeyValueLoaderBuilder<V1, V2> implements
 
     }
 
+    private static class ThreadSafePairedKeyValueLoaderImpl<V1, V2, E1 extends Loader<V1> & Builder<V1>, E2 extends Loader<V2> & Builder<V2>>
+            extends PairedKeyValueLoaderImpl<V1, V2, E1, E2> implements ThreadSafeLoader {
+
+        private ThreadSafePairedKeyValueLoaderImpl(E1 keyLoaderBuilder,
+                E2 valueLoaderBuilder) {
+            super(keyLoaderBuilder, valueLoaderBuilder);
+        }
+
+    }
+
 }
@@ -0,0 +1,228 @@
+package com.sk89q.rebar.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs loaders over the elements of large lists and maps on several threads,
+ * for <code>listOf()</code>, <code>setOf()</code>, <code>mapOf()</code> and
+ * <code>keyValueOf()</code>.
+ * </p>
+ * Collections are only decoded in parallel if they have at least a threshold
+ * number of elements and the loader implements {@link ThreadSafeLoader}.
+ * The elements are split into chunks that are decoded on the executor,
+ * with one chunk decoded on the calling thread, and the results are put
+ * together in the original order. Loaders used from the executor's own
+ * threads should not load further collections with the same executor, as
+ * the executor could run out of threads while the outer load waits.
+ *
+ * @see ConfigurationNode#setParallelDecoder(ParallelDecoder)
+ */
+public class ParallelDecoder {
+
+    /**
+     * The default number of elements that a collection must have to be
+     * decoded in parallel.
+     */
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    /**
+     * The number of chunks per thread, so that threads that finish early
+     * can take on more work.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static ExecutorService defaultExecutor;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int threshold;
+
+    /**
+     * Create a decoder that uses a shared pool with a thread for each
+     * processor and the default threshold.
+     */
+    public ParallelDecoder() {
+        this(getDefaultExecutor(), Runtime.getRuntime().availableProcessors(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Create a decoder.
+     *
+     * @param executor executor to decode chunks on
+     * @param parallelism the number of threads that the executor can run at once
+     * @param threshold the number of elements that a collection must have to be
+     *            decoded in parallel
+     */
+    public ParallelDecoder(ExecutorService executor, int parallelism, int threshold) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.threshold = Math.max(2, threshold);
+    }
+
+    /**
+     * Get the number of elements that a collection must have to be decoded
+     * in parallel.
+     *
+     * @return the threshold
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns whether a collection would be decoded in parallel.
+     *
+     * @param loader the loader
+     * @param size the number of elements
+     * @return true if the collection would be decoded in parallel
+     */
+    public boolean accepts(Object loader, int size) {
+        return size >= threshold && loader instanceof ThreadSafeLoader;
+    }
+
+    /**
+     * Read each element of a list. Nulls returned by the loader are left out.
+     *
+     * @param values the elements
+     * @param loader the loader
+     * @return the loaded values, in the same order as the elements
+     */
+    public <V> List<V> readAll(List<?> values, final Loader<V> loader) {
+        final Object[] elements = values.toArray();
+
+        return decode(elements.length, new ChunkReader<V>() {
+            @Override
+            public void read(int from, int to, List<V> out) {
+                for (int i = from; i < to; i++) {
+                    V parsed = loader.read(elements[i]);
+                    if (parsed != null) {
+                        out.add(parsed);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Read each entry of a map. Nulls returned by the loader are left out.
+     *
+     * @param values the entries
+     * @param loader the loader
+     * @return the loaded entries, in the iteration order of the map
+     */
+    public <K, V> List<Map.Entry<K, V>> readAll(Map<?, ?> values,
+            final KeyValueLoader<K, V> loader) {
+        final Object[] entries = values.entrySet().toArray();
+
+        return decode(entries.length, new ChunkReader<Map.Entry<K, V>>() {
+            @Override
+            public void read(int from, int to, List<Map.Entry<K, V>> out) {
+                for (int i = from; i < to; i++) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) entries[i];
+                    Map.Entry<K, V> parsed = loader.read(entry.getKey(), entry.getValue());
+                    if (parsed != null) {
+                        out.add(parsed);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Split a range of elements into chunks and read them in parallel.
+     *
+     * @param size the number of elements
+     * @param reader reads a chunk
+     * @return the results of the chunks, in order
+     */
+    private <V> List<V> decode(int size, final ChunkReader<V> reader) {
+        int chunkCount = Math.min(parallelism * CHUNKS_PER_THREAD, size);
+        int chunkSize = (size + chunkCount - 1) / chunkCount;
+        List<Future<List<V>>> futures = new ArrayList<Future<List<V>>>();
+
+        // The first chunk is read on this thread
+        for (int from = chunkSize; from < size; from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(from + chunkSize, size);
+            futures.add(executor.submit(new Callable<List<V>>() {
+                @Override
+                public List<V> call() {
+                    List<V> out = new ArrayList<V>(end - start);
+                    reader.read(start, end, out);
+                    return out;
+                }
+            }));
+        }
+
+        List<V> results = new ArrayList<V>(size);
+
+        try {
+            reader.read(0, Math.min(chunkSize, size), results);
+
+            for (Future<List<V>> future : futures) {
+                results.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoaderBuilderException("Interrupted while decoding in parallel", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new LoaderBuilderException(cause);
+        } finally {
+            for (Future<List<V>> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Get the pool shared by decoders that were not given an executor.
+     *
+     * @return the executor
+     */
+    private static ExecutorService getDefaultExecutor() {
+        synchronized (ParallelDecoder.class) {
+            if (defaultExecutor == null) {
+                defaultExecutor = Executors.newFixedThreadPool(
+                        Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                            @Override
+                            public Thread newThread(Runnable r) {
+                                Thread thread = new Thread(r, "Rebar configuration decoder");
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+            }
+            return defaultExecutor;
+        }
+    }
+
+    /**
+     * Reads a range of elements.
+     */
+    private interface ChunkReader<V> {
+
+        void read(int from, int to, List<V> out);
+
+    }
+
+}
@@ -0,0 +1,256 @@
+package com.sk89q.rebar.config;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The values found by a {@link ConfigQuery}.
+ * </p>
+ * The matches of each path of the query are kept as a column of paths and a
+ * column of values, in the order that they were found. A path without a
+ * wildcard has at most one match. The values are those stored in the
+ * configuration, which should not be modified.
+ */
+public final class QueryResult {
+
+    private static final ConfigPath[] NO_PATHS = new ConfigPath[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final ConfigQuery query;
+    private final ConfigPath[][] paths;
+    private final Object[][] values;
+    private final int[] counts;
+
+    /**
+     * Create an empty result.
+     *
+     * @param query the query
+     */
+    QueryResult(ConfigQuery query) {
+        this.query = query;
+        this.paths = new ConfigPath[query.size()][];
+        this.values = new Object[query.size()][];
+        this.counts = new int[query.size()];
+
+        for (int i = 0; i < query.size(); i++) {
+            paths[i] = NO_PATHS;
+            values[i] = NO_VALUES;
+        }
+    }
+
+    /**
+     * Add a match.
+     *
+     * @param i position of the path in the query
+     * @param path the path of the value
+     * @param value the value
+     */
+    void add(int i, ConfigPath path, Object value) {
+        if (value == null) {
+            return;
+        }
+
+        int count = counts[i];
+        if (count == paths[i].length) {
+            int capacity = Math.max(4, count * 2);
+            ConfigPath[] newPaths = new ConfigPath[capacity];
+            Object[] newValues = new Object[capacity];
+            System.arraycopy(paths[i], 0, newPaths, 0, count);
+            System.arraycopy(values[i], 0, newValues, 0, count);
+            paths[i] = newPaths;
+            values[i] = newValues;
+        }
+
+        paths[i][count] = path;
+        values[i][count] = value;
+        counts[i] = count + 1;
+    }
+
+    /**
+     * Add the matches of a result for a parent configuration, for paths that
+     * were not matched in this result.
+     *
+     * @param parent the result for the parent
+     */
+    void inherit(QueryResult parent) {
+        for (int i = 0; i < counts.length; i++) {
+            int own = counts[i];
+            if (parent.counts[i] == 0) {
+                continue;
+            }
+
+            if (own == 0) {
+                for (int j = 0; j < parent.counts[i]; j++) {
+                    add(i, parent.paths[i][j], parent.values[i][j]);
+                }
+            } else if (query.hasWildcard(i)) {
+                Set<ConfigPath> found = new HashSet<ConfigPath>();
+                for (int j = 0; j < own; j++) {
+                    found.add(paths[i][j]);
+                }
+                for (int j = 0; j < parent.counts[i]; j++) {
+                    if (!found.contains(parent.paths[i][j])) {
+                        add(i, parent.paths[i][j], parent.values[i][j]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the query that this is the result of.
+     *
+     * @return the query
+     */
+    public ConfigQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Get the number of matches of a path of the query.
+     *
+     * @param i position of the path in the query
+     * @return the number of matches
+     */
+    public int getMatchCount(int i) {
+        return counts[i];
+    }
+
+    /**
+     * Get the path of a match.
+     *
+     * @param i position of the path in the query
+     * @param match the match
+     * @return the path of the value that matched
+     */
+    public ConfigPath getPath(int i, int match) {
+        checkMatch(i, match);
+        return paths[i][match];
+    }
+
+    /**
+     * Get the value of a match.
+     *
+     * @param i position of the path in the query
+     * @param match the match
+     * @return the value
+     */
+    public Object get(int i, int match) {
+        checkMatch(i, match);
+        return values[i][match];
+    }
+
+    /**
+     * Get the value of the first match of a path of the query.
+     *
+     * @param i position of the path in the query
+     * @return the value, or null if there was no match
+     */
+    public Object get(int i) {
+        return counts[i] > 0 ? values[i][0] : null;
+    }
+
+    /**
+     * Get the value of the first match of a path of the query, parsed with a
+     * loader.
+     *
+     * @param i position of the path in the query
+     * @param loader the loader
+     * @param <V> the type of the value
+     * @return the value, or null if there was no match or it could not be loaded
+     */
+    public <V> V getOf(int i, Loader<V> loader) {
+        Object value = get(i);
+        return value != null ? loader.read(value) : null;
+    }
+
+    /**
+     * Get the value of a match, parsed with a loader.
+     *
+     * @param i position of the path in the query
+     * @param match the match
+     * @param loader the loader
+     * @param <V> the type of the value
+     * @return the value, or null if it could not be loaded
+     */
+    public <V> V getOf(int i, int match, Loader<V> loader) {
+        return loader.read(get(i, match));
+    }
+
+    /**
+     * Get the values of the matches of a path of the query.
+     *
+     * @param i position of the path in the query
+     * @return a new array of the values
+     */
+    public Object[] getValues(int i) {
+        Object[] copy = new Object[counts[i]];
+        System.arraycopy(values[i], 0, copy, 0, counts[i]);
+        return copy;
+    }
+
+    /**
+     * Get the paths of the matches of a path of the query.
+     *
+     * @param i position of the path in the query
+     * @return a new array of the paths
+     */
+    public ConfigPath[] getPaths(int i) {
+        ConfigPath[] copy = new ConfigPath[counts[i]];
+        System.arraycopy(paths[i], 0, copy, 0, counts[i]);
+        return copy;
+    }
+
+    /**
+     * Get the first match of a path of the query as a string.
+     *
+     * @param i position of the path in the query
+     * @return the string, or null if there was no match
+     */
+    public String getString(int i) {
+        return getOf(i, ConfigurationObject.stringLB);
+    }
+
+    /**
+     * Get the first match of a path of the query as an integer.
+     *
+     * @param i position of the path in the query
+     * @param def the value to return if there was no match or it is not a number
+     * @return the integer or default
+     */
+    public int getInt(int i, int def) {
+        Integer value = getOf(i, ConfigurationObject.integerLB);
+        return value != null ? value : def;
+    }
+
+    /**
+     * Get the first match of a path of the query as a double.
+     *
+     * @param i position of the path in the query
+     * @param def the value to return if there was no match or it is not a number
+     * @return the double or default
+     */
+    public double getDouble(int i, double def) {
+        Double value = getOf(i, ConfigurationObject.doubleLB);
+        return value != null ? value : def;
+    }
+
+    /**
+     * Get the first match of a path of the query as a boolean.
+     *
+     * @param i position of the path in the query
+     * @param def the value to return if there was no match or it is not a boolean
+     * @return the boolean or default
+     */
+    public boolean getBoolean(int i, boolean def) {
+        Boolean value = getOf(i, ConfigurationObject.boolLB);
+        return value != null ? value : def;
+    }
+
+    private void checkMatch(int i, int match) {
+        if (match < 0 || match >= counts[i]) {
+            throw new IndexOutOfBoundsException("Match " + match + ", count " + counts[i]);
+        }
+    }
+
+}
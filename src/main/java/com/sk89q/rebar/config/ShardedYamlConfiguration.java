@@ -0,0 +1,322 @@
+package com.sk89q.rebar.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+/**
+ * Loads and saves a configuration as a folder of YAML files, with one file
+ * for the value under each top-level key.
+ * </p>
+ * When the configuration is saved, only the files of top-level keys that
+ * have been changed since it was last loaded or saved are written (see
+ * {@link #isDirty(String)}), so a small change to a large configuration does
+ * not rewrite all of it. Each file is replaced in the same way as
+ * {@link YamlConfigurationFile} does. Changes made through nodes returned by
+ * {@link #getNode(String)} and similar methods count as changes to the key
+ * that the node was read from. Changes made directly to the underlying map,
+ * or to maps and lists read from it, are not tracked, so {@link #markDirty()}
+ * must be called after making them.
+ * </p>
+ * File names are the keys with characters other than ASCII letters, digits,
+ * <code>_</code> and <code>-</code> escaped, so keys that only differ in case
+ * should be avoided on file systems that ignore case.
+ */
+public class ShardedYamlConfiguration extends ConfigurationNode {
+
+    private static final String EXTENSION = ".yml";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final File directory;
+    private final YamlStyle style;
+    private final Object saveLock = new Object();
+
+    /**
+     * Create a new configuration stored in a folder. Be aware that
+     * {@link #load()} still has to be called at least once before anything
+     * is loaded from the folder.
+     *
+     * @param directory the folder
+     */
+    public ShardedYamlConfiguration(File directory) {
+        this(directory, new YamlStyle());
+    }
+
+    /**
+     * Create a new configuration stored in a folder. Be aware that
+     * {@link #load()} still has to be called at least once before anything
+     * is loaded from the folder.
+     *
+     * @param directory the folder
+     * @param style style of the YAML data
+     */
+    public ShardedYamlConfiguration(File directory, YamlStyle style) {
+        super(new LinkedHashMap<Object, Object>());
+        this.directory = directory;
+        this.style = style;
+    }
+
+    /**
+     * Get the folder that this configuration is loaded from and saved to.
+     *
+     * @return the folder
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the style that the configuration is saved with.
+     *
+     * @return the style
+     */
+    public YamlStyle getStyle() {
+        return style;
+    }
+
+    /**
+     * Get the file that the value under a top-level key is stored in.
+     *
+     * @param key the key
+     * @return the file
+     */
+    public File getShardFile(String key) {
+        return new File(directory, encodeKey(key) + EXTENSION);
+    }
+
+    /**
+     * Loads the configuration from the folder. If the folder does not exist,
+     * the configuration is emptied.
+     *
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error
+     */
+    public void load() throws IOException, ConfigurationException {
+        Map<Object, Object> root = new LinkedHashMap<Object, Object>();
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+
+            for (File file : files) {
+                String key = getKey(file);
+                if (key == null) {
+                    continue;
+                }
+
+                Object value = read(file);
+                if (value != null) {
+                    root.put(key, value);
+                }
+            }
+        }
+
+        setRoot(root);
+        markClean();
+    }
+
+    /**
+     * Read the value stored in a file.
+     *
+     * @param file the file
+     * @return the value, or null if the file is empty
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error
+     */
+    private Object read(File file) throws IOException, ConfigurationException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(file));
+
+        try {
+            return YamlEngines.get(style).load(new UnicodeReader(stream));
+        } catch (YAMLException e) {
+            throw new ConfigurationException(e);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Saves the files of the top-level keys that have changed since the
+     * configuration was last loaded or saved, and deletes the files of keys
+     * that have been removed. If the whole configuration has changed, every
+     * file is written and files in the folder that no longer have a key are
+     * deleted.
+     *
+     * @return the number of files written or deleted
+     * @throws IOException on I/O error
+     */
+    public int save() throws IOException {
+        synchronized (saveLock) {
+            Set<String> keys = getDirtyKeys();
+            markClean();
+
+            Map<Object, Object> root = getUnderlyingMap();
+
+            if (keys == null) {
+                keys = new LinkedHashSet<String>();
+                for (Object key : root.keySet()) {
+                    keys.add(String.valueOf(key));
+                }
+
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        String key = getKey(file);
+                        if (key != null) {
+                            keys.add(key);
+                        }
+                    }
+                }
+            }
+
+            int count = 0;
+
+            try {
+                for (String key : keys) {
+                    File file = getShardFile(key);
+                    Object value = root.get(key);
+
+                    if (value == null) {
+                        if (file.exists()) {
+                            if (!file.delete()) {
+                                throw new IOException("Failed to delete " + file.getAbsolutePath());
+                            }
+                            count++;
+                        }
+                    } else {
+                        write(file, value);
+                        count++;
+                    }
+                }
+            } catch (IOException e) {
+                markDirty();
+                throw e;
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Write a value to a file.
+     *
+     * @param file the file
+     * @param value the value
+     * @throws IOException on I/O error
+     */
+    private void write(File file, Object value) throws IOException {
+        FileReplacement replacement = new FileReplacement(file);
+
+        try {
+            OutputStreamWriter writer = new OutputStreamWriter(
+                    new BufferedOutputStream(replacement.getStream()), "UTF-8");
+            YamlEngines.get(style).dump(value, writer);
+            writer.flush();
+            replacement.commit();
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException("Unsupported encoding", e);
+        } finally {
+            replacement.abort();
+        }
+    }
+
+    /**
+     * Get the key that a file in the folder stores the value of.
+     *
+     * @param file the file
+     * @return the key, or null if the file is not one of the configuration's
+     */
+    private static String getKey(File file) {
+        String name = file.getName();
+        if (!name.endsWith(EXTENSION) || !file.isFile()) {
+            return null;
+        }
+        return decodeKey(name.substring(0, name.length() - EXTENSION.length()));
+    }
+
+    /**
+     * Escape a key for use as a file name. Characters other than ASCII
+     * letters, digits, <code>_</code> and <code>-</code> are written as
+     * <code>%XX</code> for each of their bytes in UTF-8.
+     *
+     * @param key the key
+     * @return the file name without extension
+     */
+    private static String encodeKey(String key) {
+        StringBuilder builder = new StringBuilder(key.length());
+        byte[] bytes;
+        try {
+            bytes = key.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+
+        for (byte b : bytes) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9') || c == '_' || c == '-') {
+                builder.append(c);
+            } else {
+                builder.append('%');
+                builder.append(HEX[(b >> 4) & 0xF]);
+                builder.append(HEX[b & 0xF]);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Reverse {@link #encodeKey(String)}.
+     *
+     * @param name the file name without extension
+     * @return the key, or null if the name is not a valid escaped key
+     */
+    private static String decodeKey(String name) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(name.length());
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= name.length()) {
+                    return null;
+                }
+                int high = Character.digit(name.charAt(i + 1), 16);
+                int low = Character.digit(name.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+                bytes.write((high << 4) | low);
+                i += 2;
+            } else if (c < 0x80) {
+                bytes.write(c);
+            } else {
+                return null;
+            }
+        }
+
+        try {
+            return bytes.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
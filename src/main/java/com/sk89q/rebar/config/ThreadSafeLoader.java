@@ -0,0 +1,11 @@
+package com.sk89q.rebar.config;
+
+/**
+ * Marks a {@link Loader} or {@link KeyValueLoader} whose <code>read</code>
+ * method can be called from several threads at once, which allows
+ * {@link ParallelDecoder} to decode large collections with it in parallel.
+ * Loaders that are not marked are always run on the calling thread.
+ */
+public interface ThreadSafeLoader {
+
+}
@@ -0,0 +1,21 @@
+package com.sk89q.rebar.config;
+
+/**
+ * Combines the current value at a path with a new value.
+ *
+ * @see ConcurrentConfigurationNode#merge(ConfigPath, Object, ValueMerger)
+ */
+public interface ValueMerger {
+
+    /**
+     * Combine the values. This may be called more than once if another
+     * thread changes the value at the same time, so it should not have side
+     * effects.
+     *
+     * @param current the current value, never null
+     * @param value the value given to merge
+     * @return the combined value, or null to remove the value
+     */
+    Object merge(Object current, Object value);
+
+}
@@ -0,0 +1,20 @@
+package com.sk89q.rebar.config;
+
+/**
+ * Computes a new value from the current value at a path.
+ *
+ * @see ConcurrentConfigurationNode#compute(ConfigPath, ValueUpdater)
+ */
+public interface ValueUpdater {
+
+    /**
+     * Compute the new value. This may be called more than once if another
+     * thread changes the value at the same time, so it should not have side
+     * effects.
+     *
+     * @param current the current value, or null if there is none
+     * @return the new value, or null to remove the value
+     */
+    Object update(Object current);
+
+}
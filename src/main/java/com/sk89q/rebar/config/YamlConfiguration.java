@@ -1,27 +1,51 @@
 package com.sk89q.rebar.config;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
-import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
-import org.yaml.snakeyaml.constructor.SafeConstructor;
 import org.yaml.snakeyaml.error.YAMLException;
 import org.yaml.snakeyaml.reader.UnicodeReader;
-import org.yaml.snakeyaml.representer.Representer;
 
 /**
  * Loads and saves configurations based off of YAML.
  */
 public abstract class YamlConfiguration extends ConfigurationNode {
-    
-    private Yaml yaml;
+
+    private static ScheduledExecutorService defaultSaveExecutor;
+
+    private final YamlStyle style;
     private String header = null;
+    private boolean skipUnchangedSaves = false;
+    private boolean lazyLoading = false;
+
+    private final Object saveLock = new Object();
+    private final Object writeLock = new Object();
+    private ScheduledExecutorService saveExecutor;
+    private long saveDelay = 500;
+    private long saveCount;
+    private long writtenCount;
+    private Object pendingRoot;
+    private String pendingHeader;
+    private long pendingCount;
+    private Future<Void> pendingSave;
 
     /**
      * Construct the configuration with the given map.
@@ -31,23 +55,27 @@ public abstract class YamlConfiguration extends ConfigurationNode {
      */
     protected YamlConfiguration(Map<Object, Object> root, YamlStyle style) {
         super(root);
+        this.style = style;
+    }
 
-        DumperOptions options = new DumperOptions();
-        options.setIndent(style.getIndent());
-        options.setDefaultFlowStyle(style.getStyle());
-        Representer representer = new Representer();
-        representer.setDefaultFlowStyle(style.getStyle());
-
-        yaml = new Yaml(new SafeConstructor(), new Representer(), options);
+    /**
+     * Get the style that the configuration is saved with.
+     *
+     * @return the style
+     */
+    public YamlStyle getStyle() {
+        return style;
     }
     
     /**
-     * Get the underlying YAML object.
+     * Get the underlying YAML object. YAML objects are shared between
+     * configurations with the same style and are kept for each thread, so
+     * the returned object must only be used by the calling thread.
      * 
      * @return YAML object
      */
     protected Yaml getYaml() {
-        return yaml;
+        return YamlEngines.get(style);
     }
 
     /**
@@ -79,6 +107,7 @@ public abstract class YamlConfiguration extends ConfigurationNode {
      */
     public void setHeader(String header) {
         this.header = header;
+        markDirty();
     }
 
     /**
@@ -90,6 +119,16 @@ public abstract class YamlConfiguration extends ConfigurationNode {
         return header;
     }
 
+    /**
+     * Get the name that measurements of loading and saving this
+     * configuration are reported under (see {@link #setMetricsSink(MetricsSink)}).
+     *
+     * @return the name
+     */
+    protected String getSourceName() {
+        return getClass().getName();
+    }
+
     /**
      * Loads the configuration file.
      *
@@ -97,6 +136,8 @@ public abstract class YamlConfiguration extends ConfigurationNode {
      * @throws ConfigurationException on configuration error
      */
     public void load() throws IOException, ConfigurationException {
+        MetricsSink sink = getMetricsSink();
+        long start = System.nanoTime();
         InputStream stream = null;
         
         try {
@@ -104,7 +145,19 @@ public abstract class YamlConfiguration extends ConfigurationNode {
             if (stream == null) {
                 return;
             }
-            read(getYaml().load(new UnicodeReader(stream)));
+            if (sink != null) {
+                stream = new CountingInputStream(stream);
+            }
+            if (lazyLoading) {
+                read(LazyYamlTree.load(getYaml(), new UnicodeReader(stream)));
+            } else {
+                read(getYaml().load(new UnicodeReader(stream)));
+            }
+            markClean();
+            if (sink != null) {
+                sink.parsed(getSourceName(), ((CountingInputStream) stream).count,
+                        System.nanoTime() - start);
+            }
         } catch (YAMLException e) {
             throw new ConfigurationException(e);
         } finally {
@@ -117,6 +170,47 @@ public abstract class YamlConfiguration extends ConfigurationNode {
         }
     }
     
+    /**
+     * Loads only the parts of the configuration file that were registered
+     * with the given reader, without reading the whole file into memory.
+     * Values registered with {@link YamlStreamReader#include(String)} replace
+     * the contents of this configuration, and handlers registered with
+     * {@link YamlStreamReader#forEach(String, Loader, EntryHandler)} are
+     * called while the file is read.
+     *
+     * @param reader the reader
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on configuration error, or an error thrown by a handler
+     */
+    public void load(YamlStreamReader reader) throws IOException, ConfigurationException {
+        MetricsSink sink = getMetricsSink();
+        long start = System.nanoTime();
+        InputStream stream = null;
+
+        try {
+            stream = getInputStream();
+            if (stream == null) {
+                return;
+            }
+            if (sink != null) {
+                stream = new CountingInputStream(stream);
+            }
+            read(reader.read(getYaml(), new UnicodeReader(stream)));
+            markClean();
+            if (sink != null) {
+                sink.parsed(getSourceName(), ((CountingInputStream) stream).count,
+                        System.nanoTime() - start);
+            }
+        } finally {
+            try {
+                if (stream != null) {
+                    stream.close();
+                }
+            } catch (IOException e) {
+            }
+        }
+    }
+
     /**
      * Called by {@link #load()} in order to load the YAML data. If this method is
      * not supported, throw an {@link UnsupportedOperationException}.
@@ -127,38 +221,309 @@ public abstract class YamlConfiguration extends ConfigurationNode {
      */
     protected abstract InputStream getInputStream() throws IOException;
 
+    /**
+     * Set whether {@link #load()} puts off constructing the values of maps
+     * until they are first read. The whole file is still parsed when it is
+     * loaded, so syntax errors are still found then, but a configuration of
+     * which only a few sections are used does not pay to build the rest.
+     * Values are constructed once and then kept, and saving the
+     * configuration constructs all of them. This is off by default.
+     * </p>
+     * Values that have not been read yet are kept as YAML nodes, which take
+     * several times the memory of the values themselves, so this suits
+     * configurations that are read briefly and then discarded more than
+     * large ones that are kept loaded.
+     *
+     * @param lazy true to construct values when they are first read
+     */
+    public void setLazyLoading(boolean lazy) {
+        this.lazyLoading = lazy;
+    }
+
+    /**
+     * Returns whether values are constructed when they are first read.
+     *
+     * @return true if loading is lazy
+     * @see #setLazyLoading(boolean)
+     */
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    /**
+     * Set whether {@link #save()} and {@link #saveAsync()} do nothing if the
+     * configuration has not been changed through its own methods, or through
+     * nodes returned by {@link #getNode(String)} and similar methods, since
+     * it was last loaded or saved (see {@link #isDirty()}). Changes made
+     * directly to the underlying map are not seen, so {@link #markDirty()}
+     * must be called after making them. This is off by default.
+     *
+     * @param skip true to skip saves when nothing has changed
+     */
+    public void setSkipUnchangedSaves(boolean skip) {
+        this.skipUnchangedSaves = skip;
+    }
+
+    /**
+     * Returns whether saves are skipped when nothing has changed.
+     *
+     * @return true if unchanged saves are skipped
+     * @see #setSkipUnchangedSaves(boolean)
+     */
+    public boolean isSkipUnchangedSaves() {
+        return skipUnchangedSaves;
+    }
+
     /**
      * Saves the configuration to disk.
      *
      * @throws IOException on I/O error
      */
     public void save() throws IOException {
+        if (skipUnchangedSaves && !isDirty()) {
+            return;
+        }
+
+        long count;
+        synchronized (saveLock) {
+            count = ++saveCount;
+        }
+
+        markClean();
+        try {
+            write(getRoot(), header, count);
+        } catch (IOException e) {
+            markDirty();
+            throw e;
+        }
+    }
+
+    /**
+     * Saves the configuration in the background. A copy of the configuration
+     * is taken immediately, so this configuration can continue to be changed,
+     * and the copy is written after the save delay has passed (see
+     * {@link #setSaveDelay(long, TimeUnit)}). If this method is called again
+     * before then, only the newest copy is written and the same future is
+     * returned.
+     * </p>
+     * Saves that are still pending when the JVM exits are lost, so
+     * {@link #save()} should be used when shutting down.
+     *
+     * @return a future that completes once the copy has been written
+     */
+    public Future<Void> saveAsync() {
+        if (skipUnchangedSaves && !isDirty()) {
+            synchronized (saveLock) {
+                if (pendingSave != null) {
+                    return pendingSave;
+                }
+            }
+
+            FutureTask<Void> done = new FutureTask<Void>(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, null);
+            done.run();
+            return done;
+        }
+
+        Object root = copyTree(getRoot());
+        markClean();
+
+        synchronized (saveLock) {
+            pendingRoot = root;
+            pendingHeader = header;
+            pendingCount = ++saveCount;
+
+            if (pendingSave == null) {
+                pendingSave = getSaveExecutor().schedule(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        Object root;
+                        String header;
+                        long count;
+
+                        synchronized (saveLock) {
+                            root = pendingRoot;
+                            header = pendingHeader;
+                            count = pendingCount;
+                            pendingRoot = null;
+                            pendingHeader = null;
+                            pendingSave = null;
+                        }
+
+                        try {
+                            write(root, header, count);
+                        } catch (IOException e) {
+                            markDirty();
+                            throw e;
+                        }
+                        return null;
+                    }
+                }, saveDelay, TimeUnit.MILLISECONDS);
+            }
+
+            return pendingSave;
+        }
+    }
+
+    /**
+     * Set the time to wait before a save started with {@link #saveAsync()}
+     * is written, during which further saves are combined into it.
+     *
+     * @param delay the delay
+     * @param unit unit of the delay
+     */
+    public void setSaveDelay(long delay, TimeUnit unit) {
+        synchronized (saveLock) {
+            this.saveDelay = unit.toMillis(delay);
+        }
+    }
+
+    /**
+     * Set the executor used by {@link #saveAsync()}. If none is set, a shared
+     * daemon thread is used.
+     *
+     * @param executor the executor, or null to use the shared thread
+     */
+    public void setSaveExecutor(ScheduledExecutorService executor) {
+        synchronized (saveLock) {
+            this.saveExecutor = executor;
+        }
+    }
+
+    /**
+     * Get the executor to run background saves on.
+     *
+     * @return the executor
+     */
+    private ScheduledExecutorService getSaveExecutor() {
+        if (saveExecutor != null) {
+            return saveExecutor;
+        }
+
+        synchronized (YamlConfiguration.class) {
+            if (defaultSaveExecutor == null) {
+                defaultSaveExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "Rebar configuration saver");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return defaultSaveExecutor;
+        }
+    }
+
+    /**
+     * Write a tree, unless a newer save has already been written.
+     *
+     * @param root the root to write
+     * @param header the header, or null
+     * @param count the number of the save
+     * @throws IOException on I/O error
+     */
+    private void write(Object root, String header, long count) throws IOException {
+        synchronized (writeLock) {
+            if (count < writtenCount) {
+                return;
+            }
+            writtenCount = count;
+            write(root, header);
+        }
+    }
+
+    /**
+     * Write a tree to the stream returned by {@link #getOutputStream()}.
+     * Only one call to this method is made at a time.
+     *
+     * @param root the root to write
+     * @param header the header, or null
+     * @throws IOException on I/O error
+     */
+    protected void write(Object root, String header) throws IOException {
         OutputStream stream = null;
 
         try {
             stream = getOutputStream();
+            dump(root, header, stream);
+        } finally {
+            try {
+                if (stream != null) {
+                    stream.close();
+                }
+            } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Write a tree as YAML to a stream.
+     *
+     * @param root the root to write
+     * @param header the header, or null
+     * @param stream the stream, which is flushed but not closed
+     * @throws IOException on I/O error
+     */
+    protected void dump(Object root, String header, OutputStream stream) throws IOException {
+        MetricsSink sink = getMetricsSink();
+        long start = System.nanoTime();
+        if (sink != null) {
+            stream = new CountingOutputStream(stream);
+        }
+
+        try {
             OutputStreamWriter writer = new OutputStreamWriter(stream, "UTF-8");
-            
+
             if (header != null) {
                 writer.append(header);
                 writer.append("\r\n");
             }
-            
-            Object root = getRoot();
-            
-            if (root instanceof Map<?, ?> && ((Map<?, ?>) root).size() == 0) {
-                writer.flush();
-            } else {
-                yaml.dump(getRoot(), writer);
+
+            if (!(root instanceof Map<?, ?> && ((Map<?, ?>) root).size() == 0)) {
+                getYaml().dump(root, writer);
+            }
+
+            writer.flush();
+
+            if (sink != null) {
+                sink.serialized(getSourceName(), ((CountingOutputStream) stream).count,
+                        System.nanoTime() - start);
             }
         } catch (UnsupportedEncodingException e) {
             throw new IOException("Unsupported encoding", e);
-        } finally {
-            try {
-                if (stream != null) {
-                    stream.close();
-                }
-            } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Make a deep copy of the maps and lists of a tree.
+     *
+     * @param object the tree
+     * @return the copy
+     */
+    static Object copyTree(Object object) {
+        if (object instanceof ConfigurationNode) {
+            object = ((ConfigurationNode) object).getUnderlyingMap();
+        }
+
+        if (object instanceof Map<?, ?>) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), copyTree(entry.getValue()));
+            }
+            return copy;
+        } else if (object instanceof List<?>) {
+            List<?> list = (List<?>) object;
+            List<Object> copy = new ArrayList<Object>(list.size());
+            for (Object element : list) {
+                copy.add(copyTree(element));
+            }
+            return copy;
+        } else {
+            return object;
         }
     }
     
@@ -186,4 +551,63 @@ public abstract class YamlConfiguration extends ConfigurationNode {
         }
     }
 
+    /**
+     * Counts the bytes that are read from a stream.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Counts the bytes that are written to a stream, without closing it.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
 }
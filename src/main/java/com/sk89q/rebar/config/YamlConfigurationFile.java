@@ -24,7 +24,6 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -33,6 +32,10 @@ import java.util.HashMap;
 /**
  * Loads and saves YAML-based configurations from/to a file. When saving the
  * configuration, the parent folder to contain the file will be created recursively.
+ * </p>
+ * The configuration is first written to a temporary file in the same folder,
+ * which then replaces the file, so that an interrupted save does not leave
+ * a partially written file behind.
  */
 public class YamlConfigurationFile extends YamlConfiguration {
     
@@ -83,6 +86,20 @@ public class YamlConfigurationFile extends YamlConfiguration {
         this.ignoreNotFound = ignoreNotFound;
     }
 
+    /**
+     * Get the file that this configuration is loaded from and saved to.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    protected String getSourceName() {
+        return file.getPath();
+    }
+
     @Override
     protected InputStream getInputStream() throws IOException {
         try {
@@ -96,15 +113,28 @@ public class YamlConfigurationFile extends YamlConfiguration {
         }
     }
 
+    /**
+     * Get a stream that writes to a temporary file in the same folder, which
+     * replaces the file when the stream is closed. {@link #save()} does not
+     * use it, and instead only replaces the file if the whole configuration
+     * was written.
+     */
     @Override
     protected OutputStream getOutputStream() throws IOException {
-        File dir = file.getParentFile();
-        
-        // Make parent folder if it doesn't exist
-        if (!dir.exists()) {
-            file.getParentFile().mkdirs();
+        return new BufferedOutputStream(new FileReplacement(file).getCommittingStream());
+    }
+
+    @Override
+    protected void write(Object root, String header) throws IOException {
+        FileReplacement replacement = new FileReplacement(file);
+
+        try {
+            BufferedOutputStream buffered = new BufferedOutputStream(replacement.getStream());
+            dump(root, header, buffered);
+            buffered.flush();
+            replacement.commit();
+        } finally {
+            replacement.abort();
         }
-        
-        return new BufferedOutputStream(new FileOutputStream(file));
     }
 }
@@ -27,6 +27,11 @@ public class YamlConfigurationResource extends YamlConfiguration {
         this.path = path;
     }
 
+    @Override
+    protected String getSourceName() {
+        return clazz.getName() + ":" + path;
+    }
+
     @Override
     protected InputStream getInputStream() throws IOException {
         InputStream stream = clazz.getResourceAsStream(path);
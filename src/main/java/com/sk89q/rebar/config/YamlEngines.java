@@ -0,0 +1,90 @@
+package com.sk89q.rebar.config;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.representer.Representer;
+
+/**
+ * Keeps a {@link Yaml} object for each {@link YamlStyle} on each thread, as
+ * they are costly to create and cannot be used by several threads at once.
+ * </p>
+ * The objects are kept in the threads themselves, which may outlive the
+ * plugin that loaded Rebar, so {@link #clear()} must be called when the
+ * plugin is disabled to release them and, with them, the plugin's class
+ * loader.
+ */
+public final class YamlEngines {
+
+    private static final ThreadLocal<Map<YamlStyle, Yaml>> engines =
+            new ThreadLocal<Map<YamlStyle, Yaml>>();
+
+    /**
+     * The objects of each thread that has used this class, so that
+     * {@link #clear()} can reach them.
+     */
+    private static final Map<Thread, Map<YamlStyle, Yaml>> threads =
+            new WeakHashMap<Thread, Map<YamlStyle, Yaml>>();
+
+    private YamlEngines() {
+    }
+
+    /**
+     * Release the YAML objects kept for every thread. Threads that use YAML
+     * again afterwards create new objects.
+     */
+    public static void clear() {
+        synchronized (threads) {
+            for (Map<YamlStyle, Yaml> cache : threads.values()) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the YAML object for a style. The returned object must only be used
+     * by the calling thread.
+     *
+     * @param style the style
+     * @return the YAML object
+     */
+    static Yaml get(YamlStyle style) {
+        Map<YamlStyle, Yaml> cache = engines.get();
+        if (cache == null) {
+            // Only classes of the JDK are left in the thread after a clear()
+            cache = new ConcurrentHashMap<YamlStyle, Yaml>();
+            engines.set(cache);
+            synchronized (threads) {
+                threads.put(Thread.currentThread(), cache);
+            }
+        }
+        Yaml yaml = cache.get(style);
+        if (yaml == null) {
+            yaml = create(style);
+            cache.put(style, yaml);
+        }
+        return yaml;
+    }
+
+    /**
+     * Create a YAML object that loads with a safe constructor and dumps with
+     * the given style.
+     *
+     * @param style the style
+     * @return the YAML object
+     */
+    private static Yaml create(YamlStyle style) {
+        DumperOptions options = new DumperOptions();
+        options.setIndent(style.getIndent());
+        options.setDefaultFlowStyle(style.getStyle());
+        Representer representer = new Representer();
+        representer.setDefaultFlowStyle(style.getStyle());
+
+        return new Yaml(new SafeConstructor(), representer, options);
+    }
+
+}
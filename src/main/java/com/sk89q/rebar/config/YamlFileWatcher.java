@@ -0,0 +1,429 @@
+package com.sk89q.rebar.config;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+/**
+ * Watches the file of a {@link YamlConfigurationFile} and reloads it when it
+ * is changed on disk.
+ * </p>
+ * The file is checked for changes in the background, and it is only read
+ * once it has stopped changing for one check interval, so that files are not
+ * read while they are still being written. The new contents are compared to
+ * the contents that were last read, and only the values that differ are
+ * replaced in the configuration, so cached conversions of the other values
+ * are kept. {@link ConfigurationListener}s registered for a path are told
+ * about changes at, above or below that path.
+ * </p>
+ * Changes are applied to the configuration on the callback executor, which
+ * should be the thread that otherwise uses the configuration (for example,
+ * the server's main thread). Without one, changes are applied on the
+ * watcher's thread.
+ */
+public class YamlFileWatcher {
+
+    private static final Logger logger = Logger.getLogger(YamlFileWatcher.class.getCanonicalName());
+
+    private final YamlConfigurationFile config;
+    private final File file;
+    private final List<Registration> listeners = new CopyOnWriteArrayList<Registration>();
+    private volatile Executor callbackExecutor;
+    private ScheduledExecutorService executor;
+    private boolean ownExecutor;
+    private Future<?> task;
+
+    // Also written by the callback executor while changes are applied
+    private volatile Object previous;
+    private volatile long loadedModified;
+    private volatile long loadedLength;
+    private volatile boolean applying;
+
+    // Only used by the watcher's thread once started
+    private boolean pending;
+    private long pendingModified;
+    private long pendingLength;
+
+    /**
+     * Construct the watcher. {@link #start(long, TimeUnit)} must be called
+     * to begin watching.
+     *
+     * @param config the configuration to reload
+     */
+    public YamlFileWatcher(YamlConfigurationFile config) {
+        this.config = config;
+        this.file = config.getFile();
+    }
+
+    /**
+     * Register a listener for changes at, above or below a path.
+     *
+     * @param path path (dot notation)
+     * @param listener the listener
+     */
+    public void addListener(String path, ConfigurationListener listener) {
+        addListener(ConfigPath.of(path), listener);
+    }
+
+    /**
+     * Register a listener for changes at, above or below a path.
+     *
+     * @param path path to node
+     * @param listener the listener
+     */
+    public void addListener(ConfigPath path, ConfigurationListener listener) {
+        listeners.add(new Registration(path, listener));
+    }
+
+    /**
+     * Remove a listener from every path it was registered for.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(ConfigurationListener listener) {
+        for (Registration registration : listeners) {
+            if (registration.listener == listener) {
+                listeners.remove(registration);
+            }
+        }
+    }
+
+    /**
+     * Set the executor that changes are applied and listeners are called on.
+     *
+     * @param executor the executor, or null to use the watcher's thread
+     */
+    public void setCallbackExecutor(Executor executor) {
+        this.callbackExecutor = executor;
+    }
+
+    /**
+     * Start watching with a thread of its own. The file is read now, and
+     * later changes are compared against what was read.
+     *
+     * @param interval time between checks
+     * @param unit unit of the interval
+     */
+    public void start(long interval, TimeUnit unit) {
+        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Rebar watcher for " + file.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        start(executor, true, interval, unit);
+    }
+
+    /**
+     * Start watching using the given executor. The file is read now, and
+     * later changes are compared against what was read.
+     *
+     * @param executor executor to check for changes on
+     * @param interval time between checks
+     * @param unit unit of the interval
+     */
+    public void start(ScheduledExecutorService executor, long interval, TimeUnit unit) {
+        start(executor, false, interval, unit);
+    }
+
+    /**
+     * Start watching.
+     *
+     * @param executor executor to check for changes on
+     * @param ownExecutor true to shut down the executor when stopped
+     * @param interval time between checks
+     * @param unit unit of the interval
+     */
+    private synchronized void start(ScheduledExecutorService executor, boolean ownExecutor,
+            long interval, TimeUnit unit) {
+        if (task != null) {
+            throw new IllegalStateException("Already watching");
+        }
+
+        loadedModified = file.lastModified();
+        loadedLength = file.length();
+        pending = false;
+        applying = false;
+
+        try {
+            previous = read();
+        } catch (Throwable t) {
+            logger.log(Level.WARNING, "Failed to read " + file.getAbsolutePath(), t);
+            previous = new HashMap<Object, Object>();
+        }
+
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        task = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // An exception would stop the executor from running the task again
+                try {
+                    poll();
+                } catch (Throwable t) {
+                    logger.log(Level.WARNING, "Failed to check " + file.getAbsolutePath() + " for changes", t);
+                }
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stop watching.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+        executor = null;
+    }
+
+    /**
+     * Check whether the file has changed, and reload it if it has stopped
+     * changing. Nothing is checked while changes that were read before are
+     * still being applied.
+     */
+    private void poll() {
+        if (applying) {
+            return;
+        }
+
+        long modified = file.lastModified();
+        long length = file.length();
+
+        if (modified == loadedModified && length == loadedLength) {
+            pending = false;
+            return;
+        }
+
+        // Wait until the file has looked the same for one interval
+        if (!pending || modified != pendingModified || length != pendingLength) {
+            pending = true;
+            pendingModified = modified;
+            pendingLength = length;
+            return;
+        }
+
+        pending = false;
+        loadedModified = modified;
+        loadedLength = length;
+
+        // The file may be replaced rather than written to
+        if (!file.exists()) {
+            return;
+        }
+
+        final Object current;
+        try {
+            current = read();
+        } catch (Throwable t) {
+            logger.log(Level.WARNING, "Failed to reload " + file.getAbsolutePath(), t);
+            return;
+        }
+
+        final List<Change> changes = new ArrayList<Change>();
+        diff(ConfigPath.ROOT, previous, current, changes);
+
+        if (changes.isEmpty()) {
+            previous = current;
+            return;
+        }
+
+        // What was read is only remembered once it has been applied, so that
+        // changes that fail to apply are found again by a later check
+        Runnable apply = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    apply(changes);
+                    previous = current;
+                } catch (Throwable t) {
+                    logger.log(Level.WARNING, "Failed to apply changes to " + file.getAbsolutePath(), t);
+                    reloadLater();
+                } finally {
+                    applying = false;
+                }
+            }
+        };
+
+        applying = true;
+        Executor callbackExecutor = this.callbackExecutor;
+        if (callbackExecutor != null) {
+            try {
+                callbackExecutor.execute(apply);
+            } catch (RuntimeException e) {
+                applying = false;
+                reloadLater();
+                throw e;
+            }
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * Make the next checks read the file again even if it has not changed.
+     */
+    private void reloadLater() {
+        loadedLength = -1;
+    }
+
+    /**
+     * Read the file.
+     *
+     * @return the root of the file, which is always a map
+     * @throws IOException on I/O error
+     * @throws ConfigurationException on a YAML error
+     */
+    private Object read() throws IOException, ConfigurationException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(file));
+
+        try {
+            Object root = YamlEngines.get(config.getStyle()).load(new UnicodeReader(stream));
+            return root instanceof Map<?, ?> ? root : new HashMap<Object, Object>();
+        } catch (YAMLException e) {
+            throw new ConfigurationException(e);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Find the differences between two trees. Maps with only string keys are
+     * compared key by key, and anything else is compared as a whole.
+     *
+     * @param path path of the values
+     * @param oldValue the old value
+     * @param newValue the new value
+     * @param changes list to add changes to
+     */
+    private static void diff(ConfigPath path, Object oldValue, Object newValue,
+            List<Change> changes) {
+        if (oldValue instanceof Map<?, ?> && newValue instanceof Map<?, ?>) {
+            Map<?, ?> oldMap = (Map<?, ?>) oldValue;
+            Map<?, ?> newMap = (Map<?, ?>) newValue;
+
+            if (hasStringKeys(oldMap) && hasStringKeys(newMap)) {
+                Set<Object> keys = new HashSet<Object>(oldMap.keySet());
+                keys.addAll(newMap.keySet());
+
+                for (Object key : keys) {
+                    diff(path.child((String) key), oldMap.get(key), newMap.get(key), changes);
+                }
+                return;
+            }
+        }
+
+        if (oldValue == null ? newValue != null : !oldValue.equals(newValue)) {
+            changes.add(new Change(path, oldValue, newValue));
+        }
+    }
+
+    /**
+     * Returns whether all of the keys of a map are strings.
+     *
+     * @param map the map
+     * @return true if the keys are strings
+     */
+    private static boolean hasStringKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply changes to the configuration and call the listeners.
+     *
+     * @param changes the changes
+     */
+    private void apply(List<Change> changes) {
+        // Parents are not written to when loading
+        ConfigurationNode target = new ConfigurationNode(config.getUnderlyingMap());
+
+        for (Change change : changes) {
+            if (change.path.isRoot()) {
+                config.setRoot(YamlConfiguration.copyTree(change.newValue));
+                target = new ConfigurationNode(config.getUnderlyingMap());
+            } else {
+                if (change.newValue == null) {
+                    target.remove(change.path);
+                } else {
+                    target.set(change.path, YamlConfiguration.copyTree(change.newValue));
+                }
+                config.changed(change.path);
+            }
+        }
+
+        for (Change change : changes) {
+            for (Registration registration : listeners) {
+                if (registration.path.overlaps(change.path)) {
+                    try {
+                        registration.listener.changed(change.path, change.oldValue, change.newValue);
+                    } catch (Throwable t) {
+                        logger.log(Level.WARNING, "Configuration listener failed", t);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A listener and the path that it is registered for.
+     */
+    private static class Registration {
+        private final ConfigPath path;
+        private final ConfigurationListener listener;
+
+        private Registration(ConfigPath path, ConfigurationListener listener) {
+            this.path = path;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * A changed value.
+     */
+    private static class Change {
+        private final ConfigPath path;
+        private final Object oldValue;
+        private final Object newValue;
+
+        private Change(ConfigPath path, Object oldValue, Object newValue) {
+            this.path = path;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+    }
+
+}
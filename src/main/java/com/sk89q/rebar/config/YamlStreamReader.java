@@ -0,0 +1,550 @@
+package com.sk89q.rebar.config;
+
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Reads selected parts of a YAML document from its stream of parser events,
+ * without building the rest of the document in memory. Used with
+ * {@link YamlConfiguration#load(YamlStreamReader)}.
+ * </p>
+ * Paths registered with {@link #include(String)} are loaded into the
+ * configuration as they would be with {@link YamlConfiguration#load()}.
+ * Paths registered with {@link #forEach(String, Loader, EntryHandler)} are
+ * not kept; instead, each entry of the map or list at the path is built,
+ * passed through a loader and handed to an {@link EntryHandler}, then
+ * discarded. Everything else in the document is skipped, so the memory used
+ * depends on the largest entry that is handled rather than on the size of
+ * the document.
+ * </p>
+ * Paths are given in dot notation and cannot contain list indexes. Aliases
+ * can only refer to anchors within parts of the document that were built.
+ */
+public class YamlStreamReader {
+
+    private final Set<ConfigPath> includes = new HashSet<ConfigPath>();
+    private final Map<ConfigPath, Handler<?>> handlers = new HashMap<ConfigPath, Handler<?>>();
+    private final Resolver resolver = new Resolver();
+
+    /**
+     * Load the value at the given path into the configuration.
+     *
+     * @param path path (dot notation)
+     * @return this object
+     */
+    public YamlStreamReader include(String path) {
+        return include(ConfigPath.of(path));
+    }
+
+    /**
+     * Load the value at the given path into the configuration.
+     *
+     * @param path path to node
+     * @return this object
+     */
+    public YamlStreamReader include(ConfigPath path) {
+        checkPath(path);
+        includes.add(path);
+        return this;
+    }
+
+    /**
+     * Read the entries of the map or list at the given path one at a time.
+     * Each value is passed through the loader, and the handler is called
+     * for each value that the loader does not return null for. A single
+     * value at the path is handled as a list of one element.
+     *
+     * @param path path (dot notation)
+     * @param loader loader to use
+     * @param handler handler to call for each entry
+     * @return this object
+     */
+    public <V> YamlStreamReader forEach(String path, Loader<V> loader,
+            EntryHandler<V> handler) {
+        return forEach(ConfigPath.of(path), loader, handler);
+    }
+
+    /**
+     * Read the entries of the map or list at the given path one at a time.
+     * Each value is passed through the loader, and the handler is called
+     * for each value that the loader does not return null for. A single
+     * value at the path is handled as a list of one element.
+     *
+     * @param path path to node
+     * @param loader loader to use
+     * @param handler handler to call for each entry
+     * @return this object
+     */
+    public <V> YamlStreamReader forEach(ConfigPath path, Loader<V> loader,
+            EntryHandler<V> handler) {
+        checkPath(path);
+        handlers.put(path, new Handler<V>(loader, handler));
+        return this;
+    }
+
+    /**
+     * Check that a path can be registered.
+     *
+     * @param path the path
+     */
+    private static void checkPath(ConfigPath path) {
+        if (path.isRoot()) {
+            throw new IllegalArgumentException("Invalid path");
+        }
+        for (int i = 0; i < path.size(); i++) {
+            if (path.hasIndex(i)) {
+                throw new IllegalArgumentException("Paths with list indexes cannot be streamed");
+            }
+        }
+    }
+
+    /**
+     * Read the first document of a YAML stream.
+     *
+     * @param yaml YAML object, used for values that need a full constructor
+     * @param reader the reader
+     * @return map of the included values
+     * @throws ConfigurationException on a YAML error or an error raised by a handler
+     */
+    Map<Object, Object> read(Yaml yaml, Reader reader) throws ConfigurationException {
+        Map<Object, Object> root = new LinkedHashMap<Object, Object>();
+
+        try {
+            Iterator<Event> it = yaml.parse(reader).iterator();
+            State state = new State(yaml, it, new ConfigurationNode(root));
+
+            while (it.hasNext()) {
+                Event event = it.next();
+                if (event instanceof MappingStartEvent) {
+                    readMapping(state, ConfigPath.ROOT);
+                    break;
+                } else if (event instanceof NodeEvent) {
+                    // Not a map, so nothing can be at any of the paths
+                    break;
+                }
+            }
+        } catch (YAMLException e) {
+            throw new ConfigurationException(e);
+        }
+
+        return root;
+    }
+
+    /**
+     * Read the entries of a map that contains registered paths. The
+     * start event of the map must have been read.
+     *
+     * @param state reading state
+     * @param path path of the map
+     * @throws ConfigurationException on error
+     */
+    private void readMapping(State state, ConfigPath path) throws ConfigurationException {
+        while (true) {
+            Event event = state.it.next();
+            if (event instanceof MappingEndEvent) {
+                return;
+            }
+
+            if (!(event instanceof ScalarEvent)) {
+                // Complex keys can't be reached by a path
+                skip(state, event);
+                skip(state, state.it.next());
+                continue;
+            }
+
+            ConfigPath child = path.child(((ScalarEvent) event).getValue());
+            boolean included = includes.contains(child);
+            Handler<?> handler = handlers.get(child);
+
+            event = state.it.next();
+
+            if (included) {
+                Object value = build(state, event);
+                state.target.set(child, value);
+                if (handler != null) {
+                    handleAll(handler, value);
+                }
+            } else if (handler != null) {
+                if (event instanceof MappingStartEvent) {
+                    readEntries(state, handler);
+                } else if (event instanceof SequenceStartEvent) {
+                    readSequence(state, handler);
+                } else {
+                    handleAll(handler, build(state, event));
+                }
+            } else if (event instanceof MappingStartEvent && isAncestor(child)) {
+                readMapping(state, child);
+            } else {
+                skip(state, event);
+            }
+        }
+    }
+
+    /**
+     * Read the entries of a map one by one. The start event of the map
+     * must have been read.
+     *
+     * @param state reading state
+     * @param handler the handler to call
+     * @throws ConfigurationException on error
+     */
+    private void readEntries(State state, Handler<?> handler) throws ConfigurationException {
+        while (true) {
+            Event event = state.it.next();
+            if (event instanceof MappingEndEvent) {
+                return;
+            }
+            Object key = build(state, event);
+            handler.handle(key, build(state, state.it.next()));
+        }
+    }
+
+    /**
+     * Read the elements of a list one by one. The start event of the list
+     * must have been read.
+     *
+     * @param state reading state
+     * @param handler the handler to call
+     * @throws ConfigurationException on error
+     */
+    private void readSequence(State state, Handler<?> handler) throws ConfigurationException {
+        int index = 0;
+
+        while (true) {
+            Event event = state.it.next();
+            if (event instanceof SequenceEndEvent) {
+                return;
+            }
+            handler.handle(index++, build(state, event));
+        }
+    }
+
+    /**
+     * Call a handler for every entry of a value that has already been built.
+     *
+     * @param handler the handler
+     * @param value the value
+     * @throws ConfigurationException on error
+     */
+    private static void handleAll(Handler<?> handler, Object value) throws ConfigurationException {
+        if (value instanceof Map<?, ?>) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                handler.handle(entry.getKey(), entry.getValue());
+            }
+        } else if (value instanceof List<?>) {
+            int index = 0;
+            for (Object element : (List<?>) value) {
+                handler.handle(index++, element);
+            }
+        } else if (value != null) {
+            handler.handle(0, value);
+        }
+    }
+
+    /**
+     * Returns whether a registered path is below the given path.
+     *
+     * @param path the path
+     * @return true if the path must be read into
+     */
+    private boolean isAncestor(ConfigPath path) {
+        for (ConfigPath include : includes) {
+            if (include.size() > path.size() && include.overlaps(path)) {
+                return true;
+            }
+        }
+        for (ConfigPath registered : handlers.keySet()) {
+            if (registered.size() > path.size() && registered.overlaps(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skip over the node that starts with the given event.
+     *
+     * @param state reading state
+     * @param event the first event of the node
+     */
+    private static void skip(State state, Event event) {
+        if (!(event instanceof CollectionStartEvent)) {
+            return;
+        }
+
+        int depth = 1;
+        while (depth > 0) {
+            event = state.it.next();
+            if (event instanceof CollectionStartEvent) {
+                depth++;
+            } else if (event instanceof CollectionEndEvent) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Build the node that starts with the given event, in the same form that
+     * {@link Yaml#load(java.io.Reader)} would.
+     *
+     * @param state reading state
+     * @param event the first event of the node
+     * @return the value
+     * @throws ConfigurationException thrown on an unknown alias
+     */
+    private Object build(State state, Event event) throws ConfigurationException {
+        Object value;
+
+        if (event instanceof AliasEvent) {
+            String anchor = ((AliasEvent) event).getAnchor();
+            if (!state.anchors.containsKey(anchor)) {
+                throw new ConfigurationException("Alias '" + anchor
+                        + "' refers to a part of the document that was not loaded");
+            }
+            return state.anchors.get(anchor);
+        } else if (event instanceof ScalarEvent) {
+            value = buildScalar(state.yaml, (ScalarEvent) event);
+        } else if (event instanceof SequenceStartEvent) {
+            List<Object> list = new ArrayList<Object>();
+            remember(state, event, list);
+            while (!((event = state.it.next()) instanceof SequenceEndEvent)) {
+                list.add(build(state, event));
+            }
+            return list;
+        } else if (event instanceof MappingStartEvent) {
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            List<Object> merged = null;
+            remember(state, event, map);
+            while (!((event = state.it.next()) instanceof MappingEndEvent)) {
+                if (isMergeKey(event)) {
+                    if (merged == null) {
+                        merged = new ArrayList<Object>();
+                    }
+                    merged.add(build(state, state.it.next()));
+                    continue;
+                }
+                Object key = build(state, event);
+                map.put(key, build(state, state.it.next()));
+            }
+            if (merged != null) {
+                merge(map, merged);
+            }
+            return map;
+        } else {
+            throw new ConfigurationException("Unexpected YAML event " + event);
+        }
+
+        remember(state, event, value);
+        return value;
+    }
+
+    /**
+     * Returns whether an event is the merge key (<<) of a map.
+     *
+     * @param event the event
+     * @return true if it is a merge key
+     */
+    private static boolean isMergeKey(Event event) {
+        if (!(event instanceof ScalarEvent)) {
+            return false;
+        }
+        ScalarEvent scalar = (ScalarEvent) event;
+        return scalar.getValue().equals("<<") && scalar.getTag() == null
+                && scalar.getImplicit().canOmitTagInPlainScalar();
+    }
+
+    /**
+     * Add the entries of merged maps to a map, without replacing the keys
+     * that the map already has.
+     *
+     * @param map the map
+     * @param merged the maps (or lists of maps) to merge in
+     * @throws ConfigurationException thrown if a merged value is not a map
+     */
+    private static void merge(Map<Object, Object> map, List<Object> merged)
+            throws ConfigurationException {
+        for (Object value : merged) {
+            if (value instanceof List<?>) {
+                merge(map, new ArrayList<Object>((List<?>) value));
+            } else if (value instanceof Map<?, ?>) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    if (!map.containsKey(entry.getKey())) {
+                        map.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            } else {
+                throw new ConfigurationException("Only maps can be merged with <<");
+            }
+        }
+    }
+
+    /**
+     * Remember the value of an anchored node for aliases.
+     *
+     * @param state reading state
+     * @param event the first event of the node
+     * @param value the value
+     */
+    private static void remember(State state, Event event, Object value) {
+        String anchor = ((NodeEvent) event).getAnchor();
+        if (anchor != null) {
+            state.anchors.put(anchor, value);
+        }
+    }
+
+    /**
+     * Build a scalar value. Common plain values are converted directly, and
+     * anything else is handed to the YAML object's constructor.
+     *
+     * @param yaml YAML object
+     * @param event the event
+     * @return the value
+     */
+    private Object buildScalar(Yaml yaml, ScalarEvent event) {
+        String value = event.getValue();
+        String explicitTag = event.getTag();
+
+        if (explicitTag != null && !explicitTag.equals("!")) {
+            if (explicitTag.equals(Tag.STR.getValue())) {
+                return value;
+            }
+            return yaml.load("!<" + explicitTag + "> " + yaml.dump(value));
+        }
+
+        Tag tag = resolver.resolve(NodeId.scalar, value,
+                event.getImplicit().canOmitTagInPlainScalar());
+
+        if (tag.equals(Tag.STR)) {
+            return value;
+        } else if (tag.equals(Tag.NULL)) {
+            return null;
+        } else if (tag.equals(Tag.BOOL)) {
+            String lower = value.toLowerCase();
+            return lower.equals("true") || lower.equals("yes") || lower.equals("on");
+        } else if (tag.equals(Tag.INT) && isDecimal(value)) {
+            // Integer.valueOf() and BigInteger only accept '+' from Java 7
+            if (value.charAt(0) == '+') {
+                value = value.substring(1);
+            }
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException e) {
+                try {
+                    return Long.valueOf(value);
+                } catch (NumberFormatException e2) {
+                    return new BigInteger(value);
+                }
+            }
+        } else if (tag.equals(Tag.FLOAT) && isSimpleFloat(value)) {
+            return Double.valueOf(value);
+        }
+
+        // Octal, hexadecimal, sexagesimal, timestamps and so on
+        return yaml.load(value);
+    }
+
+    /**
+     * Returns whether an integer is written in plain decimal notation, which
+     * excludes octal numbers (with a leading zero) and underscores.
+     *
+     * @param value the integer
+     * @return true if decimal
+     */
+    private static boolean isDecimal(String value) {
+        int start = value.startsWith("-") || value.startsWith("+") ? 1 : 0;
+        if (value.length() == start) {
+            return false;
+        }
+        if (value.charAt(start) == '0' && value.length() > start + 1) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a floating point number can be parsed by
+     * {@link Double#valueOf(String)} as it is.
+     *
+     * @param value the number
+     * @return true if simple
+     */
+    private static boolean isSimpleFloat(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if ((ch < '0' || ch > '9') && ch != '.' && ch != '-' && ch != '+'
+                    && ch != 'e' && ch != 'E') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A loader and the handler that its values are passed to.
+     *
+     * @param <V> type of value
+     */
+    private static class Handler<V> {
+        private final Loader<V> loader;
+        private final EntryHandler<V> handler;
+
+        private Handler(Loader<V> loader, EntryHandler<V> handler) {
+            this.loader = loader;
+            this.handler = handler;
+        }
+
+        private void handle(Object key, Object value) throws ConfigurationException {
+            V loaded = loader.read(value);
+            if (loaded != null) {
+                handler.handle(key, loaded);
+            }
+        }
+    }
+
+    /**
+     * The state of a single read.
+     */
+    private static class State {
+        private final Yaml yaml;
+        private final Iterator<Event> it;
+        private final ConfigurationNode target;
+        private final Map<String, Object> anchors = new HashMap<String, Object>();
+
+        private State(Yaml yaml, Iterator<Event> it, ConfigurationNode target) {
+            this.yaml = yaml;
+            this.it = it;
+            this.target = target;
+        }
+    }
+
+}
@@ -3,7 +3,8 @@ package com.sk89q.rebar.config;
 import org.yaml.snakeyaml.DumperOptions.FlowStyle;
 
 /**
- * A style for formatting YAML data.
+ * A style for formatting YAML data. Styles with the same flow style and
+ * indent are equal.
  */
 public class YamlStyle {
 
@@ -32,5 +33,19 @@ public class YamlStyle {
     public int getIndent() {
         return indent;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof YamlStyle)) {
+            return false;
+        }
+        YamlStyle other = (YamlStyle) obj;
+        return style == other.style && indent == other.indent;
+    }
+
+    @Override
+    public int hashCode() {
+        return style.hashCode() * 31 + indent;
+    }
     
 }
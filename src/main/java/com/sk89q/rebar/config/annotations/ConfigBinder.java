@@ -0,0 +1,39 @@
+package com.sk89q.rebar.config.annotations;
+
+import com.sk89q.rebar.config.ConfigurationException;
+import com.sk89q.rebar.config.ConfigurationNode;
+
+/**
+ * Loads and saves the {@link Setting} fields of one class without
+ * reflection.
+ * </p>
+ * Binders are generated at compile time by {@link SettingProcessor}, as a
+ * class named after the configured class with <code>_ConfigBinder</code>
+ * appended (with <code>$</code> in the names of nested classes replaced by
+ * <code>_</code>) in the same package. Generated binders have a public
+ * constructor that takes the {@link Configurator} that they are used by,
+ * which {@link Configurator} finds and uses in place of inspecting the
+ * class at runtime.
+ *
+ * @param <T> the configured class
+ */
+public interface ConfigBinder<T> {
+
+    /**
+     * Load the settings of an object from a node.
+     *
+     * @param object object to update
+     * @param from node to read from
+     * @throws ConfigurationException thrown if a required setting is missing
+     */
+    void load(T object, ConfigurationNode from) throws ConfigurationException;
+
+    /**
+     * Save the settings of an object to a node.
+     *
+     * @param object object to read
+     * @param to node to save to
+     */
+    void save(T object, ConfigurationNode to);
+
+}
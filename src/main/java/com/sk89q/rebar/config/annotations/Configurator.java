@@ -1,22 +1,39 @@
 package com.sk89q.rebar.config.annotations;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import com.sk89q.rebar.config.Builder;
+import com.sk89q.rebar.config.ConfigPath;
 import com.sk89q.rebar.config.ConfigurationException;
 import com.sk89q.rebar.config.ConfigurationNode;
 import com.sk89q.rebar.config.KeyValueBuilder;
 import com.sk89q.rebar.config.KeyValueLoader;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.MetricsSink;
 import com.sk89q.rebar.util.EmptyIterator;
 
 /**
  * Gets and sets configuration values on an object based on annotations
  * defined on that object.
+ * </p>
+ * The annotations of a class are only inspected the first time that an object
+ * of that class is loaded or saved. The fields, paths and loaders that were
+ * found are remembered, so binding many objects of the same class is cheap.
+ * </p>
+ * If {@link SettingProcessor} was run when a class was compiled, the
+ * {@link ConfigBinder} that it generated for the class is used instead, which
+ * reads and writes the fields directly. Generated binders are not used by
+ * subclasses that override {@link #handleLoad(Field, Object, Setting, Object)}
+ * or {@link #handleSave(ConfigurationNode, String, Setting, Object)}, as those
+ * methods are only called for fields that are bound at runtime.
  *
  * @author sk89q
  */
@@ -27,6 +44,24 @@ public class Configurator {
             new EmptyIterator<Map.Entry<Object, Object>>();
 
     private final Map<Class<?>, Object> instanceCache = new HashMap<Class<?>, Object>();
+    private final Map<Class<?>, Binding[]> bindingCache = new HashMap<Class<?>, Binding[]>();
+    private final Map<Class<?>, ConfigBinder<Object>> binderCache =
+            new HashMap<Class<?>, ConfigBinder<Object>>();
+    private boolean useGeneratedBinders = !overridesHandlers();
+    private volatile MetricsSink metricsSink;
+
+    /**
+     * A binder that is cached for classes with no generated binder.
+     */
+    private static final ConfigBinder<Object> NO_BINDER = new ConfigBinder<Object>() {
+        @Override
+        public void load(Object object, ConfigurationNode from) {
+        }
+
+        @Override
+        public void save(Object object, ConfigurationNode to) {
+        }
+    };
 
     /**
      * Register an instance of an object that will be used for loader/builders.
@@ -35,6 +70,168 @@ public class Configurator {
      */
     public void registerInstance(Object object) {
         instanceCache.put(object.getClass(), object);
+        // Bindings may refer to the instance that was replaced
+        bindingCache.clear();
+        binderCache.clear();
+    }
+
+    /**
+     * Get the instance of a class that was registered with
+     * {@link #registerInstance(Object)} or created for a binding.
+     *
+     * @param clazz the class
+     * @param <T> the type of the instance
+     * @return the instance, or null if there is none
+     */
+    public <T> T getInstance(Class<T> clazz) {
+        return clazz.cast(instanceCache.get(clazz));
+    }
+
+    /**
+     * Set whether the {@link ConfigBinder}s generated by
+     * {@link SettingProcessor} are used. They are used by default, unless
+     * this class is extended to override the methods that handle fields.
+     *
+     * @param use true to use generated binders
+     */
+    public void setUseGeneratedBinders(boolean use) {
+        this.useGeneratedBinders = use;
+    }
+
+    /**
+     * Returns whether generated binders are used.
+     *
+     * @return true if generated binders are used
+     * @see #setUseGeneratedBinders(boolean)
+     */
+    public boolean isUseGeneratedBinders() {
+        return useGeneratedBinders;
+    }
+
+    /**
+     * Set the sink that the time taken to load and save the settings of each
+     * class of object is sent to. Loaders and builders are measured by the
+     * sink of the node that is loaded from or saved to (see
+     * {@link ConfigurationNode#setMetricsSink(MetricsSink)}).
+     *
+     * @param sink the sink, or null to stop measuring
+     */
+    public void setMetricsSink(MetricsSink sink) {
+        this.metricsSink = sink;
+    }
+
+    /**
+     * Get the sink that measurements are sent to.
+     *
+     * @return the sink, or null if nothing is measured
+     * @see #setMetricsSink(MetricsSink)
+     */
+    public MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    /**
+     * Returns whether a subclass overrides the methods that handle fields.
+     *
+     * @return true if the methods are overridden
+     */
+    private boolean overridesHandlers() {
+        for (Class<?> c = getClass(); c != Configurator.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.getName().equals("handleLoad") || method.getName().equals("handleSave")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the generated binder of a class, looking for it the first time.
+     *
+     * @param clazz the class
+     * @return the binder, or null if generated binders are not used or the
+     *         class has none
+     * @throws ConfigurationException thrown if the binder could not be created
+     */
+    private ConfigBinder<Object> getGeneratedBinder(Class<?> clazz) throws ConfigurationException {
+        if (!useGeneratedBinders) {
+            return null;
+        }
+
+        ConfigBinder<Object> binder = binderCache.get(clazz);
+        if (binder == null) {
+            binder = createGeneratedBinder(clazz);
+            binderCache.put(clazz, binder);
+        }
+
+        return binder != NO_BINDER ? binder : null;
+    }
+
+    /**
+     * Create the generated binder of a class.
+     *
+     * @param clazz the class
+     * @return the binder, or {@link #NO_BINDER} if the class has none
+     * @throws ConfigurationException thrown if the binder could not be created
+     */
+    @SuppressWarnings("unchecked")
+    private ConfigBinder<Object> createGeneratedBinder(Class<?> clazz) throws ConfigurationException {
+        Class<?> binderClass;
+        try {
+            binderClass = Class.forName(getBinderName(clazz.getName()),
+                    true, clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return NO_BINDER;
+        }
+
+        if (!ConfigBinder.class.isAssignableFrom(binderClass)) {
+            return NO_BINDER;
+        }
+
+        try {
+            Constructor<?> constructor = binderClass.getConstructor(Configurator.class);
+            return (ConfigBinder<Object>) constructor.newInstance(this);
+        } catch (Throwable t) {
+            throw new ConfigurationException(
+                    "Failed to create the generated binder of class "
+                            + clazz.getCanonicalName(), t);
+        }
+    }
+
+    /**
+     * Get the bindings of the {@link Setting} fields of a class, inspecting
+     * the class if it has not been seen before.
+     *
+     * @param clazz the class
+     * @return the bindings
+     * @throws ConfigurationException thrown if the annotations are invalid
+     */
+    private Binding[] getBindings(Class<?> clazz) throws ConfigurationException {
+        Binding[] bindings = bindingCache.get(clazz);
+        if (bindings != null) {
+            return bindings;
+        }
+
+        List<Binding> found = new ArrayList<Binding>();
+
+        for (Field field : clazz.getFields()) {
+            try {
+                Setting setting = field.getAnnotation(Setting.class);
+                if (setting != null) {
+                    field.setAccessible(true);
+                    found.add(new Binding(field, setting));
+                }
+            } catch (Throwable t) {
+                throw new ConfigurationException(
+                        "Failed to process @Setting annotations of class "
+                                + clazz.getCanonicalName(), t);
+            }
+        }
+
+        bindings = found.toArray(new Binding[found.size()]);
+        bindingCache.put(clazz, bindings);
+        return bindings;
     }
 
     /**
@@ -45,15 +242,35 @@ public class Configurator {
      * @throws ConfigurationException thrown on any error
      */
     public void load(Object object, ConfigurationNode from) throws ConfigurationException {
+        MetricsSink sink = metricsSink;
+        if (sink == null) {
+            loadSettings(object, from);
+            return;
+        }
+
+        long start = System.nanoTime();
+        loadSettings(object, from);
+        sink.bound(object.getClass(), false, System.nanoTime() - start);
+    }
+
+    private void loadSettings(Object object, ConfigurationNode from) throws ConfigurationException {
         Class<?> clazz = object.getClass();
 
-        for (Field field : clazz.getFields()) {
+        ConfigBinder<Object> binder = getGeneratedBinder(clazz);
+        if (binder != null) {
             try {
-                Setting setting = field.getAnnotation(Setting.class);
-                if (setting != null) {
-                    field.setAccessible(true);
-                    loadField(object, clazz, field, setting, from);
-                }
+                binder.load(object, from);
+            } catch (Throwable t) {
+                throw new ConfigurationException(
+                        "Failed to process @Setting annotations of class "
+                                + clazz.getCanonicalName(), t);
+            }
+            return;
+        }
+
+        for (Binding binding : getBindings(clazz)) {
+            try {
+                loadField(object, binding, from);
             } catch (Throwable t) {
                 throw new ConfigurationException(
                         "Failed to process @Setting annotations of class "
@@ -62,17 +279,15 @@ public class Configurator {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void loadField(Object object, Class<?> clazz, Field field, Setting setting,
-            ConfigurationNode node) throws ConfigurationException,
-            IllegalArgumentException, IllegalAccessException, InstantiationException {
+    private void loadField(Object object, Binding binding, ConfigurationNode node)
+            throws ConfigurationException, IllegalArgumentException,
+            IllegalAccessException, InstantiationException {
 
-        String path = getSettingPath(field, setting);
+        Field field = binding.field;
+        Setting setting = binding.setting;
+        ConfigPath path = binding.path;
 
         Object value = node.get(path);
-        CollectionOf collectionOf;
-        KeyValueOf keyValueOf;
-        Of of;
 
         // Check if the setting is required
         if (setting.required() && value == null) {
@@ -94,8 +309,8 @@ public class Configurator {
             Iterator<Map.Entry<Object, Object>> it = value != null ? ((Map<Object, Object>) value).entrySet().iterator() : emptyMap;
             value = keyValueOf(node, path, newInstance(keyValueOf.value()), mapValue, it);*/
         // getOf()
-        } else if ((of = field.getAnnotation(Of.class)) != null) {
-            value = getOf(node, path, of.value());
+        } else if (binding.of != null) {
+            value = getOf(node, path, getLoader(binding));
         }
 
         if (value != null) {
@@ -126,52 +341,67 @@ public class Configurator {
      * @throws ConfigurationException thrown on any error
      */
     public void save(Object object, ConfigurationNode to) throws ConfigurationException {
+        MetricsSink sink = metricsSink;
+        if (sink == null) {
+            saveSettings(object, to);
+            return;
+        }
+
+        long start = System.nanoTime();
+        saveSettings(object, to);
+        sink.bound(object.getClass(), true, System.nanoTime() - start);
+    }
+
+    private void saveSettings(Object object, ConfigurationNode to) throws ConfigurationException {
         Class<?> clazz = object.getClass();
 
-        for (Field field : clazz.getFields()) {
+        ConfigBinder<Object> binder = getGeneratedBinder(clazz);
+        if (binder != null) {
             try {
-                Setting setting = field.getAnnotation(Setting.class);
-                if (setting != null) {
-                    field.setAccessible(true);
-                    saveField(object, clazz, field, setting, to);
-                }
+                binder.save(object, to);
             } catch (Throwable t) {
                 throw new ConfigurationException(
                         "Failed to process @Setting annotations of class "
                                 + clazz.getCanonicalName(), t);
             }
+            return;
         }
-    }
 
-    private void saveField(Object object, Class<?> clazz, Field field, Setting setting,
-            ConfigurationNode node) throws ConfigurationException,
-            IllegalArgumentException, IllegalAccessException, InstantiationException {
+        for (Binding binding : getBindings(clazz)) {
+            try {
+                saveField(object, binding, to);
+            } catch (Throwable t) {
+                throw new ConfigurationException(
+                        "Failed to process @Setting annotations of class "
+                                + clazz.getCanonicalName(), t);
+            }
+        }
+    }
 
-        String path = getSettingPath(field, setting);
-        Object value = field.get(object);
+    private void saveField(Object object, Binding binding, ConfigurationNode node)
+            throws ConfigurationException, IllegalArgumentException,
+            IllegalAccessException, InstantiationException {
 
-        CollectionOf collectionOf;
-        KeyValueOf keyValueOf;
-        Of of;
+        ConfigPath path = binding.path;
+        Object value = binding.field.get(object);
 
         if (value == null) {
-            field.set(object, null);
             return;
         }
 
-        if (handleSave(node, path, setting, value) == true) {
+        if (handleSave(node, binding.pathName, binding.setting, value) == true) {
             return;
         // collectionOf()
-        } else if ((collectionOf = field.getAnnotation(CollectionOf.class)) != null) {
-            setCollectionOf(node, path, newInstance(collectionOf.value()), (Collection<?>) value);
+        } else if (binding.collectionOf != null) {
+            setCollectionOf(node, path, getAgent(binding), (Collection<?>) value);
         // keyValueOf()
-        } else if ((keyValueOf = field.getAnnotation(KeyValueOf.class)) != null) {
-            setKeyValueOf(node, path, newInstance(keyValueOf.value()), (Map<?, ?>) value);
+        } else if (binding.keyValueOf != null) {
+            setKeyValueOf(node, path, getAgent(binding), (Map<?, ?>) value);
         // getOf()
-        } else if ((of = field.getAnnotation(Of.class)) != null) {
-            set(node, path, newInstance(of.value()), value);
+        } else if (binding.of != null) {
+            set(node, path, getAgent(binding), value);
         } else {
-            field.set(object, value);
+            node.set(path, value);
         }
     }
 
@@ -218,6 +448,20 @@ public class Configurator {
         return result.toString();
     }
 
+    /**
+     * Get the name of the {@link ConfigBinder} that {@link SettingProcessor}
+     * generates for a class (i.e. from com.example.Outer$Inner to
+     * com.example.Outer_Inner_ConfigBinder).
+     *
+     * @param className binary name of the class
+     * @return binary name of the binder
+     */
+    public static String getBinderName(String className) {
+        int index = className.lastIndexOf('.');
+        return className.substring(0, index + 1)
+                + className.substring(index + 1).replace('$', '_') + "_ConfigBinder";
+    }
+
     /**
      * Get the name of the setting from a field and {@link Setting}.
      *
@@ -247,6 +491,41 @@ public class Configurator {
         return getSettingPath(field, setting);
     }
 
+    /**
+     * Get the loader of a binding's {@link Of} annotation, creating it the
+     * first time.
+     *
+     * @param binding the binding
+     * @return the loader
+     * @throws InstantiationException on instantiation error
+     * @throws IllegalAccessException on instantiation error
+     */
+    private Object getLoader(Binding binding) throws InstantiationException, IllegalAccessException {
+        Object loader = binding.loader;
+        if (loader == null) {
+            loader = newInstance(binding.of.value());
+            binding.loader = loader;
+        }
+        return loader;
+    }
+
+    /**
+     * Get the builder of a binding, creating it the first time.
+     *
+     * @param binding the binding
+     * @return the builder
+     * @throws InstantiationException on instantiation error
+     * @throws IllegalAccessException on instantiation error
+     */
+    private Object getAgent(Binding binding) throws InstantiationException, IllegalAccessException {
+        Object agent = binding.agent;
+        if (agent == null) {
+            agent = newInstance(binding.agentClass);
+            binding.agent = agent;
+        }
+        return agent;
+    }
+
     private Object newInstance(Class<?> clazz) throws InstantiationException, IllegalAccessException {
         Object instance = instanceCache.get(clazz);
         if (instance != null) {
@@ -260,37 +539,73 @@ public class Configurator {
 
     @SuppressWarnings("unchecked")
     private static <V, K extends Collection<V>, E extends Loader<V> & Builder<V>> K collectionOf(
-            ConfigurationNode node, String path, Object agent, K collection, Iterator<V> def) {
+            ConfigurationNode node, ConfigPath path, Object agent, K collection, Iterator<V> def) {
         return node.collectionOf(path, (E) agent, collection, def);
     }
 
     @SuppressWarnings("unchecked")
     private static <K, V, E extends KeyValueLoader<K, V> & KeyValueBuilder<K, V>> Map<K, V> keyValueOf(
-            ConfigurationNode node, String path, Object agent, Map<K, V> map, Iterator<Map.Entry<K, V>> def) {
+            ConfigurationNode node, ConfigPath path, Object agent, Map<K, V> map, Iterator<Map.Entry<K, V>> def) {
         return node.keyValueOf(path, (E) agent, map, def);
     }
 
     @SuppressWarnings("unchecked")
-    private static <V> V getOf(ConfigurationNode node, String path, Object loader) {
+    private static <V> V getOf(ConfigurationNode node, ConfigPath path, Object loader) {
         return node.getOf(path, (Loader<V>) loader);
     }
 
     @SuppressWarnings("unchecked")
-    private static <V> void setCollectionOf(ConfigurationNode node, String path,
+    private static <V> void setCollectionOf(ConfigurationNode node, ConfigPath path,
             Object builder, Collection<?> list) {
         node.setCollectionOf(path, (Builder<V>) builder, (Collection<V>) list);
     }
 
     @SuppressWarnings("unchecked")
-    private static <K, V> void setKeyValueOf(ConfigurationNode node, String path,
+    private static <K, V> void setKeyValueOf(ConfigurationNode node, ConfigPath path,
             Object builder, Map<?, ?> list) {
         node.setKeyValueOf(path, (KeyValueBuilder<K, V>) builder, (Map<K, V>) list);
     }
 
     @SuppressWarnings("unchecked")
-    private static <V> void set(ConfigurationNode node, String path,
+    private static <V> void set(ConfigurationNode node, ConfigPath path,
             Object builder, Object value) {
         node.set(path, (V) value, (Builder<V>) builder);
     }
 
+    /**
+     * The resolved annotations of a {@link Setting} field.
+     */
+    private static final class Binding {
+        private final Field field;
+        private final Setting setting;
+        private final String pathName;
+        private final ConfigPath path;
+        private final Of of;
+        private final CollectionOf collectionOf;
+        private final KeyValueOf keyValueOf;
+        private final Class<?> agentClass;
+        private Object loader;
+        private Object agent;
+
+        private Binding(Field field, Setting setting) {
+            this.field = field;
+            this.setting = setting;
+            this.pathName = getSettingPath(field, setting);
+            this.path = ConfigPath.of(pathName);
+            this.of = field.getAnnotation(Of.class);
+            this.collectionOf = field.getAnnotation(CollectionOf.class);
+            this.keyValueOf = field.getAnnotation(KeyValueOf.class);
+
+            if (collectionOf != null) {
+                agentClass = collectionOf.value();
+            } else if (keyValueOf != null) {
+                agentClass = keyValueOf.value();
+            } else if (of != null) {
+                agentClass = of.value();
+            } else {
+                agentClass = null;
+            }
+        }
+    }
+
 }
@@ -1,10 +1,17 @@
 package com.sk89q.rebar.config.annotations;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
 /**
  * A parameter to be loaded or saved.
  * 
  * @author sk89q
  */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
 public @interface Setting {
 
     /**
@@ -0,0 +1,622 @@
+package com.sk89q.rebar.config.annotations;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@link ConfigBinder} at compile time for each class that
+ * declares {@link Setting} fields, so that {@link Configurator} can load and
+ * save objects of the class without reflection.
+ * </p>
+ * The generated binders behave in the same way as {@link Configurator} does
+ * at runtime: {@link Of} loaders are used when loading, {@link CollectionOf},
+ * {@link KeyValueOf} and {@link Of} builders are used when saving, and other
+ * values are assigned and saved as they are. Values loaded into primitive
+ * fields are unboxed and widened in the same way as reflection does, and
+ * values that reflection would reject, such as a <code>Double</code> for an
+ * <code>int</code> field, fail to load in the same way. Only public fields
+ * are bound, including those inherited from superclasses.
+ * </p>
+ * Classes that cannot be bound without reflection, such as private nested
+ * classes, classes with final {@link Setting} fields or classes with loaders
+ * that have no public no-argument constructor, are reported with a warning
+ * and left to be bound at runtime.
+ * </p>
+ * The processor is not registered as a service, so it does not run just
+ * because Rebar is on the class path of the compiler. It has to be named
+ * explicitly, with <code>-processor
+ * com.sk89q.rebar.config.annotations.SettingProcessor</code> given to
+ * <code>javac</code> or in the <code>annotationProcessors</code> setting of
+ * the Maven compiler plugin.
+ */
+@SupportedAnnotationTypes("com.sk89q.rebar.config.annotations.Setting")
+public class SettingProcessor extends AbstractProcessor {
+
+    /**
+     * The primitive types that a value of each primitive type can be widened
+     * to, as in JLS 5.1.2, including the type itself.
+     */
+    private static final Map<TypeKind, Set<TypeKind>> WIDENING =
+            new EnumMap<TypeKind, Set<TypeKind>>(TypeKind.class);
+
+    static {
+        WIDENING.put(TypeKind.BOOLEAN, EnumSet.of(TypeKind.BOOLEAN));
+        WIDENING.put(TypeKind.BYTE, EnumSet.of(TypeKind.BYTE, TypeKind.SHORT, TypeKind.INT,
+                TypeKind.LONG, TypeKind.FLOAT, TypeKind.DOUBLE));
+        WIDENING.put(TypeKind.SHORT, EnumSet.of(TypeKind.SHORT, TypeKind.INT,
+                TypeKind.LONG, TypeKind.FLOAT, TypeKind.DOUBLE));
+        WIDENING.put(TypeKind.CHAR, EnumSet.of(TypeKind.CHAR, TypeKind.INT,
+                TypeKind.LONG, TypeKind.FLOAT, TypeKind.DOUBLE));
+        WIDENING.put(TypeKind.INT, EnumSet.of(TypeKind.INT, TypeKind.LONG, TypeKind.FLOAT, TypeKind.DOUBLE));
+        WIDENING.put(TypeKind.LONG, EnumSet.of(TypeKind.LONG, TypeKind.FLOAT, TypeKind.DOUBLE));
+        WIDENING.put(TypeKind.FLOAT, EnumSet.of(TypeKind.FLOAT, TypeKind.DOUBLE));
+        WIDENING.put(TypeKind.DOUBLE, EnumSet.of(TypeKind.DOUBLE));
+    }
+
+    private static final String CONFIG_PATH = "com.sk89q.rebar.config.ConfigPath";
+    private static final String CONFIGURATION_NODE = "com.sk89q.rebar.config.ConfigurationNode";
+    private static final String CONFIGURATION_EXCEPTION = "com.sk89q.rebar.config.ConfigurationException";
+    private static final String LOADER = "com.sk89q.rebar.config.Loader";
+    private static final String BUILDER = "com.sk89q.rebar.config.Builder";
+    private static final String KEY_VALUE_BUILDER = "com.sk89q.rebar.config.KeyValueBuilder";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(Setting.class)) {
+            if (element.getKind() == ElementKind.FIELD) {
+                types.add((TypeElement) element.getEnclosingElement());
+            }
+        }
+
+        for (TypeElement type : types) {
+            try {
+                generate(type);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write the binder of " + type.getQualifiedName() + ": " + e.getMessage(), type);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Generate the binder of a class, unless it has to be bound at runtime.
+     *
+     * @param type the class
+     * @throws IOException on I/O error
+     */
+    private void generate(TypeElement type) throws IOException {
+        Messager messager = processingEnv.getMessager();
+        String packageName = getPackage(type).getQualifiedName().toString();
+
+        if (!isAccessible(type, packageName)) {
+            messager.printMessage(Diagnostic.Kind.WARNING,
+                    "@Setting fields of this class will be bound with reflection, as it is not accessible from its package",
+                    type);
+            return;
+        }
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getAnnotation(Setting.class) != null && !field.getModifiers().contains(Modifier.PUBLIC)) {
+                messager.printMessage(Diagnostic.Kind.WARNING,
+                        "@Setting is ignored on fields that are not public", field);
+            }
+        }
+
+        List<Field> fields = new ArrayList<Field>();
+        Map<String, String> instances = new LinkedHashMap<String, String>();
+
+        for (TypeElement owner = type; owner != null; owner = getSuperclass(owner)) {
+            for (VariableElement element : ElementFilter.fieldsIn(owner.getEnclosedElements())) {
+                Setting setting = element.getAnnotation(Setting.class);
+                if (setting == null || !element.getModifiers().contains(Modifier.PUBLIC)) {
+                    continue;
+                }
+
+                if (!isAccessible(owner, packageName)) {
+                    messager.printMessage(Diagnostic.Kind.WARNING,
+                            "@Setting fields of this class will be bound with reflection, as "
+                                    + owner.getQualifiedName() + " is not accessible from its package",
+                            type);
+                    return;
+                }
+
+                if (element.getModifiers().contains(Modifier.FINAL)) {
+                    messager.printMessage(Diagnostic.Kind.WARNING,
+                            "@Setting fields of this class will be bound with reflection, as "
+                                    + element.getSimpleName() + " is final",
+                            element);
+                    return;
+                }
+
+                Field field = new Field(owner, element, setting);
+
+                TypeMirror loader = getClassValue(element, Of.class, "value");
+                TypeMirror agent = getClassValue(element, CollectionOf.class, "value");
+                field.kind = CollectionOf.class;
+                if (agent == null) {
+                    agent = getClassValue(element, KeyValueOf.class, "value");
+                    field.kind = KeyValueOf.class;
+                }
+                if (agent == null) {
+                    agent = loader;
+                    field.kind = Of.class;
+                }
+                if (agent == null) {
+                    field.kind = null;
+                }
+
+                if (loader != null) {
+                    field.loader = getInstance(instances, loader, packageName, element);
+                    if (field.loader == null) {
+                        return;
+                    }
+                }
+                if (agent != null) {
+                    field.agent = getInstance(instances, agent, packageName, element);
+                    if (field.agent == null) {
+                        return;
+                    }
+                }
+
+                fields.add(field);
+            }
+        }
+
+        write(type, packageName, fields, instances);
+    }
+
+    /**
+     * Write the source of a binder.
+     *
+     * @param type the class
+     * @param packageName the package of the class
+     * @param fields the fields to bind
+     * @param instances names of the loader and builder fields by class
+     * @throws IOException on I/O error
+     */
+    private void write(TypeElement type, String packageName, List<Field> fields,
+            Map<String, String> instances) throws IOException {
+        String binderName = Configurator.getBinderName(
+                processingEnv.getElementUtils().getBinaryName(type).toString());
+        String simpleName = binderName.substring(binderName.lastIndexOf('.') + 1);
+        String typeName = getSourceName(type.asType());
+
+        Writer writer = processingEnv.getFiler().createSourceFile(binderName, type).openWriter();
+        PrintWriter out = new PrintWriter(writer);
+
+        try {
+            if (packageName.length() > 0) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Binds the settings of {@link " + typeName + "}.");
+            out.println(" * Generated by " + getClass().getName() + "; do not edit.");
+            out.println(" */");
+            out.println("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+            out.println("public final class " + simpleName
+                    + " implements com.sk89q.rebar.config.annotations.ConfigBinder<" + typeName + "> {");
+            out.println();
+
+            for (int i = 0; i < fields.size(); i++) {
+                out.println("    private static final " + CONFIG_PATH + " PATH_" + i + " = "
+                        + CONFIG_PATH + ".of(" + quote(fields.get(i).path) + ");");
+            }
+            for (Map.Entry<String, String> entry : instances.entrySet()) {
+                out.println("    private final " + entry.getKey() + " " + entry.getValue() + ";");
+            }
+            out.println();
+
+            out.println("    public " + simpleName + "(" + Configurator.class.getName() + " configurator) {");
+            for (Map.Entry<String, String> entry : instances.entrySet()) {
+                String name = entry.getValue();
+                out.println("        " + entry.getKey() + " " + name + " = configurator.getInstance("
+                        + entry.getKey() + ".class);");
+                out.println("        this." + name + " = " + name + " != null ? " + name
+                        + " : new " + entry.getKey() + "();");
+            }
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public void load(" + typeName + " object, " + CONFIGURATION_NODE + " from) throws "
+                    + CONFIGURATION_EXCEPTION + " {");
+            out.println("        Object value;");
+            Set<TypeKind> primitives = EnumSet.noneOf(TypeKind.class);
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                TypeMirror fieldType = field.element.asType();
+                if (fieldType.getKind().isPrimitive()) {
+                    primitives.add(fieldType.getKind());
+                }
+                out.println();
+                out.println("        value = from.get(PATH_" + i + ");");
+                if (field.setting.required()) {
+                    out.println("        if (value == null) {");
+                    out.println("            throw new " + CONFIGURATION_EXCEPTION
+                            + "(\"Required field '\" + PATH_" + i + " + \"' not defined\");");
+                    out.println("        }");
+                }
+                if (field.loader != null) {
+                    out.println("        value = from.getOf(PATH_" + i + ", (" + LOADER + ") " + field.loader + ");");
+                }
+                out.println("        if (value != null) {");
+                out.println("            " + getAccess(type, field) + " = " + convert(fieldType) + ";");
+                out.println("        }");
+            }
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public void save(" + typeName + " object, " + CONFIGURATION_NODE + " to) {");
+            out.println("        Object value;");
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                String path = "PATH_" + i;
+                out.println();
+                out.println("        value = " + getAccess(type, field) + ";");
+                out.println("        if (value != null) {");
+                if (field.kind == CollectionOf.class) {
+                    out.println("            to.setCollectionOf(" + path + ", (" + BUILDER + ") " + field.agent
+                            + ", (java.util.Collection) value);");
+                } else if (field.kind == KeyValueOf.class) {
+                    out.println("            to.setKeyValueOf(" + path + ", (" + KEY_VALUE_BUILDER + ") "
+                            + field.agent + ", (java.util.Map) value);");
+                } else if (field.kind == Of.class) {
+                    out.println("            to.set(" + path + ", value, (" + BUILDER + ") " + field.agent + ");");
+                } else {
+                    out.println("            to.set(" + path + ", value);");
+                }
+                out.println("        }");
+            }
+            out.println("    }");
+            out.println();
+
+            for (TypeKind kind : primitives) {
+                writeConversion(out, kind);
+            }
+
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Get the name of the field that holds the loader or builder of a class,
+     * adding it if this is the first time that the class is used.
+     *
+     * @param instances names of the fields by class
+     * @param type the class
+     * @param packageName the package of the binder
+     * @param element the field that the class is used for
+     * @return the name, or null if the class cannot be created by the binder
+     */
+    private String getInstance(Map<String, String> instances, TypeMirror type,
+            String packageName, Element element) {
+        String name = getSourceName(type);
+        String field = instances.get(name);
+        if (field != null) {
+            return field;
+        }
+
+        if (!canCreate(type, packageName)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "@Setting fields of this class will be bound with reflection, as " + name
+                            + " does not have a public no-argument constructor",
+                    element);
+            return null;
+        }
+
+        field = "instance" + instances.size();
+        instances.put(name, field);
+        return field;
+    }
+
+    /**
+     * Returns whether a binder can create an object of a class with
+     * <code>new</code>.
+     *
+     * @param type the class
+     * @param packageName the package of the binder
+     * @return true if the class can be created
+     */
+    private boolean canCreate(TypeMirror type, String packageName) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() != ElementKind.CLASS
+                || element.getModifiers().contains(Modifier.ABSTRACT)
+                || (element.getNestingKind() == NestingKind.MEMBER
+                        && !element.getModifiers().contains(Modifier.STATIC))
+                || !isAccessible(element, packageName)) {
+            return false;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether a class and the classes that it is nested in can be
+     * referred to from a package.
+     *
+     * @param type the class
+     * @param packageName the package
+     * @return true if the class is accessible
+     */
+    private boolean isAccessible(TypeElement type, String packageName) {
+        boolean samePackage = getPackage(type).getQualifiedName().contentEquals(packageName);
+
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            TypeElement enclosing = (TypeElement) element;
+            Set<Modifier> modifiers = enclosing.getModifiers();
+
+            if (enclosing.getNestingKind() == NestingKind.LOCAL
+                    || enclosing.getNestingKind() == NestingKind.ANONYMOUS
+                    || modifiers.contains(Modifier.PRIVATE)
+                    || (!samePackage && !modifiers.contains(Modifier.PUBLIC))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the superclass of a class.
+     *
+     * @param type the class
+     * @return the superclass, or null if the class has none
+     */
+    private static TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    /**
+     * Get the package of an element.
+     *
+     * @param element the element
+     * @return the package
+     */
+    private PackageElement getPackage(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    /**
+     * Get the value of a member of type {@link Class} of an annotation on an
+     * element. The annotation's own methods cannot be used for this, as the
+     * classes are not loaded while compiling.
+     *
+     * @param element the element
+     * @param annotation the annotation class
+     * @param member the name of the member
+     * @return the class, or null if the annotation is not present
+     */
+    private TypeMirror getClassValue(Element element, Class<?> annotation, String member) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (!annotationType.getQualifiedName().contentEquals(annotation.getName())) {
+                continue;
+            }
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals(member)) {
+                    return (TypeMirror) entry.getValue().getValue();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the name of the erasure of a type for use in source code.
+     *
+     * @param type the type
+     * @return the name
+     */
+    private String getSourceName(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /**
+     * Get the expression that refers to a field of the object being bound.
+     *
+     * @param type the class being bound
+     * @param field the field
+     * @return the expression
+     */
+    private String getAccess(TypeElement type, Field field) {
+        String name = field.element.getSimpleName().toString();
+        if (field.owner.equals(type)) {
+            return "object." + name;
+        } else {
+            // Cast in case that the field is hidden by one in a subclass
+            return "((" + getSourceName(field.owner.asType()) + ") object)." + name;
+        }
+    }
+
+    /**
+     * Get the expression that converts <code>value</code> to the type of a
+     * field.
+     *
+     * @param type the type of the field
+     * @return the expression
+     */
+    private String convert(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return getConversionName(type.getKind()) + "(value)";
+        } else {
+            return "(" + getSourceName(type) + ") value";
+        }
+    }
+
+    /**
+     * Write the method that converts a value to a primitive type. Like
+     * reflection, it accepts the boxed values that can be unboxed and
+     * widened to the type, and throws an
+     * {@link IllegalArgumentException} for any other value.
+     *
+     * @param out the writer
+     * @param kind the primitive type
+     */
+    private static void writeConversion(PrintWriter out, TypeKind kind) {
+        String name = getPrimitiveName(kind);
+        out.println("    private static " + name + " " + getConversionName(kind) + "(Object value) {");
+        String keyword = "if";
+        for (Map.Entry<TypeKind, Set<TypeKind>> entry : WIDENING.entrySet()) {
+            if (entry.getValue().contains(kind)) {
+                String box = getBoxName(entry.getKey());
+                out.println("        " + keyword + " (value instanceof " + box + ") {");
+                out.println("            return ((" + box + ") value)." + getPrimitiveName(entry.getKey())
+                        + "Value();");
+                keyword = "} else if";
+            }
+        }
+        out.println("        }");
+        out.println("        throw new IllegalArgumentException(\"Can not set " + name
+                + " field to \" + value.getClass().getName());");
+        out.println("    }");
+        out.println();
+    }
+
+    /**
+     * Get the name of the generated method that converts a value to a
+     * primitive type.
+     *
+     * @param kind the primitive type
+     * @return the name
+     */
+    private static String getConversionName(TypeKind kind) {
+        String name = getPrimitiveName(kind);
+        return "to" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Get the keyword of a primitive type.
+     *
+     * @param kind the primitive type
+     * @return the keyword
+     */
+    private static String getPrimitiveName(TypeKind kind) {
+        return kind.name().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Get the name of the class that boxes a primitive type.
+     *
+     * @param kind the primitive type
+     * @return the name
+     */
+    private static String getBoxName(TypeKind kind) {
+        switch (kind) {
+            case INT:
+                return "java.lang.Integer";
+            case CHAR:
+                return "java.lang.Character";
+            default:
+                String name = getPrimitiveName(kind);
+                return "java.lang." + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+    }
+
+    /**
+     * Quote a string as a Java string literal.
+     *
+     * @param value the string
+     * @return the literal
+     */
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7E) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+        return builder.toString();
+    }
+
+    /**
+     * A {@link Setting} field to bind.
+     */
+    private static final class Field {
+        private final TypeElement owner;
+        private final VariableElement element;
+        private final Setting setting;
+        private final String path;
+        private Class<?> kind;
+        private String loader;
+        private String agent;
+
+        private Field(TypeElement owner, VariableElement element, Setting setting) {
+            this.owner = owner;
+            this.element = element;
+            this.setting = setting;
+
+            String name = setting.value();
+            this.path = name.length() > 0 ? name : Configurator.transformFieldName(element.getSimpleName().toString());
+        }
+    }
+
+}
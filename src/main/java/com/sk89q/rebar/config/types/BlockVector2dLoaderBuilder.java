@@ -3,10 +3,11 @@ package com.sk89q.rebar.config.types;
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.ConfigurationNode;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 import com.sk89q.rebar.util.MapBuilder.ObjectMapBuilder;
 import com.sk89q.worldedit.BlockVector2D;
 
-public class BlockVector2dLoaderBuilder implements Loader<BlockVector2D>, Builder<BlockVector2D> {
+public class BlockVector2dLoaderBuilder implements Loader<BlockVector2D>, Builder<BlockVector2D>, ThreadSafeLoader {
 
     @Override
     public Object write(BlockVector2D value) {
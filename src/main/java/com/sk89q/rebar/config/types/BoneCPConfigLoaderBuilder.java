@@ -5,9 +5,10 @@ import com.sk89q.rebar.config.AbstractNodeLoader;
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.ConfigurationNode;
 import com.sk89q.rebar.config.LoaderBuilderException;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
 public class BoneCPConfigLoaderBuilder extends AbstractNodeLoader<BoneCPConfig>
-        implements Builder<BoneCPConfig> {
+        implements Builder<BoneCPConfig>, ThreadSafeLoader {
 
     @Override
     public Object write(BoneCPConfig config) throws LoaderBuilderException {
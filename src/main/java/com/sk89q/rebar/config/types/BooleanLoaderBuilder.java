@@ -2,8 +2,9 @@ package com.sk89q.rebar.config.types;
 
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class BooleanLoaderBuilder implements Loader<Boolean>, Builder<Boolean> {
+public class BooleanLoaderBuilder implements Loader<Boolean>, Builder<Boolean>, ThreadSafeLoader {
 
     @Override
     public Object write(Boolean value) {
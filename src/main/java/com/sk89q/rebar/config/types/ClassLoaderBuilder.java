@@ -4,8 +4,9 @@ import java.util.logging.Logger;
 
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class ClassLoaderBuilder implements Loader<Class<?>>, Builder<Class<?>> {
+public class ClassLoaderBuilder implements Loader<Class<?>>, Builder<Class<?>>, ThreadSafeLoader {
 
     private Logger logger = Logger.getLogger(ClassLoaderBuilder.class.getCanonicalName());
 
@@ -2,8 +2,9 @@ package com.sk89q.rebar.config.types;
 
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class DoubleLoaderBuilder implements Loader<Double>, Builder<Double> {
+public class DoubleLoaderBuilder implements Loader<Double>, Builder<Double>, ThreadSafeLoader {
 
     @Override
     public Object write(Double value) {
@@ -1,44 +1,45 @@
 package com.sk89q.rebar.config.types;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
 import com.sk89q.rebar.config.LoaderBuilderException;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class EnumLoaderBuilder<T extends Enum<T>> implements Loader<T>, Builder<T> {
+public class EnumLoaderBuilder<T extends Enum<T>> implements Loader<T>, Builder<T>, ThreadSafeLoader {
 
     private final Class<T> enumType;
+    private final NameTable<T> table;
 
     public EnumLoaderBuilder(Class<T> enumType) {
         this.enumType = enumType;
+        this.table = new NameTable<T>(enumType);
     }
 
     @Override
     public T read(Object value) {
         String stringValue = String.valueOf(value);
 
-        try {
-            return Enum.valueOf(enumType, stringValue);
-        } catch (IllegalArgumentException e) {
+        T object = table.exact.get(stringValue);
+        if (object != null) {
+            return object;
         }
 
-        try {
-            return Enum.valueOf(enumType, stringValue.toUpperCase());
-        } catch (IllegalArgumentException e) {
+        object = table.exact.get(stringValue.toUpperCase(Locale.ENGLISH));
+        if (object != null) {
+            return object;
         }
 
-        try {
-            String normalized = normalize(stringValue);
-
-            for (T object : enumType.getEnumConstants()) {
-                if (normalize(object.name()).equalsIgnoreCase(normalized)) {
-                    return object;
-                }
-            }
-            return Enum.valueOf(enumType, stringValue.toUpperCase());
-        } catch (IllegalArgumentException e) {
-            throw new LoaderBuilderException("EnumLoaderBuilder: Could not find '" + stringValue + "' in " +
-                    enumType.getCanonicalName());
+        object = table.normalized.get(normalize(stringValue));
+        if (object != null) {
+            return object;
         }
+
+        throw new LoaderBuilderException("EnumLoaderBuilder: Could not find '" + stringValue + "' in " +
+                enumType.getCanonicalName());
     }
 
     @Override
@@ -47,7 +48,30 @@ public class EnumLoaderBuilder<T extends Enum<T>> implements Loader<T>, Builder<
     }
 
     private static String normalize(String str) {
-        return str.replace("_", "");
+        return str.replace("_", "").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The constants of an enum by name, and by their normalized name. Each
+     * loader builds its own table rather than sharing one, so that enums
+     * loaded by plugins can be unloaded along with their loaders.
+     */
+    private static class NameTable<T extends Enum<T>> {
+
+        private final Map<String, T> exact = new HashMap<String, T>();
+        private final Map<String, T> normalized = new HashMap<String, T>();
+
+        private NameTable(Class<T> enumType) {
+            for (T object : enumType.getEnumConstants()) {
+                exact.put(object.name(), object);
+
+                String key = normalize(object.name());
+                if (!normalized.containsKey(key)) {
+                    normalized.put(key, object);
+                }
+            }
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -2,8 +2,9 @@ package com.sk89q.rebar.config.types;
 
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class FloatLoaderBuilder implements Loader<Float>, Builder<Float> {
+public class FloatLoaderBuilder implements Loader<Float>, Builder<Float>, ThreadSafeLoader {
 
     @Override
     public Object write(Float value) {
@@ -21,7 +22,7 @@ public class FloatLoaderBuilder implements Loader<Float>, Builder<Float> {
         } else if (o instanceof Float) {
             return (Float)o;
         } else if (o instanceof Double) {
-            return (Float)o;
+            return (float)(double)(Double)o;
         } else if (o instanceof Byte) {
             return (float)(Byte)o;
         } else if (o instanceof Integer) {
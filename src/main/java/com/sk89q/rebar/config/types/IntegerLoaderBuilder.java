@@ -2,8 +2,9 @@ package com.sk89q.rebar.config.types;
 
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class IntegerLoaderBuilder implements Loader<Integer>, Builder<Integer> {
+public class IntegerLoaderBuilder implements Loader<Integer>, Builder<Integer>, ThreadSafeLoader {
 
     @Override
     public Object write(Integer value) {
@@ -1,5 +1,11 @@
 package com.sk89q.rebar.config.types;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.bukkit.Location;
@@ -7,9 +13,9 @@ import org.bukkit.Server;
 import org.bukkit.World;
 
 import com.sk89q.rebar.config.Builder;
-import com.sk89q.rebar.config.ConfigurationNode;
 import com.sk89q.rebar.config.Loader;
 import com.sk89q.rebar.util.MapBuilder.ObjectMapBuilder;
+import com.sk89q.rebar.util.PackedLocations;
 
 public class LocationLoaderBuilder implements Loader<Location>, Builder<Location> {
 
@@ -33,7 +39,7 @@ public class LocationLoaderBuilder implements Loader<Location>, Builder<Location
     public Object write(Location value) {
         ObjectMapBuilder builder = new ObjectMapBuilder();
 
-        if (defaultWorld != null) {
+        if (defaultWorld == null) {
             builder.put("world", value.getWorld().getName());
 
             if (precisionWorld) {
@@ -51,36 +57,160 @@ public class LocationLoaderBuilder implements Loader<Location>, Builder<Location
 
     @Override
     public Location read(Object value) {
-        ConfigurationNode node = new ConfigurationNode(value);
-        Double x = node.getDouble("x");
-        Double y = node.getDouble("y");
-        Double z = node.getDouble("z");
+        if (!(value instanceof Map<?, ?>)) {
+            return null;
+        }
+
+        Map<?, ?> map = (Map<?, ?>) value;
+        Object x = map.get("x");
+        Object y = map.get("y");
+        Object z = map.get("z");
+
+        if (!isCoordinate(x) || !isCoordinate(y) || !isCoordinate(z)) {
+            return null;
+        }
 
-        if (x == null || y == null || z == null) {
+        World world = getWorld(map, null);
+        if (world == null) {
             return null;
         }
 
-        World world = null;
+        return new Location(world, ((Number) x).doubleValue(),
+                ((Number) y).doubleValue(), ((Number) z).doubleValue());
+    }
+
+    /**
+     * Read a list of locations. Each distinct world is only looked up once,
+     * which is much faster than reading the locations one at a time when
+     * there are many of them. Values that are not valid locations are
+     * skipped.
+     *
+     * @param values the values
+     * @return a list of locations
+     */
+    public List<Location> readAll(Collection<?> values) {
+        PackedLocations packed = readPacked(values);
+        List<Location> locations = new ArrayList<Location>(packed.size());
+        for (int i = 0; i < packed.size(); i++) {
+            locations.add(packed.getLocation(i));
+        }
+        return locations;
+    }
+
+    /**
+     * Read a list of locations into a {@link PackedLocations}, without
+     * creating a {@link Location} for each of them. Each distinct world is
+     * only looked up once. Values that are not valid locations are skipped.
+     *
+     * @param values the values
+     * @return the locations
+     */
+    public PackedLocations readPacked(Collection<?> values) {
+        Map<Object, World> worldCache = new HashMap<Object, World>();
+        Map<World, Integer> worldIndexes = new HashMap<World, Integer>();
+        List<World> worlds = new ArrayList<World>();
+        int[] indexes = new int[values.size()];
+        double[] coordinates = new double[values.size() * 3];
+        int size = 0;
+
+        for (Object value : values) {
+            if (!(value instanceof Map<?, ?>)) {
+                continue;
+            }
+
+            Map<?, ?> map = (Map<?, ?>) value;
+            Object x = map.get("x");
+            Object y = map.get("y");
+            Object z = map.get("z");
 
+            if (!isCoordinate(x) || !isCoordinate(y) || !isCoordinate(z)) {
+                continue;
+            }
+
+            World world = getWorld(map, worldCache);
+            if (world == null) {
+                continue;
+            }
+
+            Integer worldIndex = worldIndexes.get(world);
+            if (worldIndex == null) {
+                worldIndex = worlds.size();
+                worldIndexes.put(world, worldIndex);
+                worlds.add(world);
+            }
+
+            int offset = size * 3;
+            coordinates[offset] = ((Number) x).doubleValue();
+            coordinates[offset + 1] = ((Number) y).doubleValue();
+            coordinates[offset + 2] = ((Number) z).doubleValue();
+            indexes[size] = worldIndex;
+            size++;
+        }
+
+        if (size < indexes.length) {
+            indexes = Arrays.copyOf(indexes, size);
+            coordinates = Arrays.copyOf(coordinates, size * 3);
+        }
+
+        return new PackedLocations(worlds.toArray(new World[worlds.size()]),
+                indexes, coordinates, size);
+    }
+
+    /**
+     * Get the world of a location.
+     *
+     * @param map the location
+     * @param worldCache worlds that have already been looked up by name or
+     *            UUID, or null to always look up the world
+     * @return the world, or null if it is not loaded
+     */
+    private World getWorld(Map<?, ?> map, Map<Object, World> worldCache) {
         if (defaultWorld != null) {
-            world = defaultWorld;
+            return defaultWorld;
+        }
+
+        Long leastSigBits = LongLoaderBuilder.valueOf(map.get("world-uuid-least"));
+        Long mostSigBits = LongLoaderBuilder.valueOf(map.get("world-uuid-most"));
+        Object key;
+
+        if (leastSigBits != null && mostSigBits != null) {
+            key = new UUID(mostSigBits, leastSigBits);
         } else {
-            String worldName = node.getString("world");
-            Long leastSigBits = node.getLong("world-uuid-least");
-            Long mostSigBits = node.getLong("world-uuid-most");
-
-            if (leastSigBits != null && mostSigBits != null) {
-                world = server.getWorld(new UUID(mostSigBits, leastSigBits));
-            } else {
-                world = server.getWorld(worldName);
+            Object name = map.get("world");
+            if (name == null) {
+                return null;
             }
+            key = String.valueOf(name);
         }
 
-        if (world == null) {
-            return null;
+        if (worldCache != null && worldCache.containsKey(key)) {
+            return worldCache.get(key);
+        }
+
+        World world;
+        if (key instanceof UUID) {
+            world = server.getWorld((UUID) key);
+        } else {
+            world = server.getWorld((String) key);
         }
 
-        return new Location(world, x, y, z);
+        if (worldCache != null) {
+            worldCache.put(key, world);
+        }
+
+        return world;
+    }
+
+    /**
+     * Returns whether a value can be read as a coordinate, which are the
+     * same types that {@link DoubleLoaderBuilder} accepts.
+     *
+     * @param value the value
+     * @return true if the value is a coordinate
+     */
+    private static boolean isCoordinate(Object value) {
+        return value instanceof Double || value instanceof Integer || value instanceof Float
+                || value instanceof Long || value instanceof Byte;
     }
 
 }
@@ -2,8 +2,9 @@ package com.sk89q.rebar.config.types;
 
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class LongLoaderBuilder implements Loader<Long>, Builder<Long> {
+public class LongLoaderBuilder implements Loader<Long>, Builder<Long>, ThreadSafeLoader {
 
     @Override
     public Object write(Long value) {
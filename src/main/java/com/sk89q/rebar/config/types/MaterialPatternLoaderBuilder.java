@@ -9,11 +9,12 @@ import java.util.regex.Pattern;
 
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 import com.sk89q.rebar.util.MapBuilder.ObjectMapBuilder;
 import com.sk89q.rebar.util.MaterialDatabase;
 import com.sk89q.rebar.util.MaterialPattern;
 
-public class MaterialPatternLoaderBuilder implements Loader<MaterialPattern>, Builder<MaterialPattern> {
+public class MaterialPatternLoaderBuilder implements Loader<MaterialPattern>, Builder<MaterialPattern>, ThreadSafeLoader {
 
     private Logger logger = Logger.getLogger(MaterialPatternLoaderBuilder.class
             .getCanonicalName());
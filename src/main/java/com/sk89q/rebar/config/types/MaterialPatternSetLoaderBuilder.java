@@ -0,0 +1,65 @@
+package com.sk89q.rebar.config.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sk89q.rebar.config.Builder;
+import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
+import com.sk89q.rebar.util.MaterialDatabase;
+import com.sk89q.rebar.util.MaterialPattern;
+import com.sk89q.rebar.util.MaterialPatternSet;
+
+/**
+ * Loads a list of materials, in the format read by
+ * {@link MaterialPatternLoaderBuilder}, as a {@link MaterialPatternSet}.
+ * A single material may also be given instead of a list.
+ */
+public class MaterialPatternSetLoaderBuilder implements Loader<MaterialPatternSet>, Builder<MaterialPatternSet>, ThreadSafeLoader {
+
+    private final MaterialPatternLoaderBuilder patternLoader;
+
+    public MaterialPatternSetLoaderBuilder(MaterialDatabase materialDb) {
+        this.patternLoader = new MaterialPatternLoaderBuilder(materialDb);
+    }
+
+    public MaterialPatternSetLoaderBuilder() {
+        this.patternLoader = new MaterialPatternLoaderBuilder();
+    }
+
+    @Override
+    public Object write(MaterialPatternSet value) {
+        List<Object> list = new ArrayList<Object>();
+        for (MaterialPattern pattern : value.getPatterns()) {
+            list.add(patternLoader.write(pattern));
+        }
+        return list;
+    }
+
+    @Override
+    public MaterialPatternSet read(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        List<MaterialPattern> patterns = new ArrayList<MaterialPattern>();
+
+        if (value instanceof List<?>) {
+            for (Object entry : (List<?>) value) {
+                MaterialPattern pattern = patternLoader.read(entry);
+                if (pattern != null) {
+                    patterns.add(pattern);
+                }
+            }
+        } else {
+            MaterialPattern pattern = patternLoader.read(value);
+            if (pattern == null) {
+                return null;
+            }
+            patterns.add(pattern);
+        }
+
+        return new MaterialPatternSet(patterns);
+    }
+
+}
@@ -5,8 +5,9 @@ import java.util.Map;
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.ConfigurationNode;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class NodeLoaderBuilder implements Loader<ConfigurationNode>, Builder<ConfigurationNode> {
+public class NodeLoaderBuilder implements Loader<ConfigurationNode>, Builder<ConfigurationNode>, ThreadSafeLoader {
 
     @Override
     public Object write(ConfigurationNode value) {
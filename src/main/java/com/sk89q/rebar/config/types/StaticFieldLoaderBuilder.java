@@ -3,25 +3,21 @@ package com.sk89q.rebar.config.types;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import com.sk89q.rebar.config.Loader;
 import com.sk89q.rebar.config.LoaderBuilderException;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class StaticFieldLoaderBuilder<T> implements Loader<T> {
+public class StaticFieldLoaderBuilder<T> implements Loader<T>, ThreadSafeLoader {
 
     private final Class<?> type;
-    private final Map<String, Field> fields = new HashMap<String, Field>();
+    private final FieldTable table;
 
     public StaticFieldLoaderBuilder(Class<?> type, Class<T> fieldType) {
         this.type = type;
-
-        for (Field field : type.getFields()) {
-            if (Modifier.isStatic(field.getModifiers())
-                    && fieldType.isAssignableFrom(field.getType())) {
-                fields.put(normalize(field.getName()), field);
-            }
-        }
+        this.table = new FieldTable(type, fieldType);
     }
 
     @SuppressWarnings("unchecked")
@@ -33,12 +29,50 @@ public class StaticFieldLoaderBuilder<T> implements Loader<T> {
     @SuppressWarnings("unchecked")
     public T read(Object value) {
         String stringValue = String.valueOf(value);
-        String normalized = normalize(stringValue);
-        
-        Field field = fields.get(normalized);
-        if (field != null) {
+
+        FieldValue fieldValue = table.exact.get(stringValue);
+        if (fieldValue == null) {
+            fieldValue = table.normalized.get(normalize(stringValue));
+        }
+
+        if (fieldValue != null) {
+            return (T) fieldValue.get();
+        }
+
+        throw new LoaderBuilderException("Did not find " + stringValue + " in "
+                + type.getCanonicalName());
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The value of a static field. The values of final fields are read once
+     * when the field is found, and other fields are read every time.
+     */
+    private static class FieldValue {
+
+        private final Field field;
+        private final Object value;
+
+        private FieldValue(Field field) {
+            if (Modifier.isFinal(field.getModifiers())) {
+                this.field = null;
+                this.value = readField(field);
+            } else {
+                this.field = field;
+                this.value = null;
+            }
+        }
+
+        private Object get() {
+            return field != null ? readField(field) : value;
+        }
+
+        private static Object readField(Field field) {
             try {
-                return (T) field.get(null);
+                return field.get(null);
             } catch (IllegalArgumentException e) {
                 throw new LoaderBuilderException(e);
             } catch (IllegalAccessException e) {
@@ -46,12 +80,30 @@ public class StaticFieldLoaderBuilder<T> implements Loader<T> {
             }
         }
 
-        throw new LoaderBuilderException("Did not find " + stringValue + " in "
-                + type.getCanonicalName());
     }
-    
-    private static String normalize(String name) {
-        return name.replace("_", "").toLowerCase();
+
+    /**
+     * The public static fields of a class that are of a given type, by their
+     * name and by their normalized name. Each loader builds its own table
+     * rather than sharing one, so that classes loaded by plugins can be
+     * unloaded along with their loaders.
+     */
+    private static class FieldTable {
+
+        private final Map<String, FieldValue> exact = new HashMap<String, FieldValue>();
+        private final Map<String, FieldValue> normalized = new HashMap<String, FieldValue>();
+
+        private FieldTable(Class<?> type, Class<?> fieldType) {
+            for (Field field : type.getFields()) {
+                if (Modifier.isStatic(field.getModifiers())
+                        && fieldType.isAssignableFrom(field.getType())) {
+                    FieldValue value = new FieldValue(field);
+                    exact.put(field.getName(), value);
+                    normalized.put(normalize(field.getName()), value);
+                }
+            }
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -2,8 +2,9 @@ package com.sk89q.rebar.config.types;
 
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 
-public class StringLoaderBuilder implements Loader<String>, Builder<String> {
+public class StringLoaderBuilder implements Loader<String>, Builder<String>, ThreadSafeLoader {
 
     @Override
     public Object write(String value) {
@@ -3,11 +3,12 @@ package com.sk89q.rebar.config.types;
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.ConfigurationNode;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 import com.sk89q.rebar.util.MapBuilder.ObjectMapBuilder;
 import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.Vector2D;
 
-public class Vector2dLoaderBuilder implements Loader<Vector2D>, Builder<Vector2D> {
+public class Vector2dLoaderBuilder implements Loader<Vector2D>, Builder<Vector2D>, ThreadSafeLoader {
     
     private final boolean asBlock;
     
@@ -3,11 +3,12 @@ package com.sk89q.rebar.config.types;
 import com.sk89q.rebar.config.Builder;
 import com.sk89q.rebar.config.ConfigurationNode;
 import com.sk89q.rebar.config.Loader;
+import com.sk89q.rebar.config.ThreadSafeLoader;
 import com.sk89q.rebar.util.MapBuilder.ObjectMapBuilder;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 
-public class VectorLoaderBuilder implements Loader<Vector>, Builder<Vector> {
+public class VectorLoaderBuilder implements Loader<Vector>, Builder<Vector>, ThreadSafeLoader {
     
     private final boolean asBlock;
     
@@ -5,6 +5,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import com.sk89q.rebar.config.ConfigurationConverter;
+import com.sk89q.rebar.config.ConfigurationException;
+import com.sk89q.rebar.config.MappedConfigurationFile;
+
 /**
  * Various utilities for loading defaults.
  */
@@ -71,4 +75,74 @@ public class DefaultsUtils {
         }
     }
 
+    /**
+     * Create a file that can be read with {@link MappedConfigurationFile}
+     * from a default YAML configuration in the .jar. Large defaults can then
+     * be mapped instead of being parsed into memory each time that they are
+     * loaded.
+     * </p>
+     * The file records a checksum of the YAML that it was converted from, and
+     * it is converted again if the YAML in the .jar has changed since, such
+     * as after the plugin was updated.
+     *
+     * @param clazz class to get files from (via its .jar or directory)
+     * @param actual the destination file
+     * @param path the name of the YAML file inside the jar's defaults folder
+     */
+    public static void createIndexedDefaultConfiguration(Class<?> clazz, File actual, String path) {
+        InputStream input = clazz.getResourceAsStream(path);
+        if (input == null) {
+            LoggerUtils.getLogger(clazz).warning(
+                    "Unable to read default configuration '" + path + "' of "
+                            + clazz.getCanonicalName());
+            return;
+        }
+
+        try {
+            if (actual.exists()) {
+                long checksum = ConfigurationConverter.checksum(input);
+                if (isConvertedFrom(actual, checksum)) {
+                    return;
+                }
+
+                input.close();
+                input = clazz.getResourceAsStream(path);
+                if (input == null) {
+                    return;
+                }
+            }
+
+            ConfigurationConverter.yamlToIndexed(input, actual);
+            LoggerUtils.getLogger(clazz).info("Default configuration file written: "
+                    + actual.getAbsolutePath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ConfigurationException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                input.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Returns whether an indexed file was converted from YAML data with the
+     * given checksum.
+     *
+     * @param file the indexed file
+     * @param checksum the checksum of the YAML data
+     * @return true if the file is up to date, false if it should be converted again
+     */
+    private static boolean isConvertedFrom(File file, long checksum) {
+        try {
+            return ConfigurationConverter.getSourceChecksum(file) == checksum;
+        } catch (IOException e) {
+            return false;
+        } catch (ConfigurationException e) {
+            return false;
+        }
+    }
+
 }
@@ -2,8 +2,10 @@ package com.sk89q.rebar.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,20 +19,38 @@ import com.sk89q.worldedit.blocks.ItemType;
 
 /**
  * A database of materials.
+ * </p>
+ * Names are matched regardless of case, underscores and spaces, against the
+ * names in the materials file and then against WorldEdit's item names. The
+ * loaded names are kept in an immutable index that is replaced as a whole
+ * when the database is reloaded, so the database can be queried from any
+ * thread. {@link #getPattern(String)} returns a new copy of the pattern on
+ * every call, so callers may modify it.
  */
 public class MaterialDatabase {
 
-    private static MaterialDatabase instance;
+    /**
+     * The maximum number of names, including unknown ones, that have their
+     * result remembered between reloads.
+     */
+    private static final int MAX_CACHED_LOOKUPS = 4096;
+
+    /**
+     * Cached in place of a pattern for names that are not known.
+     */
+    private static final MaterialPattern UNKNOWN = new MaterialPattern(-1);
 
     private static final Logger logger = Logger.getLogger(MaterialDatabase.class.getCanonicalName());
     private final File file;
-    private Map<String, MaterialPattern> patterns = new HashMap<String, MaterialPattern>();
+    private final Object loadLock = new Object();
+    private volatile Index index = new Index(Collections.<String, MaterialPattern>emptyMap());
+
+    private static class Holder {
+        private static final MaterialDatabase instance = new MaterialDatabase();
+    }
 
     public static MaterialDatabase getInstance() {
-        if (instance == null) {
-            instance = new MaterialDatabase();
-        }
-        return instance;
+        return Holder.instance;
     }
 
     private MaterialDatabase() {
@@ -47,45 +67,68 @@ public class MaterialDatabase {
 
     /**
      * Loads the material database.
-     * 
+     * </p>
+     * The new names take effect all at once after the file has been
+     * completely loaded, and lookups that are in progress at the time
+     * continue to use the old names.
+     *
      * @throws IOException I/O exception
      * @throws ConfigurationException configuration exception
      */
     public void loadMaterials() throws IOException, ConfigurationException {
-        if (!file.exists()) {
-            DefaultsUtils.createDefaultConfiguration(getClass(), file, "/defaults/materials.yml");
-            return;
-        }
+        synchronized (loadLock) {
+            if (!file.exists()) {
+                DefaultsUtils.createDefaultConfiguration(getClass(), file, "/defaults/materials.yml");
+                return;
+            }
 
-        YamlConfigurationFile config = new YamlConfigurationFile(file);
-        config.load();
+            YamlConfigurationFile config = new YamlConfigurationFile(file);
+            config.load();
 
-        PairedKeyValueLoaderBuilder<String, MaterialPattern> loader =
-                PairedKeyValueLoaderBuilder.build(
-                        new LowercaseStringLoaderBuilder(),
-                        new MaterialPatternLoaderBuilder(null));
-        patterns = config.mapOf("materials", loader);
+            PairedKeyValueLoaderBuilder<String, MaterialPattern> loader =
+                    PairedKeyValueLoaderBuilder.build(
+                            new LowercaseStringLoaderBuilder(),
+                            new MaterialPatternLoaderBuilder(null));
+            index = new Index(config.mapOf("materials", loader));
+        }
     }
 
     /**
      * Get a mattern given a name.
-     * 
+     *
      * @param name name of material
-     * @return pattern
+     * @return a copy of the pattern, or null if the name is not known
      */
     public MaterialPattern getPattern(String name) {
-        MaterialPattern pattern = patterns.get(name.toLowerCase());
-        if (pattern != null) {
-            return pattern;
+        Index index = this.index;
+
+        MaterialPattern pattern = index.lookups.get(name);
+        if (pattern == null) {
+            pattern = index.find(name);
+            if (index.lookups.size() < MAX_CACHED_LOOKUPS) {
+                index.lookups.put(name, pattern);
+            }
         }
-        
-        // Search WorldEdit
-        ItemType type = ItemType.lookup(name.replace("_", ""));
-        if (type != null) {
-            return new MaterialPattern(type.getID());
+
+        // Cached patterns are shared, so they are never handed out
+        return pattern != UNKNOWN ? new MaterialPattern(pattern) : null;
+    }
+
+    /**
+     * Normalize a material name for matching.
+     *
+     * @param name the name
+     * @return the normalized name
+     */
+    private static String normalize(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '_' && c != ' ') {
+                builder.append(Character.toLowerCase(c));
+            }
         }
-        
-        return null;
+        return builder.toString();
     }
 
     /**
@@ -101,4 +144,60 @@ public class MaterialDatabase {
         }
     }
 
+    /**
+     * The names known at one point in time.
+     */
+    private static class Index {
+
+        private final Map<String, MaterialPattern> aliases = new HashMap<String, MaterialPattern>();
+        private final Map<String, MaterialPattern> lookups =
+                new ConcurrentHashMap<String, MaterialPattern>();
+
+        /**
+         * Build an index. Names from the materials file take precedence
+         * over WorldEdit's names.
+         *
+         * @param patterns patterns from the materials file
+         */
+        private Index(Map<String, MaterialPattern> patterns) {
+            for (ItemType type : ItemType.values()) {
+                MaterialPattern pattern = new MaterialPattern(type.getID());
+                aliases.put(normalize(type.getName()), pattern);
+                for (String alias : type.getAliases()) {
+                    aliases.put(normalize(alias), pattern);
+                }
+            }
+
+            for (Map.Entry<String, MaterialPattern> entry : patterns.entrySet()) {
+                if (entry.getValue() != null) {
+                    aliases.put(normalize(entry.getKey()), entry.getValue());
+                }
+            }
+        }
+
+        /**
+         * Find the pattern for a name without using the cache.
+         *
+         * @param name the name
+         * @return the pattern, or {@link MaterialDatabase#UNKNOWN}
+         */
+        private MaterialPattern find(String name) {
+            String normalized = normalize(name);
+
+            MaterialPattern pattern = aliases.get(normalized);
+            if (pattern != null) {
+                return pattern;
+            }
+
+            // Let WorldEdit try to match partial names
+            ItemType type = ItemType.lookup(normalized);
+            if (type != null) {
+                return new MaterialPattern(type.getID());
+            }
+
+            return UNKNOWN;
+        }
+
+    }
+
 }
@@ -11,6 +11,16 @@ public class MaterialPattern {
         this.material = material;
     }
     
+    /**
+     * Construct a pattern with the same material and data filter as another.
+     * 
+     * @param other the pattern to copy
+     */
+    public MaterialPattern(MaterialPattern other) {
+        this.material = other.material;
+        this.data = other.data != null ? other.data.clone() : null;
+    }
+    
     public boolean matches(int material, int data) {
         if (this.material != material) {
             return false;
@@ -29,7 +39,7 @@ public class MaterialPattern {
                 int max = this.data[i + 2];
                 i += 2;
                 
-                if (data >= min || data <= max) {
+                if (data >= min && data <= max) {
                     return true;
                 }
             } else {
@@ -0,0 +1,249 @@
+package com.sk89q.rebar.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of {@link MaterialPattern}s compiled into a lookup table, so that
+ * checking whether a block matches any of the patterns takes one array
+ * lookup and one bit test no matter how many patterns there are.
+ * </p>
+ * The table is indexed by material ID, and holds a bitset of the matching
+ * data values for each material. Data ranges that extend past
+ * {@link #MAX_BITSET_DATA} are kept as patterns and only tested for data
+ * values beyond it. Materials above {@link #MAX_TABLE_MATERIAL} are also
+ * kept as patterns and tested one by one, so that a single large ID in a
+ * configuration cannot make the table huge. The set is immutable; changes to
+ * the patterns after the set is created do not affect it.
+ */
+public class MaterialPatternSet {
+
+    /**
+     * Data values up to this value are stored in bitsets.
+     */
+    public static final int MAX_BITSET_DATA = 0xFFFF;
+
+    /**
+     * Materials up to this ID are stored in the table.
+     */
+    public static final int MAX_TABLE_MATERIAL = 4095;
+
+    private static final long[] ANY = new long[0];
+    private static final MaterialPattern[] NO_PATTERNS = new MaterialPattern[0];
+
+    private final List<MaterialPattern> patterns;
+    private final long[][] table;
+    private final MaterialPattern[][] overflow;
+    private final MaterialPattern[] outsideTable;
+
+    /**
+     * Compile a set of patterns.
+     *
+     * @param patterns the patterns
+     */
+    public MaterialPatternSet(Collection<MaterialPattern> patterns) {
+        this.patterns = Collections.unmodifiableList(new ArrayList<MaterialPattern>(patterns));
+
+        int maxMaterial = -1;
+        List<MaterialPattern> outsideTable = new ArrayList<MaterialPattern>();
+        for (MaterialPattern pattern : patterns) {
+            if (pattern.getMaterial() > MAX_TABLE_MATERIAL) {
+                outsideTable.add(pattern);
+            } else {
+                maxMaterial = Math.max(maxMaterial, pattern.getMaterial());
+            }
+        }
+
+        table = new long[maxMaterial + 1][];
+        overflow = new MaterialPattern[maxMaterial + 1][];
+        this.outsideTable = outsideTable.toArray(NO_PATTERNS);
+
+        for (MaterialPattern pattern : patterns) {
+            if (pattern.getMaterial() <= MAX_TABLE_MATERIAL) {
+                add(pattern);
+            }
+        }
+    }
+
+    /**
+     * Add a pattern to the table.
+     *
+     * @param pattern the pattern
+     */
+    private void add(MaterialPattern pattern) {
+        int material = pattern.getMaterial();
+        if (material < 0 || table[material] == ANY) {
+            return;
+        }
+
+        if (!pattern.hasDataFilter()) {
+            table[material] = ANY;
+            overflow[material] = null;
+            return;
+        }
+
+        int[] data = pattern.getDataRange();
+        for (int i = 0; i < data.length; i++) {
+            int val = data[i];
+
+            // Range
+            if (val == -1) {
+                int min = data[i + 1];
+                int max = data[i + 2];
+                i += 2;
+
+                if (max > MAX_BITSET_DATA) {
+                    addOverflow(material, pattern);
+                }
+
+                for (int d = Math.max(min, 0); d <= Math.min(max, MAX_BITSET_DATA); d++) {
+                    set(material, d);
+                }
+            } else if (val > MAX_BITSET_DATA) {
+                addOverflow(material, pattern);
+            } else if (val >= 0) {
+                set(material, val);
+            }
+        }
+    }
+
+    /**
+     * Set the bit for a data value of a material.
+     *
+     * @param material the material
+     * @param data the data value
+     */
+    private void set(int material, int data) {
+        long[] bits = table[material];
+        int word = data >>> 6;
+
+        if (bits == null || bits.length <= word) {
+            long[] grown = new long[word + 1];
+            if (bits != null) {
+                System.arraycopy(bits, 0, grown, 0, bits.length);
+            }
+            bits = grown;
+            table[material] = bits;
+        }
+
+        bits[word] |= 1L << data;
+    }
+
+    /**
+     * Remember a pattern that matches data values beyond the bitsets.
+     *
+     * @param material the material
+     * @param pattern the pattern
+     */
+    private void addOverflow(int material, MaterialPattern pattern) {
+        MaterialPattern[] existing = overflow[material];
+        if (existing == null) {
+            existing = NO_PATTERNS;
+        }
+
+        for (MaterialPattern other : existing) {
+            if (other == pattern) {
+                return;
+            }
+        }
+
+        MaterialPattern[] grown = new MaterialPattern[existing.length + 1];
+        System.arraycopy(existing, 0, grown, 0, existing.length);
+        grown[existing.length] = pattern;
+        overflow[material] = grown;
+
+        // Make sure that the material has an entry in the table
+        if (table[material] == null) {
+            table[material] = new long[0];
+        }
+    }
+
+    /**
+     * Returns whether a block matches any of the patterns.
+     *
+     * @param material the material ID
+     * @param data the data value
+     * @return true if there is a match
+     */
+    public boolean matches(int material, int data) {
+        if (material < 0 || material >= table.length) {
+            return material > MAX_TABLE_MATERIAL && matchesOutsideTable(material, data);
+        }
+
+        long[] bits = table[material];
+        if (bits == null) {
+            return false;
+        } else if (bits == ANY) {
+            return true;
+        }
+
+        if (data >= 0 && data <= MAX_BITSET_DATA) {
+            int word = data >>> 6;
+            return word < bits.length && (bits[word] & (1L << data)) != 0;
+        }
+
+        MaterialPattern[] extra = overflow[material];
+        if (extra != null) {
+            for (MaterialPattern pattern : extra) {
+                if (pattern.matches(material, data)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether a block with a material above the table matches any
+     * of the patterns.
+     *
+     * @param material the material ID
+     * @param data the data value
+     * @return true if there is a match
+     */
+    private boolean matchesOutsideTable(int material, int data) {
+        for (MaterialPattern pattern : outsideTable) {
+            if (pattern.matches(material, data)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether any of the patterns are for the given material,
+     * regardless of data value.
+     *
+     * @param material the material ID
+     * @return true if a pattern is for the material
+     */
+    public boolean containsMaterial(int material) {
+        if (material > MAX_TABLE_MATERIAL) {
+            for (MaterialPattern pattern : outsideTable) {
+                if (pattern.getMaterial() == material) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return material >= 0 && material < table.length && table[material] != null;
+    }
+
+    /**
+     * Get the patterns that the set was compiled from.
+     *
+     * @return an unmodifiable list of patterns
+     */
+    public List<MaterialPattern> getPatterns() {
+        return patterns;
+    }
+
+    @Override
+    public String toString() {
+        return patterns.toString();
+    }
+
+}
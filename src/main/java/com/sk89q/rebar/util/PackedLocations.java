@@ -0,0 +1,142 @@
+package com.sk89q.rebar.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * A list of locations stored as primitive arrays instead of
+ * {@link Location} objects.
+ * </p>
+ * The coordinates are kept in one array as x, y and z for each location in
+ * turn, and each location refers to its world by an index into an array of
+ * the distinct worlds. Locations are only created when requested.
+ */
+public class PackedLocations {
+
+    private final World[] worlds;
+    private final int[] worldIndexes;
+    private final double[] coordinates;
+    private final int size;
+
+    /**
+     * Create a new list. The arrays are used as-is and not copied.
+     *
+     * @param worlds the distinct worlds
+     * @param worldIndexes the index of the world of each location
+     * @param coordinates x, y and z of each location
+     * @param size the number of locations, which may be fewer than the arrays can hold
+     */
+    public PackedLocations(World[] worlds, int[] worldIndexes, double[] coordinates, int size) {
+        if (worldIndexes.length < size || coordinates.length < size * 3) {
+            throw new IllegalArgumentException("Arrays are too short for " + size + " locations");
+        }
+
+        this.worlds = worlds;
+        this.worldIndexes = worldIndexes;
+        this.coordinates = coordinates;
+        this.size = size;
+    }
+
+    /**
+     * Get the number of locations.
+     *
+     * @return the number of locations
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of distinct worlds.
+     *
+     * @return the number of worlds
+     */
+    public int getWorldCount() {
+        return worlds.length;
+    }
+
+    /**
+     * Get a world by its index.
+     *
+     * @param worldIndex index of the world
+     * @return the world
+     */
+    public World getWorldByIndex(int worldIndex) {
+        return worlds[worldIndex];
+    }
+
+    /**
+     * Get the index of the world of a location.
+     *
+     * @param index index of the location
+     * @return index of the world
+     */
+    public int getWorldIndex(int index) {
+        checkIndex(index);
+        return worldIndexes[index];
+    }
+
+    /**
+     * Get the world of a location.
+     *
+     * @param index index of the location
+     * @return the world
+     */
+    public World getWorld(int index) {
+        checkIndex(index);
+        return worlds[worldIndexes[index]];
+    }
+
+    /**
+     * Get the X coordinate of a location.
+     *
+     * @param index index of the location
+     * @return the X coordinate
+     */
+    public double getX(int index) {
+        checkIndex(index);
+        return coordinates[index * 3];
+    }
+
+    /**
+     * Get the Y coordinate of a location.
+     *
+     * @param index index of the location
+     * @return the Y coordinate
+     */
+    public double getY(int index) {
+        checkIndex(index);
+        return coordinates[index * 3 + 1];
+    }
+
+    /**
+     * Get the Z coordinate of a location.
+     *
+     * @param index index of the location
+     * @return the Z coordinate
+     */
+    public double getZ(int index) {
+        checkIndex(index);
+        return coordinates[index * 3 + 2];
+    }
+
+    /**
+     * Create a location object for a location.
+     *
+     * @param index index of the location
+     * @return a new location
+     */
+    public Location getLocation(int index) {
+        checkIndex(index);
+        int offset = index * 3;
+        return new Location(worlds[worldIndexes[index]],
+                coordinates[offset], coordinates[offset + 1], coordinates[offset + 2]);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+
+}